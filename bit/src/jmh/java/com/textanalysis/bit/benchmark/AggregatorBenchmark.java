@@ -0,0 +1,74 @@
+package com.textanalysis.bit.benchmark;
+
+import com.textanalysis.bit.config.AppConfig;
+import com.textanalysis.bit.model.dto.WordMatch;
+import com.textanalysis.bit.model.internal.MatchBuffer;
+import com.textanalysis.bit.model.internal.TextChunk;
+import com.textanalysis.bit.service.AggregatorService;
+import com.textanalysis.bit.service.DocumentCacheService;
+import com.textanalysis.bit.service.LocalFileReaderService;
+import com.textanalysis.bit.service.MatcherService;
+import com.textanalysis.bit.service.TextReaderService;
+import com.textanalysis.bit.service.matcher.MatcherEngine;
+import com.textanalysis.bit.service.matcher.WordMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Scope;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Merging the per-chunk match buffers of a whole document into the final word locations
+ */
+@State(Scope.Benchmark)
+public class AggregatorBenchmark extends BenchmarkDefaults {
+    
+    @Param({Corpus.SYNTHETIC})
+    public String corpus;
+    
+    @Param({"8000000"})
+    public int textChars;
+    
+    @Param({"100", "10000"})
+    public int dictionarySize;
+    
+    @Param({"80"})
+    public int lineLength;
+    
+    @Param({"0.01", "0.2"})
+    public double hitDensity;
+    
+    @Param({"64KB", "4MB"})
+    public String chunkBytes;
+    
+    private AggregatorService aggregatorService;
+    private List<MatchBuffer> buffers;
+    
+    @Setup
+    public void setUp() throws IOException {
+        Corpus input = Corpus.of(corpus, textChars, dictionarySize, lineLength, hitDensity);
+        
+        AppConfig appConfig = new AppConfig();
+        appConfig.setChunkBytes(chunkBytes);
+        appConfig.setDocumentCacheEnabled(false);
+        TextReaderService reader = new TextReaderService(appConfig, new DocumentCacheService(appConfig), new LocalFileReaderService(appConfig));
+        List<TextChunk> chunks = new ArrayList<>();
+        reader.processTextInChunks(new BufferedReader(new StringReader(input.getText())), chunks::add);
+        
+        MatcherService matcherService = new MatcherService(appConfig);
+        WordMatcher matcher = matcherService.compile(input.getDictionary(), MatcherEngine.AHO_CORASICK);
+        buffers = chunks.stream().map(chunk -> matcherService.findMatches(chunk, matcher)).toList();
+        aggregatorService = new AggregatorService(appConfig);
+    }
+    
+    @Benchmark
+    public List<WordMatch> aggregateResults() {
+        return aggregatorService.aggregateResults(buffers);
+    }
+}
@@ -0,0 +1,144 @@
+package com.textanalysis.bit.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Benchmark inputs: a synthetic text with a controlled line length and hit density, the
+ * bundled novel chapter or a real UTF-8 file, plus a dictionary of the requested size. Everything is seeded, so runs
+ * with the same parameters see the same text.
+ */
+final class Corpus {
+    
+    /** Corpus parameter value that selects the generated text */
+    static final String SYNTHETIC = "synthetic";
+    
+    /** Corpus parameter value that selects the bundled public-domain novel chapter */
+    static final String NOVEL = "novel";
+    
+    private static final long SEED = 42;
+    
+    private final String text;
+    private final Set<String> dictionary;
+    
+    private Corpus(String text, Set<String> dictionary) {
+        this.text = text;
+        this.dictionary = dictionary;
+    }
+    
+    /**
+     * Builds a corpus of about the given number of characters. For a synthetic corpus the
+     * given fraction of tokens are dictionary words; a real corpus is repeated or cut to
+     * size and its dictionary starts with its most frequent tokens. Line length and hit
+     * density only shape the synthetic corpus.
+     */
+    static Corpus of(String source, int chars, int dictionarySize, int lineLength, double hitDensity) {
+        if (SYNTHETIC.equals(source)) {
+            Set<String> dictionary = randomWords(new Random(SEED), dictionarySize, Set.of());
+            return new Corpus(synthetic(chars, lineLength, hitDensity, dictionary), dictionary);
+        }
+        String text = repeat(source, NOVEL.equals(source) ? loadNovel() : load(Path.of(source)), chars);
+        Set<String> dictionary = new LinkedHashSet<>(frequentTokens(text, dictionarySize));
+        dictionary.addAll(randomWords(new Random(SEED), dictionarySize - dictionary.size(), dictionary));
+        return new Corpus(text, dictionary);
+    }
+    
+    String getText() {
+        return text;
+    }
+    
+    Set<String> getDictionary() {
+        return dictionary;
+    }
+    
+    private static String synthetic(int chars, int lineLength, double hitDensity, Set<String> dictionary) {
+        Random random = new Random(SEED + 1);
+        String[] hits = dictionary.toArray(String[]::new);
+        String[] misses = randomWords(new Random(SEED + 2), 10_000, dictionary).toArray(String[]::new);
+        
+        StringBuilder text = new StringBuilder(chars + lineLength + 16);
+        int lineStart = 0;
+        while (text.length() < chars) {
+            String[] pool = random.nextDouble() < hitDensity ? hits : misses;
+            text.append(pool[random.nextInt(pool.length)]);
+            if (text.length() - lineStart >= lineLength) {
+                text.append('\n');
+                lineStart = text.length();
+            } else {
+                text.append(random.nextInt(8) == 0 ? ", " : " ");
+            }
+        }
+        return text.append('\n').toString();
+    }
+    
+    private static String load(Path file) {
+        try {
+            return Files.readString(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read corpus " + file, e);
+        }
+    }
+    
+    private static String loadNovel() {
+        try (InputStream in = Corpus.class.getResourceAsStream("/corpus/novel.txt")) {
+            if (in == null) {
+                throw new IllegalStateException("Bundled corpus /corpus/novel.txt is missing");
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read bundled corpus", e);
+        }
+    }
+    
+    private static String repeat(String source, String content, int chars) {
+        if (content.isEmpty()) {
+            throw new IllegalArgumentException("Corpus " + source + " is empty");
+        }
+        StringBuilder text = new StringBuilder(chars + content.length());
+        while (text.length() < chars) {
+            text.append(content);
+        }
+        // Cut at a line end so the text still ends in a complete line
+        int end = text.indexOf("\n", chars);
+        return end < 0 ? text.toString() : text.substring(0, end + 1);
+    }
+    
+    private static List<String> frequentTokens(String text, int limit) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String token : text.toLowerCase().split("[^\\p{L}\\p{N}_]+")) {
+            if (!token.isEmpty()) {
+                counts.merge(token, 1, Integer::sum);
+            }
+        }
+        return counts.entrySet().stream()
+            .sorted(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+            .limit(limit)
+            .map(Map.Entry::getKey)
+            .toList();
+    }
+    
+    private static Set<String> randomWords(Random random, int count, Set<String> excluded) {
+        Set<String> words = new LinkedHashSet<>();
+        while (words.size() < count) {
+            int length = 3 + random.nextInt(8);
+            StringBuilder word = new StringBuilder(length);
+            for (int i = 0; i < length; i++) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            if (!excluded.contains(word.toString())) {
+                words.add(word.toString());
+            }
+        }
+        return words;
+    }
+}
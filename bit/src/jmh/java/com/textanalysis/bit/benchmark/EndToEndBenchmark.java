@@ -0,0 +1,83 @@
+package com.textanalysis.bit.benchmark;
+
+import com.textanalysis.bit.config.AppConfig;
+import com.textanalysis.bit.model.dto.WordMatch;
+import com.textanalysis.bit.service.AggregatorService;
+import com.textanalysis.bit.service.DocumentCacheService;
+import com.textanalysis.bit.service.LocalFileReaderService;
+import com.textanalysis.bit.service.MatchCollector;
+import com.textanalysis.bit.service.MatcherService;
+import com.textanalysis.bit.service.TextReaderService;
+import com.textanalysis.bit.service.matcher.MatcherEngine;
+import com.textanalysis.bit.service.matcher.WordMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Scope;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Read, match and aggregate a document in memory, chunk by chunk as the service does,
+ * including the matcher cache lookup but without HTTP, admission or the chunk pool
+ */
+@State(Scope.Benchmark)
+public class EndToEndBenchmark extends BenchmarkDefaults {
+    
+    @Param({Corpus.SYNTHETIC})
+    public String corpus;
+    
+    @Param({"8000000"})
+    public int textChars;
+    
+    @Param({"AHO_CORASICK", "REGEX"})
+    public MatcherEngine engine;
+    
+    @Param({"50", "1000"})
+    public int dictionarySize;
+    
+    @Param({"80"})
+    public int lineLength;
+    
+    @Param({"0.05"})
+    public double hitDensity;
+    
+    @Param({"1MB", "4MB"})
+    public String chunkBytes;
+    
+    private String text;
+    private Set<String> words;
+    private TextReaderService reader;
+    private MatcherService matcherService;
+    private AggregatorService aggregatorService;
+    
+    @Setup
+    public void setUp() {
+        Corpus input = Corpus.of(corpus, textChars, dictionarySize, lineLength, hitDensity);
+        text = input.getText();
+        words = input.getDictionary();
+        
+        AppConfig appConfig = new AppConfig();
+        appConfig.setChunkBytes(chunkBytes);
+        appConfig.setMatcherEngine(engine);
+        appConfig.setDocumentCacheEnabled(false);
+        reader = new TextReaderService(appConfig, new DocumentCacheService(appConfig), new LocalFileReaderService(appConfig));
+        matcherService = new MatcherService(appConfig);
+        aggregatorService = new AggregatorService(appConfig);
+    }
+    
+    @Benchmark
+    public List<WordMatch> analyze() throws IOException {
+        WordMatcher matcher = matcherService.getMatcher(words);
+        try (MatchCollector collector = aggregatorService.newCollector()) {
+            reader.processTextInChunks(new BufferedReader(new StringReader(text)),
+                chunk -> collector.add(matcherService.findMatches(chunk, matcher)));
+            return collector.finish();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.textanalysis.bit.benchmark;
+
+import com.textanalysis.bit.config.AppConfig;
+import com.textanalysis.bit.model.internal.MatchBuffer;
+import com.textanalysis.bit.model.internal.TextChunk;
+import com.textanalysis.bit.model.internal.Utf8ByteSequence;
+import com.textanalysis.bit.service.MatcherService;
+import com.textanalysis.bit.service.matcher.MatcherEngine;
+import com.textanalysis.bit.service.matcher.WordMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Scope;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Matching one chunk: through MatcherService, which splits the chunk over the fork-join
+ * pool, and with a single matcher scan on the calling thread. The regex engine only copes
+ * with small dictionaries and has its own benchmark, RegexMatcherBenchmark.
+ */
+@State(Scope.Benchmark)
+public class MatcherBenchmark extends BenchmarkDefaults {
+    
+    @Param({Corpus.SYNTHETIC, Corpus.NOVEL})
+    public String corpus;
+    
+    @Param({"4000000"})
+    public int textChars;
+    
+    @Param({"AHO_CORASICK", "BYTES"})
+    public MatcherEngine engine;
+    
+    @Param({"1", "100", "10000", "100000"})
+    public int dictionarySize;
+    
+    @Param({"80", "1000"})
+    public int lineLength;
+    
+    @Param({"0.01", "0.2"})
+    public double hitDensity;
+    
+    private MatcherService matcherService;
+    private WordMatcher matcher;
+    private TextChunk chunk;
+    
+    @Setup
+    public void setUp() {
+        Corpus input = Corpus.of(corpus, textChars, dictionarySize, lineLength, hitDensity);
+        matcherService = new MatcherService(new AppConfig());
+        matcher = matcherService.compile(input.getDictionary(), engine);
+        // The byte engine is meant to scan the undecoded bytes the readers hand it
+        chunk = engine == MatcherEngine.BYTES
+            ? new TextChunk(Utf8ByteSequence.of(ByteBuffer.wrap(input.getText().getBytes(StandardCharsets.UTF_8))), 0, 0, 0)
+            : new TextChunk(input.getText(), 0, 0, 0);
+    }
+    
+    @Benchmark
+    public MatchBuffer findMatches() {
+        return matcherService.findMatches(chunk, matcher);
+    }
+    
+    @Benchmark
+    public MatchBuffer scanSingleThread() {
+        MatchBuffer buffer = matcher.newBuffer();
+        matcher.findMatches(chunk, buffer);
+        return buffer;
+    }
+}
@@ -0,0 +1,53 @@
+package com.textanalysis.bit.benchmark;
+
+import com.textanalysis.bit.config.AppConfig;
+import com.textanalysis.bit.service.DocumentCacheService;
+import com.textanalysis.bit.service.LocalFileReaderService;
+import com.textanalysis.bit.service.TextReaderService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * Splitting an in-memory text into chunks, without the network or disk in the way
+ */
+@State(Scope.Benchmark)
+public class ReaderBenchmark extends BenchmarkDefaults {
+    
+    @Param({Corpus.SYNTHETIC})
+    public String corpus;
+    
+    @Param({"8000000"})
+    public int textChars;
+    
+    @Param({"80", "1000"})
+    public int lineLength;
+    
+    @Param({"64KB", "1MB", "4MB"})
+    public String chunkBytes;
+    
+    private String text;
+    private TextReaderService reader;
+    
+    @Setup
+    public void setUp() {
+        text = Corpus.of(corpus, textChars, 1, lineLength, 0).getText();
+        
+        AppConfig appConfig = new AppConfig();
+        appConfig.setChunkBytes(chunkBytes);
+        appConfig.setDocumentCacheEnabled(false);
+        reader = new TextReaderService(appConfig, new DocumentCacheService(appConfig), new LocalFileReaderService(appConfig));
+    }
+    
+    @Benchmark
+    public int processTextInChunks(Blackhole blackhole) throws IOException {
+        return reader.processTextInChunks(new BufferedReader(new StringReader(text)), blackhole::consume);
+    }
+}
@@ -0,0 +1,60 @@
+package com.textanalysis.bit.benchmark;
+
+import com.textanalysis.bit.config.AppConfig;
+import com.textanalysis.bit.model.internal.MatchBuffer;
+import com.textanalysis.bit.model.internal.TextChunk;
+import com.textanalysis.bit.service.MatcherService;
+import com.textanalysis.bit.service.matcher.MatcherEngine;
+import com.textanalysis.bit.service.matcher.WordMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Scope;
+
+/**
+ * MatcherBenchmark for the regex engine, which runs one pattern per word over every line,
+ * so it is only measured with the small dictionaries it is meant for
+ */
+@State(Scope.Benchmark)
+public class RegexMatcherBenchmark extends BenchmarkDefaults {
+    
+    @Param({Corpus.SYNTHETIC, Corpus.NOVEL})
+    public String corpus;
+    
+    @Param({"4000000"})
+    public int textChars;
+    
+    @Param({"1", "100"})
+    public int dictionarySize;
+    
+    @Param({"80"})
+    public int lineLength;
+    
+    @Param({"0.01", "0.2"})
+    public double hitDensity;
+    
+    private MatcherService matcherService;
+    private WordMatcher matcher;
+    private TextChunk chunk;
+    
+    @Setup
+    public void setUp() {
+        Corpus input = Corpus.of(corpus, textChars, dictionarySize, lineLength, hitDensity);
+        matcherService = new MatcherService(new AppConfig());
+        matcher = matcherService.compile(input.getDictionary(), MatcherEngine.REGEX);
+        chunk = new TextChunk(input.getText(), 0, 0, 0);
+    }
+    
+    @Benchmark
+    public MatchBuffer findMatches() {
+        return matcherService.findMatches(chunk, matcher);
+    }
+    
+    @Benchmark
+    public MatchBuffer scanSingleThread() {
+        MatchBuffer buffer = matcher.newBuffer();
+        matcher.findMatches(chunk, buffer);
+        return buffer;
+    }
+}
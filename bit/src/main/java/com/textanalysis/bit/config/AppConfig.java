@@ -1,26 +1,153 @@
 package com.textanalysis.bit.config;
 
+import com.textanalysis.bit.service.matcher.MatcherEngine;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 @ConfigurationProperties(prefix = "app.text-analysis")
 public class AppConfig {
-    private int chunkSize = 1000;
-    private int chunkOverlap = 50;
-    private int threadPoolSize = 10;
+    private int threadPoolSize = 0;
     private String maxFileSize = "100MB";
+    private boolean rangeDownloadEnabled = true;
+    private int rangeConnections = 4;
+    private String rangePartSize = "8MB";
+    private String rangeMinSize = "16MB";
     private String requestTimeout = "300s";
+    private MatcherEngine matcherEngine = MatcherEngine.AHO_CORASICK;
+    private boolean streaming = true;
+    private int maxInFlightChunks = 20;
+    private boolean matcherCacheEnabled = true;
+    private int matcherCacheMaxEntries = 100;
+    private String matcherCacheMaxSize = "256MB";
+    private String matcherCacheTtl = "1h";
+    private boolean documentCacheEnabled = true;
+    private String documentCacheDir = System.getProperty("java.io.tmpdir") + "/text-analysis-cache";
+    private String documentCacheMaxDiskSize = "2GB";
+    private String documentCacheMaxMemorySize = "256MB";
+    private boolean indexingEnabled = false;
+    private String chunkBytes = "4MB";
+    private String maxLocalFileSize = "64GB";
+    private String maxLocalLineBytes = "64MB";
+    private List<String> localRoots = new ArrayList<>();
+    private String resultsHeapBudget = "256MB";
+    private String spillDir = System.getProperty("java.io.tmpdir") + "/text-analysis-spill";
+    private boolean admissionEnabled = true;
+    private int maxConcurrentAnalyses = 0;
+    private String maxInFlightBytes = "1GB";
+    private int maxQueuedRequests = 100;
+    private String maxQueueWait = "30s";
+    private int maxConcurrentJobs = 2;
+    private int maxQueuedJobs = 50;
+    private String jobTimeout = "2h";
+    private String jobResultTtl = "1h";
+    private int jobMaxRetained = 100;
+    private String jobResultsMaxMemory = "512MB";
+    private boolean jobSpillEnabled = true;
+    private String jobDir = System.getProperty("java.io.tmpdir") + "/text-analysis-jobs";
+    private int batchMaxConcurrentDocuments = 8;
+    private int batchMaxDocuments = 10000;
+    private int batchMaxQueuedDocuments = 1000;
+    private String batchTimeout = "1h";
+    private String indexDir = System.getProperty("java.io.tmpdir") + "/text-analysis-index";
+    private String indexBuilderMaxMemory = "512MB";
+    private int incrementalMaxEntries = 100;
+    private String incrementalMaxMemory = "256MB";
     
     // Getters and Setters
-    public int getChunkSize() { return chunkSize; }
-    public void setChunkSize(int chunkSize) { this.chunkSize = chunkSize; }
-    public int getChunkOverlap() { return chunkOverlap; }
-    public void setChunkOverlap(int chunkOverlap) { this.chunkOverlap = chunkOverlap; }
     public int getThreadPoolSize() { return threadPoolSize; }
     public void setThreadPoolSize(int threadPoolSize) { this.threadPoolSize = threadPoolSize; }
     public String getMaxFileSize() { return maxFileSize; }
     public void setMaxFileSize(String maxFileSize) { this.maxFileSize = maxFileSize; }
+    public boolean isRangeDownloadEnabled() { return rangeDownloadEnabled; }
+    public void setRangeDownloadEnabled(boolean rangeDownloadEnabled) { this.rangeDownloadEnabled = rangeDownloadEnabled; }
+    public int getRangeConnections() { return rangeConnections; }
+    public void setRangeConnections(int rangeConnections) { this.rangeConnections = rangeConnections; }
+    public String getRangePartSize() { return rangePartSize; }
+    public void setRangePartSize(String rangePartSize) { this.rangePartSize = rangePartSize; }
+    public String getRangeMinSize() { return rangeMinSize; }
+    public void setRangeMinSize(String rangeMinSize) { this.rangeMinSize = rangeMinSize; }
     public String getRequestTimeout() { return requestTimeout; }
     public void setRequestTimeout(String requestTimeout) { this.requestTimeout = requestTimeout; }
+    public MatcherEngine getMatcherEngine() { return matcherEngine; }
+    public void setMatcherEngine(MatcherEngine matcherEngine) { this.matcherEngine = matcherEngine; }
+    public boolean isStreaming() { return streaming; }
+    public void setStreaming(boolean streaming) { this.streaming = streaming; }
+    public int getMaxInFlightChunks() { return maxInFlightChunks; }
+    public void setMaxInFlightChunks(int maxInFlightChunks) { this.maxInFlightChunks = maxInFlightChunks; }
+    public boolean isMatcherCacheEnabled() { return matcherCacheEnabled; }
+    public void setMatcherCacheEnabled(boolean matcherCacheEnabled) { this.matcherCacheEnabled = matcherCacheEnabled; }
+    public int getMatcherCacheMaxEntries() { return matcherCacheMaxEntries; }
+    public void setMatcherCacheMaxEntries(int matcherCacheMaxEntries) { this.matcherCacheMaxEntries = matcherCacheMaxEntries; }
+    public String getMatcherCacheMaxSize() { return matcherCacheMaxSize; }
+    public void setMatcherCacheMaxSize(String matcherCacheMaxSize) { this.matcherCacheMaxSize = matcherCacheMaxSize; }
+    public String getMatcherCacheTtl() { return matcherCacheTtl; }
+    public void setMatcherCacheTtl(String matcherCacheTtl) { this.matcherCacheTtl = matcherCacheTtl; }
+    public boolean isDocumentCacheEnabled() { return documentCacheEnabled; }
+    public void setDocumentCacheEnabled(boolean documentCacheEnabled) { this.documentCacheEnabled = documentCacheEnabled; }
+    public String getDocumentCacheDir() { return documentCacheDir; }
+    public void setDocumentCacheDir(String documentCacheDir) { this.documentCacheDir = documentCacheDir; }
+    public String getDocumentCacheMaxDiskSize() { return documentCacheMaxDiskSize; }
+    public void setDocumentCacheMaxDiskSize(String documentCacheMaxDiskSize) { this.documentCacheMaxDiskSize = documentCacheMaxDiskSize; }
+    public String getDocumentCacheMaxMemorySize() { return documentCacheMaxMemorySize; }
+    public void setDocumentCacheMaxMemorySize(String documentCacheMaxMemorySize) { this.documentCacheMaxMemorySize = documentCacheMaxMemorySize; }
+    public boolean isIndexingEnabled() { return indexingEnabled; }
+    public void setIndexingEnabled(boolean indexingEnabled) { this.indexingEnabled = indexingEnabled; }
+    public String getChunkBytes() { return chunkBytes; }
+    public void setChunkBytes(String chunkBytes) { this.chunkBytes = chunkBytes; }
+    public String getMaxLocalFileSize() { return maxLocalFileSize; }
+    public void setMaxLocalFileSize(String maxLocalFileSize) { this.maxLocalFileSize = maxLocalFileSize; }
+    public String getMaxLocalLineBytes() { return maxLocalLineBytes; }
+    public void setMaxLocalLineBytes(String maxLocalLineBytes) { this.maxLocalLineBytes = maxLocalLineBytes; }
+    public List<String> getLocalRoots() { return localRoots; }
+    public void setLocalRoots(List<String> localRoots) { this.localRoots = localRoots; }
+    public String getResultsHeapBudget() { return resultsHeapBudget; }
+    public void setResultsHeapBudget(String resultsHeapBudget) { this.resultsHeapBudget = resultsHeapBudget; }
+    public String getSpillDir() { return spillDir; }
+    public void setSpillDir(String spillDir) { this.spillDir = spillDir; }
+    public boolean isAdmissionEnabled() { return admissionEnabled; }
+    public void setAdmissionEnabled(boolean admissionEnabled) { this.admissionEnabled = admissionEnabled; }
+    public int getMaxConcurrentAnalyses() { return maxConcurrentAnalyses; }
+    public void setMaxConcurrentAnalyses(int maxConcurrentAnalyses) { this.maxConcurrentAnalyses = maxConcurrentAnalyses; }
+    public String getMaxInFlightBytes() { return maxInFlightBytes; }
+    public void setMaxInFlightBytes(String maxInFlightBytes) { this.maxInFlightBytes = maxInFlightBytes; }
+    public int getMaxQueuedRequests() { return maxQueuedRequests; }
+    public void setMaxQueuedRequests(int maxQueuedRequests) { this.maxQueuedRequests = maxQueuedRequests; }
+    public String getMaxQueueWait() { return maxQueueWait; }
+    public void setMaxQueueWait(String maxQueueWait) { this.maxQueueWait = maxQueueWait; }
+    public int getMaxConcurrentJobs() { return maxConcurrentJobs; }
+    public void setMaxConcurrentJobs(int maxConcurrentJobs) { this.maxConcurrentJobs = maxConcurrentJobs; }
+    public int getMaxQueuedJobs() { return maxQueuedJobs; }
+    public void setMaxQueuedJobs(int maxQueuedJobs) { this.maxQueuedJobs = maxQueuedJobs; }
+    public String getJobTimeout() { return jobTimeout; }
+    public void setJobTimeout(String jobTimeout) { this.jobTimeout = jobTimeout; }
+    public String getJobResultTtl() { return jobResultTtl; }
+    public void setJobResultTtl(String jobResultTtl) { this.jobResultTtl = jobResultTtl; }
+    public int getJobMaxRetained() { return jobMaxRetained; }
+    public void setJobMaxRetained(int jobMaxRetained) { this.jobMaxRetained = jobMaxRetained; }
+    public String getJobResultsMaxMemory() { return jobResultsMaxMemory; }
+    public void setJobResultsMaxMemory(String jobResultsMaxMemory) { this.jobResultsMaxMemory = jobResultsMaxMemory; }
+    public boolean isJobSpillEnabled() { return jobSpillEnabled; }
+    public void setJobSpillEnabled(boolean jobSpillEnabled) { this.jobSpillEnabled = jobSpillEnabled; }
+    public String getJobDir() { return jobDir; }
+    public void setJobDir(String jobDir) { this.jobDir = jobDir; }
+    public int getBatchMaxConcurrentDocuments() { return batchMaxConcurrentDocuments; }
+    public void setBatchMaxConcurrentDocuments(int batchMaxConcurrentDocuments) { this.batchMaxConcurrentDocuments = batchMaxConcurrentDocuments; }
+    public int getBatchMaxDocuments() { return batchMaxDocuments; }
+    public void setBatchMaxDocuments(int batchMaxDocuments) { this.batchMaxDocuments = batchMaxDocuments; }
+    public int getBatchMaxQueuedDocuments() { return batchMaxQueuedDocuments; }
+    public void setBatchMaxQueuedDocuments(int batchMaxQueuedDocuments) { this.batchMaxQueuedDocuments = batchMaxQueuedDocuments; }
+    public String getBatchTimeout() { return batchTimeout; }
+    public void setBatchTimeout(String batchTimeout) { this.batchTimeout = batchTimeout; }
+    public String getIndexDir() { return indexDir; }
+    public void setIndexDir(String indexDir) { this.indexDir = indexDir; }
+    public String getIndexBuilderMaxMemory() { return indexBuilderMaxMemory; }
+    public void setIndexBuilderMaxMemory(String indexBuilderMaxMemory) { this.indexBuilderMaxMemory = indexBuilderMaxMemory; }
+    public int getIncrementalMaxEntries() { return incrementalMaxEntries; }
+    public void setIncrementalMaxEntries(int incrementalMaxEntries) { this.incrementalMaxEntries = incrementalMaxEntries; }
+    public String getIncrementalMaxMemory() { return incrementalMaxMemory; }
+    public void setIncrementalMaxMemory(String incrementalMaxMemory) { this.incrementalMaxMemory = incrementalMaxMemory; }
 }
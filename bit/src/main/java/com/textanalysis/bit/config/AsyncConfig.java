@@ -1,28 +1,71 @@
 package com.textanalysis.bit.config;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 
 @Configuration
 public class AsyncConfig {
     
+    private static final Logger logger = LoggerFactory.getLogger(AsyncConfig.class);
+    
     private final AppConfig appConfig;
     
     public AsyncConfig(AppConfig appConfig) {
         this.appConfig = appConfig;
     }
     
+    /**
+     * CPU-bound matching pool, always platform threads. A work-stealing pool, so the parts a
+     * large chunk is split into are balanced across all cores.
+     */
     @Bean(name = "textProcessingExecutor")
-    public Executor textProcessingExecutor() {
+    public ForkJoinPool textProcessingExecutor() {
+        int threads = appConfig.getThreadPoolSize() > 0
+            ? appConfig.getThreadPoolSize()
+            : Runtime.getRuntime().availableProcessors();
+        
+        ForkJoinPool.ForkJoinWorkerThreadFactory threadFactory = pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("TextProcessor-" + thread.getPoolIndex());
+            return thread;
+        };
+        logger.info("Matcher pool: {} threads", threads);
+        return new ForkJoinPool(threads, threadFactory, null, true);
+    }
+    
+    /**
+     * Background analyses submitted through the job API. A full queue rejects new jobs.
+     */
+    @Bean(name = "analysisJobExecutor")
+    public Executor analysisJobExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(appConfig.getMaxConcurrentJobs());
+        executor.setMaxPoolSize(appConfig.getMaxConcurrentJobs());
+        executor.setQueueCapacity(appConfig.getMaxQueuedJobs());
+        executor.setThreadNamePrefix("AnalysisJob-");
+        executor.initialize();
+        return executor;
+    }
+    
+    /**
+     * Documents of batch requests, shared by all batches. The thread count is the budget of
+     * concurrent downloads; further documents wait in the bounded queue, and are rejected
+     * when it is full.
+     */
+    @Bean(name = "batchDocumentExecutor")
+    public Executor batchDocumentExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(5);
-        executor.setMaxPoolSize(appConfig.getThreadPoolSize());
-        executor.setQueueCapacity(50);
-        executor.setKeepAliveSeconds(60);
-        executor.setThreadNamePrefix("TextProcessor-");
+        executor.setCorePoolSize(appConfig.getBatchMaxConcurrentDocuments());
+        executor.setMaxPoolSize(appConfig.getBatchMaxConcurrentDocuments());
+        executor.setQueueCapacity(appConfig.getBatchMaxQueuedDocuments());
+        executor.setThreadNamePrefix("BatchDocument-");
         executor.initialize();
         return executor;
     }
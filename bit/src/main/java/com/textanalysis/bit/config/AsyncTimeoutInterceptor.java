@@ -0,0 +1,27 @@
+package com.textanalysis.bit.config;
+
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Lets one handler give its async response a timeout other than
+ * spring.mvc.async.request-timeout: a handler that returns a StreamingResponseBody stores
+ * the timeout in milliseconds under {@link #TIMEOUT_ATTRIBUTE}, and it is applied just
+ * before the async processing starts.
+ */
+public class AsyncTimeoutInterceptor implements CallableProcessingInterceptor {
+    
+    public static final String TIMEOUT_ATTRIBUTE = AsyncTimeoutInterceptor.class.getName() + ".timeout";
+    
+    @Override
+    public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+        Object timeout = request.getAttribute(TIMEOUT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (timeout instanceof Long millis && request instanceof AsyncWebRequest asyncRequest) {
+            asyncRequest.setTimeout(millis);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.textanalysis.bit.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.textanalysis.bit.model.dto.TextAnalysisResponse;
+import com.textanalysis.bit.service.AdmissionService;
+import com.textanalysis.bit.service.AnalysisMetrics;
+import com.textanalysis.bit.service.DocumentCacheService;
+import com.textanalysis.bit.service.JobService;
+import com.textanalysis.bit.service.MatcherService;
+import com.textanalysis.bit.service.TextReaderService;
+import com.textanalysis.bit.service.matcher.WordMatcherCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class MetricsConfig {
+    
+    /**
+     * Gauges and counters read from the pools, caches and admission state on every scrape
+     */
+    @Bean
+    public MeterBinder textAnalysisMeterBinder(
+            @Qualifier("textProcessingExecutor") ForkJoinPool matcherPool,
+            @Qualifier("analysisJobExecutor") Executor jobExecutor,
+            MatcherService matcherService,
+            DocumentCacheService documentCache,
+            TextReaderService textReader,
+            AdmissionService admissionService,
+            JobService jobService) {
+        return registry -> {
+            // Queue depth, active and running threads, steals
+            new ExecutorServiceMetrics(matcherPool, "textProcessing", List.of()).bindTo(registry);
+            if (jobExecutor instanceof ThreadPoolTaskExecutor taskExecutor) {
+                new ExecutorServiceMetrics(taskExecutor.getThreadPoolExecutor(), "analysisJob", List.of()).bindTo(registry);
+            }
+            
+            WordMatcherCache matcherCache = matcherService.getMatcherCache();
+            FunctionCounter.builder("text.analysis.matcher.cache.requests", matcherCache, WordMatcherCache::getHits)
+                .tag("result", "hit").register(registry);
+            FunctionCounter.builder("text.analysis.matcher.cache.requests", matcherCache, WordMatcherCache::getMisses)
+                .tag("result", "miss").register(registry);
+            Gauge.builder("text.analysis.matcher.cache.size", matcherCache, WordMatcherCache::getSizeBytes)
+                .baseUnit("bytes").register(registry);
+            
+            Gauge.builder("text.analysis.document.cache.size", documentCache, DocumentCacheService::getDiskBytes)
+                .tag("tier", "disk").baseUnit("bytes").register(registry);
+            Gauge.builder("text.analysis.document.cache.size", documentCache, DocumentCacheService::getMemoryBytes)
+                .tag("tier", "memory").baseUnit("bytes").register(registry);
+            FunctionCounter.builder("text.analysis.document.cache.requests", documentCache, DocumentCacheService::getHits)
+                .tag("result", "hit").register(registry);
+            FunctionCounter.builder("text.analysis.document.cache.requests", documentCache, DocumentCacheService::getMisses)
+                .tag("result", "miss").register(registry);
+            
+            // Downloads only: time blocked on body bytes, apart from chunking
+            FunctionTimer.builder("text.analysis.fetch", textReader,
+                    TextReaderService::getFetchCount, TextReaderService::getFetchNanos, TimeUnit.NANOSECONDS)
+                .description("Time downloads spent waiting for the network").register(registry);
+            
+            Gauge.builder("text.analysis.admission.active", admissionService, AdmissionService::getActiveCount)
+                .register(registry);
+            Gauge.builder("text.analysis.admission.queued", admissionService, AdmissionService::getQueuedCount)
+                .register(registry);
+            Gauge.builder("text.analysis.admission.in.flight", admissionService, AdmissionService::getInFlightBytes)
+                .baseUnit("bytes").register(registry);
+            
+            Gauge.builder("text.analysis.jobs", jobService, JobService::getJobCount).register(registry);
+            Gauge.builder("text.analysis.jobs.retained", jobService, JobService::getRetainedHeapBytes)
+                .baseUnit("bytes").register(registry);
+        };
+    }
+    
+    /**
+     * Replaces Boot's Jackson converter with one that times writing analysis responses
+     */
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper,
+                                                                                 AnalysisMetrics metrics) {
+        return new MappingJackson2HttpMessageConverter(objectMapper) {
+            @Override
+            protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+                if (!(object instanceof TextAnalysisResponse)) {
+                    super.writeInternal(object, type, outputMessage);
+                    return;
+                }
+                long start = System.nanoTime();
+                try {
+                    super.writeInternal(object, type, outputMessage);
+                } finally {
+                    metrics.getSerializeTimer().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,43 @@
+package com.textanalysis.bit.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.textanalysis.bit.controller.encoding.BinaryMatchesMessageConverter;
+import com.textanalysis.bit.controller.encoding.ColumnarJsonMessageConverter;
+import com.textanalysis.bit.service.AnalysisMetrics;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+    
+    private final ObjectMapper objectMapper;
+    private final AnalysisMetrics metrics;
+    
+    public WebConfig(ObjectMapper objectMapper, AnalysisMetrics metrics) {
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
+    }
+    
+    /**
+     * Compact match encodings, chosen by the Accept header. They go before Jackson, which
+     * would otherwise claim the +json type; clients that accept anything still get plain
+     * JSON because /match lists it first in its produces.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(0, new ColumnarJsonMessageConverter(objectMapper, metrics));
+        converters.add(1, new BinaryMatchesMessageConverter(metrics));
+    }
+    
+    /**
+     * Per-endpoint timeouts for streamed responses, see {@link AsyncTimeoutInterceptor}
+     */
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new AsyncTimeoutInterceptor());
+    }
+}
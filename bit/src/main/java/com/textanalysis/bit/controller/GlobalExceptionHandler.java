@@ -1,10 +1,17 @@
 package com.textanalysis.bit.controller;
+import com.textanalysis.bit.exception.AdmissionRejectedException;
+import com.textanalysis.bit.exception.AnalysisTimeoutException;
+import com.textanalysis.bit.exception.BatchTooLargeException;
 import com.textanalysis.bit.exception.FileSizeExceededException;
 import com.textanalysis.bit.exception.InvalidUrlException;
+import com.textanalysis.bit.exception.JobNotFinishedException;
+import com.textanalysis.bit.exception.JobNotFoundException;
 import com.textanalysis.bit.exception.TextAnalysisException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -28,7 +35,7 @@ public class GlobalExceptionHandler {
             ex.getMessage(),
             LocalDateTime.now()
         );
-        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+        return status(HttpStatus.BAD_REQUEST).body(error);
     }
     
     @ExceptionHandler(FileSizeExceededException.class)
@@ -39,7 +46,64 @@ public class GlobalExceptionHandler {
             ex.getMessage(),
             LocalDateTime.now()
         );
-        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+        return status(HttpStatus.BAD_REQUEST).body(error);
+    }
+    
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<ErrorResponse> handleAdmissionRejectedException(AdmissionRejectedException ex) {
+        logger.warn("Admission rejected: {}", ex.getMessage());
+        ErrorResponse error = new ErrorResponse(
+            "TOO_MANY_REQUESTS",
+            ex.getMessage(),
+            LocalDateTime.now()
+        );
+        return status(HttpStatus.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+            .body(error);
+    }
+    
+    @ExceptionHandler(AnalysisTimeoutException.class)
+    public ResponseEntity<ErrorResponse> handleAnalysisTimeoutException(AnalysisTimeoutException ex) {
+        logger.error("Analysis timeout: {}", ex.getMessage());
+        ErrorResponse error = new ErrorResponse(
+            "REQUEST_TIMEOUT",
+            ex.getMessage(),
+            LocalDateTime.now()
+        );
+        return status(HttpStatus.GATEWAY_TIMEOUT).body(error);
+    }
+    
+    @ExceptionHandler(JobNotFoundException.class)
+    public ResponseEntity<ErrorResponse> handleJobNotFoundException(JobNotFoundException ex) {
+        logger.error("Job not found: {}", ex.getMessage());
+        ErrorResponse error = new ErrorResponse(
+            "JOB_NOT_FOUND",
+            ex.getMessage(),
+            LocalDateTime.now()
+        );
+        return status(HttpStatus.NOT_FOUND).body(error);
+    }
+    
+    @ExceptionHandler(JobNotFinishedException.class)
+    public ResponseEntity<ErrorResponse> handleJobNotFinishedException(JobNotFinishedException ex) {
+        logger.error("Job not finished: {}", ex.getMessage());
+        ErrorResponse error = new ErrorResponse(
+            "JOB_NOT_FINISHED",
+            ex.getMessage(),
+            LocalDateTime.now()
+        );
+        return status(HttpStatus.CONFLICT).body(error);
+    }
+    
+    @ExceptionHandler(BatchTooLargeException.class)
+    public ResponseEntity<ErrorResponse> handleBatchTooLargeException(BatchTooLargeException ex) {
+        logger.error("Batch too large: {}", ex.getMessage());
+        ErrorResponse error = new ErrorResponse(
+            "BATCH_TOO_LARGE",
+            ex.getMessage(),
+            LocalDateTime.now()
+        );
+        return status(HttpStatus.BAD_REQUEST).body(error);
     }
     
     @ExceptionHandler(TextAnalysisException.class)
@@ -50,7 +114,7 @@ public class GlobalExceptionHandler {
             ex.getMessage(),
             LocalDateTime.now()
         );
-        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        return status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
     }
     
     @ExceptionHandler(MethodArgumentNotValidException.class)
@@ -71,7 +135,7 @@ public class GlobalExceptionHandler {
             LocalDateTime.now()
         );
         
-        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+        return status(HttpStatus.BAD_REQUEST).body(errorResponse);
     }
     
     @ExceptionHandler(Exception.class)
@@ -82,7 +146,14 @@ public class GlobalExceptionHandler {
             "An unexpected error occurred",
             LocalDateTime.now()
         );
-        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        return status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+    }
+    
+    /**
+     * Errors are always JSON, also for clients that asked for a compact match encoding
+     */
+    private static ResponseEntity.BodyBuilder status(HttpStatus status) {
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON);
     }
     
     public static class ErrorResponse {
@@ -0,0 +1,121 @@
+package com.textanalysis.bit.controller;
+
+import com.textanalysis.bit.model.dto.JobResultPage;
+import com.textanalysis.bit.model.dto.JobStatus;
+import com.textanalysis.bit.model.dto.TextAnalysisRequest;
+import com.textanalysis.bit.model.dto.WordCount;
+import com.textanalysis.bit.model.dto.WordLocation;
+import com.textanalysis.bit.model.dto.WordLocationPage;
+import com.textanalysis.bit.model.dto.WordMatch;
+import com.textanalysis.bit.model.internal.AnalysisJob;
+import com.textanalysis.bit.service.JobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.util.List;
+
+@RestController
+@RequestMapping("/text-analysis/jobs")
+@Tag(name = "Analysis Jobs", description = "Asynchronous API for analyses that take too long for one request")
+public class JobController {
+    
+    private static final Logger logger = LoggerFactory.getLogger(JobController.class);
+    private static final int MAX_WORDS_PER_PAGE = 1000;
+    private static final int MAX_LOCATIONS_PER_PAGE = 10000;
+    
+    private final JobService jobService;
+    
+    public JobController(JobService jobService) {
+        this.jobService = jobService;
+    }
+    
+    @PostMapping
+    @Operation(summary = "Submit an analysis job",
+               description = "Starts the analysis in the background and returns the job id to poll")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "202", description = "Job accepted"),
+        @ApiResponse(responseCode = "400", description = "Invalid request parameters"),
+        @ApiResponse(responseCode = "429", description = "Too many jobs are queued")
+    })
+    public ResponseEntity<JobStatus> submitJob(@Valid @RequestBody TextAnalysisRequest request) {
+        logger.info("Received analysis job for URL: {}", request.getTextUrl());
+        
+        AnalysisJob job = jobService.submit(request);
+        return ResponseEntity.accepted()
+            .location(URI.create("/text-analysis/jobs/" + job.getId()))
+            .body(toStatus(job));
+    }
+    
+    @GetMapping("/{jobId}")
+    @Operation(summary = "Get job status and progress")
+    public ResponseEntity<JobStatus> getJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(toStatus(jobService.getJob(jobId)));
+    }
+    
+    @GetMapping("/{jobId}/results")
+    @Operation(summary = "List the words a finished job found, with match counts, one page at a time")
+    public ResponseEntity<JobResultPage> getResults(@PathVariable String jobId,
+                                                    @RequestParam(defaultValue = "0") int page,
+                                                    @RequestParam(defaultValue = "100") int size) {
+        List<WordMatch> results = jobService.getResults(jobId);
+        int pageSize = Math.max(1, Math.min(size, MAX_WORDS_PER_PAGE));
+        int from = (int) Math.min((long) Math.max(0, page) * pageSize, results.size());
+        int to = Math.min(from + pageSize, results.size());
+        
+        List<WordCount> words = results.subList(from, to).stream()
+            .map(match -> new WordCount(match.getWord(), match.getCount()))
+            .toList();
+        return ResponseEntity.ok(new JobResultPage(jobId, page, pageSize, results.size(), words));
+    }
+    
+    @GetMapping("/{jobId}/results/{word}")
+    @Operation(summary = "Get a slice of one word's locations from a finished job")
+    public ResponseEntity<WordLocationPage> getWordResults(@PathVariable String jobId,
+                                                           @PathVariable String word,
+                                                           @RequestParam(defaultValue = "0") int offset,
+                                                           @RequestParam(defaultValue = "1000") int limit) {
+        String normalized = word.toLowerCase();
+        List<WordLocation> locations = jobService.getResults(jobId).stream()
+            .filter(match -> match.getWord().equals(normalized))
+            .findFirst()
+            .map(WordMatch::getLocations)
+            .orElse(List.of());
+        int from = Math.min(Math.max(0, offset), locations.size());
+        int to = Math.min(from + Math.max(1, Math.min(limit, MAX_LOCATIONS_PER_PAGE)), locations.size());
+        
+        return ResponseEntity.ok(new WordLocationPage(jobId, normalized, from, locations.size(),
+            locations.subList(from, to)));
+    }
+    
+    @DeleteMapping("/{jobId}")
+    @Operation(summary = "Cancel a job and discard its results")
+    public ResponseEntity<Void> cancelJob(@PathVariable String jobId) {
+        jobService.cancel(jobId);
+        return ResponseEntity.noContent().build();
+    }
+    
+    private static JobStatus toStatus(AnalysisJob job) {
+        JobStatus status = new JobStatus();
+        status.setJobId(job.getId());
+        status.setState(job.getState().name());
+        status.setTextUrl(job.getRequest().getTextUrl());
+        status.setSubmittedAt(job.getSubmittedAt());
+        status.setStartedAt(job.getStartedAt());
+        status.setFinishedAt(job.getFinishedAt());
+        status.setChunksRead(job.getProgress().getChunksRead());
+        status.setChunksMatched(job.getProgress().getChunksMatched());
+        status.setBytesRead(job.getProgress().getBytesRead());
+        status.setMatchesFound(job.getProgress().getMatchesFound());
+        status.setProcessingTimeMs(job.getProcessingTimeMs());
+        status.setError(job.getError());
+        return status;
+    }
+}
@@ -1,17 +1,35 @@
 package com.textanalysis.bit.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.textanalysis.bit.config.AsyncTimeoutInterceptor;
+import com.textanalysis.bit.controller.encoding.BinaryMatchesMessageConverter;
+import com.textanalysis.bit.controller.encoding.ColumnarJsonMessageConverter;
+import com.textanalysis.bit.model.dto.AnalysisSummary;
+import com.textanalysis.bit.model.dto.BatchAnalysisRequest;
 import com.textanalysis.bit.model.dto.TextAnalysisRequest;
 import com.textanalysis.bit.model.dto.TextAnalysisResponse;
+import com.textanalysis.bit.model.dto.WordMatch;
+import com.textanalysis.bit.service.AdmissionService;
+import com.textanalysis.bit.service.AnalysisMetrics;
+import com.textanalysis.bit.service.BatchAnalysisService;
 import com.textanalysis.bit.service.TextAnalysisService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/text-analysis")
@@ -21,18 +39,33 @@ public class TextAnalysisController {
     private static final Logger logger = LoggerFactory.getLogger(TextAnalysisController.class);
     
     private final TextAnalysisService textAnalysisService;
+    private final BatchAnalysisService batchAnalysisService;
+    private final ObjectMapper objectMapper;
+    private final AnalysisMetrics metrics;
     
-    public TextAnalysisController(TextAnalysisService textAnalysisService) {
+    public TextAnalysisController(TextAnalysisService textAnalysisService, BatchAnalysisService batchAnalysisService,
+                                  ObjectMapper objectMapper, AnalysisMetrics metrics) {
         this.textAnalysisService = textAnalysisService;
+        this.batchAnalysisService = batchAnalysisService;
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
     }
     
-    @PostMapping("/match")
+    @PostMapping(value = "/match", produces = {
+        MediaType.APPLICATION_JSON_VALUE,
+        ColumnarJsonMessageConverter.MEDIA_TYPE_VALUE,
+        BinaryMatchesMessageConverter.MEDIA_TYPE_VALUE
+    })
     @Operation(summary = "Find words in text from URL", 
-               description = "Downloads text from the provided URL and searches for specified words")
+               description = "Downloads text from the provided URL and searches for specified words. "
+                   + "The Accept header selects the encoding: application/json (default), "
+                   + ColumnarJsonMessageConverter.MEDIA_TYPE_VALUE + " (delta-encoded offset arrays per word) or "
+                   + BinaryMatchesMessageConverter.MEDIA_TYPE_VALUE + " (varint binary layout).")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Analysis completed successfully"),
         @ApiResponse(responseCode = "400", description = "Invalid request parameters"),
         @ApiResponse(responseCode = "404", description = "Text URL not found"),
+        @ApiResponse(responseCode = "429", description = "Server is overloaded, retry after the Retry-After delay"),
         @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     public ResponseEntity<TextAnalysisResponse> matchWords(@Valid @RequestBody TextAnalysisRequest request) {
@@ -43,4 +76,99 @@ public class TextAnalysisController {
         logger.info("Text analysis completed successfully");
         return ResponseEntity.ok(response);
     }
+    
+    @PostMapping(value = "/match/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Find words in text from URL, streaming the matches",
+               description = "Same search as /match, but writes newline-delimited JSON while the text is processed: "
+                   + "one {word, locations} record per word and chunk in document order, then a summary record "
+                   + "with status, processingTimeMs and totalMatches. Failures after the first byte are reported "
+                   + "as a summary record with status ERROR.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Matches are being streamed"),
+        @ApiResponse(responseCode = "400", description = "Invalid request parameters"),
+        @ApiResponse(responseCode = "429", description = "Server is overloaded, retry after the Retry-After delay")
+    })
+    public ResponseEntity<StreamingResponseBody> matchWordsStream(@Valid @RequestBody TextAnalysisRequest request) {
+        logger.info("Received streaming text analysis request for URL: {}", request.getTextUrl());
+        
+        // Admit before answering, so an overloaded server can still respond with 429
+        AdmissionService.Permit permit = textAnalysisService.admit(request);
+        StreamingResponseBody body = out -> {
+            AnalysisSummary summary;
+            try (permit) {
+                summary = textAnalysisService.analyzeText(request, matches -> {
+                    try {
+                        long start = System.nanoTime();
+                        for (WordMatch match : matches) {
+                            writeRecord(out, match);
+                        }
+                        out.flush();
+                        metrics.getSerializeTimer().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                logger.warn("Client went away during streaming analysis: {}", e.getMessage());
+                return;
+            } catch (RuntimeException e) {
+                summary = new AnalysisSummary("ERROR", 0, 0);
+                summary.setMessage(e.getMessage());
+            }
+            writeRecord(out, summary);
+            out.flush();
+        };
+        
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+    
+    @PostMapping(value = "/match/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Find one word list in many texts",
+               description = "Compiles the words once and analyzes every URL, several at a time, writing "
+                   + "newline-delimited JSON: one {index, textUrl, status, processingTimeMs, matches} record per "
+                   + "document as soon as it is done, so in completion order, then a summary record. A failed "
+                   + "document gets a record with status ERROR and a message; the summary status is then "
+                   + "PARTIAL_FAILURE. The whole batch is bounded by batch-timeout.")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Document results are being streamed"),
+        @ApiResponse(responseCode = "400", description = "Invalid request parameters or too many URLs")
+    })
+    public ResponseEntity<StreamingResponseBody> matchWordsBatch(@Valid @RequestBody BatchAnalysisRequest request,
+                                                                 HttpServletRequest servletRequest) {
+        logger.info("Received batch text analysis request for {} URLs", request.getTextUrls().size());
+        
+        batchAnalysisService.validate(request);
+        // A batch outlives spring.mvc.async.request-timeout, which is sized for one document
+        servletRequest.setAttribute(AsyncTimeoutInterceptor.TIMEOUT_ATTRIBUTE, batchAnalysisService.getResponseTimeoutMillis());
+        StreamingResponseBody body = out -> {
+            AnalysisSummary summary;
+            try {
+                summary = batchAnalysisService.analyze(request, result -> {
+                    try {
+                        long start = System.nanoTime();
+                        writeRecord(out, result);
+                        out.flush();
+                        metrics.getSerializeTimer().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                logger.warn("Client went away during batch analysis: {}", e.getMessage());
+                return;
+            } catch (RuntimeException e) {
+                summary = new AnalysisSummary("ERROR", 0, 0);
+                summary.setMessage(e.getMessage());
+            }
+            writeRecord(out, summary);
+            out.flush();
+        };
+        
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+    
+    private void writeRecord(OutputStream out, Object record) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(record));
+        out.write('\n');
+    }
 }
@@ -0,0 +1,83 @@
+package com.textanalysis.bit.controller.encoding;
+
+import com.textanalysis.bit.model.dto.TextAnalysisResponse;
+import com.textanalysis.bit.model.dto.WordLocation;
+import com.textanalysis.bit.model.dto.WordMatch;
+import com.textanalysis.bit.service.AnalysisMetrics;
+import org.springframework.http.MediaType;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Binary layout of unsigned LEB128 varints (7 bits per byte, low bits first, high bit set
+ * on all but the last byte) and length-prefixed UTF-8 strings:
+ * <pre>
+ * magic      "TAM" then version byte 2
+ * status     string
+ * timeMs     varint
+ * wordCount  varint
+ * per word:  word string, count varint, locationCount varint, then locationCount pairs of
+ *            (line delta varint, char offset delta varint)
+ * </pre>
+ * The count is the number of occurrences; a request that limits locations gets fewer of
+ * them. Version 1 had no separate location count.
+ * Deltas are taken from the previous location of the same word, starting from 0; offsets
+ * are ascending, so every delta is non-negative.
+ */
+public class BinaryMatchesMessageConverter extends MatchesMessageConverter {
+    
+    public static final String MEDIA_TYPE_VALUE = "application/vnd.textanalysis.matches";
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+    
+    static final byte[] MAGIC = {'T', 'A', 'M', 2};
+    
+    public BinaryMatchesMessageConverter(AnalysisMetrics metrics) {
+        super(metrics, MEDIA_TYPE);
+    }
+    
+    @Override
+    protected void encode(TextAnalysisResponse response, OutputStream body) throws IOException {
+        OutputStream out = new BufferedOutputStream(body, 64 * 1024);
+        out.write(MAGIC);
+        writeString(out, response.getStatus());
+        writeVarint(out, response.getProcessingTimeMs());
+        writeVarint(out, response.getMatches().size());
+        for (WordMatch match : response.getMatches()) {
+            List<WordLocation> locations = match.getLocations();
+            int count = locations.size();
+            writeString(out, match.getWord());
+            writeVarint(out, match.getCount());
+            writeVarint(out, count);
+            
+            int previousLine = 0;
+            long previousOffset = 0;
+            for (int i = 0; i < count; i++) {
+                int line = lineAt(locations, i);
+                long offset = offsetAt(locations, i);
+                writeVarint(out, line - previousLine);
+                writeVarint(out, offset - previousOffset);
+                previousLine = line;
+                previousOffset = offset;
+            }
+        }
+        out.flush();
+    }
+    
+    private static void writeString(OutputStream out, String value) throws IOException {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+    
+    static void writeVarint(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+}
@@ -0,0 +1,75 @@
+package com.textanalysis.bit.controller.encoding;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.textanalysis.bit.model.dto.TextAnalysisResponse;
+import com.textanalysis.bit.model.dto.WordLocation;
+import com.textanalysis.bit.model.dto.WordMatch;
+import com.textanalysis.bit.service.AnalysisMetrics;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Columnar JSON: per word, the line and character offsets as two parallel arrays of deltas
+ * from the previous location (the first entry is absolute). Offsets are ascending, so both
+ * arrays hold small non-negative numbers; a prefix sum restores the positions. The count is
+ * the number of occurrences, which is more than the arrays hold when locations were limited.
+ * <pre>
+ * {"status":"SUCCESS","processingTimeMs":42,"matches":[
+ *   {"word":"james","count":3,"lineOffsets":[0,2,0],"charOffsets":[4,96,11]}]}
+ * </pre>
+ */
+public class ColumnarJsonMessageConverter extends MatchesMessageConverter {
+    
+    public static final String MEDIA_TYPE_VALUE = "application/vnd.textanalysis.columnar+json";
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+    
+    private final ObjectMapper objectMapper;
+    
+    public ColumnarJsonMessageConverter(ObjectMapper objectMapper, AnalysisMetrics metrics) {
+        super(metrics, MEDIA_TYPE);
+        this.objectMapper = objectMapper;
+    }
+    
+    @Override
+    protected void encode(TextAnalysisResponse response, OutputStream out) throws IOException {
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            json.writeStartObject();
+            json.writeStringField("status", response.getStatus());
+            json.writeNumberField("processingTimeMs", response.getProcessingTimeMs());
+            json.writeArrayFieldStart("matches");
+            for (WordMatch match : response.getMatches()) {
+                List<WordLocation> locations = match.getLocations();
+                int count = locations.size();
+                json.writeStartObject();
+                json.writeStringField("word", match.getWord());
+                json.writeNumberField("count", match.getCount());
+                
+                json.writeArrayFieldStart("lineOffsets");
+                int previousLine = 0;
+                for (int i = 0; i < count; i++) {
+                    int line = lineAt(locations, i);
+                    json.writeNumber(line - previousLine);
+                    previousLine = line;
+                }
+                json.writeEndArray();
+                
+                json.writeArrayFieldStart("charOffsets");
+                long previousOffset = 0;
+                for (int i = 0; i < count; i++) {
+                    long offset = offsetAt(locations, i);
+                    json.writeNumber(offset - previousOffset);
+                    previousOffset = offset;
+                }
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.textanalysis.bit.controller.encoding;
+
+import com.textanalysis.bit.model.dto.TextAnalysisResponse;
+import com.textanalysis.bit.model.dto.WordLocation;
+import com.textanalysis.bit.model.internal.PackedLocationList;
+import com.textanalysis.bit.service.AnalysisMetrics;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base for the compact, write-only encodings of {@link TextAnalysisResponse}. Locations are
+ * read as primitives, so packed result lists are encoded without creating a WordLocation
+ * per match, and each response is timed as the serialize stage.
+ */
+public abstract class MatchesMessageConverter extends AbstractHttpMessageConverter<TextAnalysisResponse> {
+    
+    private final AnalysisMetrics metrics;
+    
+    protected MatchesMessageConverter(AnalysisMetrics metrics, MediaType mediaType) {
+        super(mediaType);
+        this.metrics = metrics;
+    }
+    
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return TextAnalysisResponse.class.isAssignableFrom(clazz);
+    }
+    
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+    
+    @Override
+    protected TextAnalysisResponse readInternal(Class<? extends TextAnalysisResponse> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException(getClass().getSimpleName() + " only writes responses", inputMessage);
+    }
+    
+    @Override
+    protected void writeInternal(TextAnalysisResponse response, HttpOutputMessage outputMessage) throws IOException {
+        long start = System.nanoTime();
+        try {
+            encode(response, outputMessage.getBody());
+        } finally {
+            metrics.getSerializeTimer().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+    
+    protected abstract void encode(TextAnalysisResponse response, OutputStream out) throws IOException;
+    
+    protected static int lineAt(List<WordLocation> locations, int index) {
+        return locations instanceof PackedLocationList packed
+            ? packed.lineAt(index)
+            : locations.get(index).getLineOffset();
+    }
+    
+    protected static long offsetAt(List<WordLocation> locations, int index) {
+        return locations instanceof PackedLocationList packed
+            ? packed.offsetAt(index)
+            : locations.get(index).getCharOffset();
+    }
+}
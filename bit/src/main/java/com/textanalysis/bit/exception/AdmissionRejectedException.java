@@ -0,0 +1,15 @@
+package com.textanalysis.bit.exception;
+
+public class AdmissionRejectedException extends TextAnalysisException {
+    
+    private final long retryAfterSeconds;
+    
+    public AdmissionRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+    
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
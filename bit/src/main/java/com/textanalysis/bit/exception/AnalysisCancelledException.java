@@ -0,0 +1,7 @@
+package com.textanalysis.bit.exception;
+
+public class AnalysisCancelledException extends TextAnalysisException {
+    public AnalysisCancelledException(String message) {
+        super(message);
+    }
+}
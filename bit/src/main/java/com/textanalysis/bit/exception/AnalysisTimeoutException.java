@@ -0,0 +1,7 @@
+package com.textanalysis.bit.exception;
+
+public class AnalysisTimeoutException extends TextAnalysisException {
+    public AnalysisTimeoutException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.textanalysis.bit.exception;
+
+public class BatchTooLargeException extends TextAnalysisException {
+    public BatchTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.textanalysis.bit.exception;
+
+public class JobNotFinishedException extends TextAnalysisException {
+    public JobNotFinishedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.textanalysis.bit.exception;
+
+public class JobNotFoundException extends TextAnalysisException {
+    public JobNotFoundException(String message) {
+        super(message);
+    }
+}
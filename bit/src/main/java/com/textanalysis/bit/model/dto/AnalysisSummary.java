@@ -0,0 +1,28 @@
+package com.textanalysis.bit.model.dto;
+
+/**
+ * Closing record of a streamed analysis
+ */
+public class AnalysisSummary {
+    private String status;
+    private long processingTimeMs;
+    private long totalMatches;
+    private String message;
+    
+    public AnalysisSummary() {}
+    
+    public AnalysisSummary(String status, long processingTimeMs, long totalMatches) {
+        this.status = status;
+        this.processingTimeMs = processingTimeMs;
+        this.totalMatches = totalMatches;
+    }
+    
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    public long getProcessingTimeMs() { return processingTimeMs; }
+    public void setProcessingTimeMs(long processingTimeMs) { this.processingTimeMs = processingTimeMs; }
+    public long getTotalMatches() { return totalMatches; }
+    public void setTotalMatches(long totalMatches) { this.totalMatches = totalMatches; }
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+}
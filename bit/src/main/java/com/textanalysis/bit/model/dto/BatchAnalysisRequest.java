@@ -0,0 +1,30 @@
+package com.textanalysis.bit.model.dto;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Pattern;
+import java.util.List;
+
+/**
+ * One word list to find in many texts
+ */
+public class BatchAnalysisRequest {
+    @NotEmpty(message = "Text URL list cannot be empty")
+    private List<@NotBlank(message = "Text URL is required")
+                 @Pattern(regexp = "^(https?|file)://.*", message = "URL must start with http://, https:// or file://")
+                 String> textUrls;
+    
+    @NotEmpty(message = "Words list cannot be empty")
+    private List<String> words;
+    
+    public BatchAnalysisRequest() {}
+    
+    public BatchAnalysisRequest(List<String> textUrls, List<String> words) {
+        this.textUrls = textUrls;
+        this.words = words;
+    }
+    
+    public List<String> getTextUrls() { return textUrls; }
+    public void setTextUrls(List<String> textUrls) { this.textUrls = textUrls; }
+    public List<String> getWords() { return words; }
+    public void setWords(List<String> words) { this.words = words; }
+}
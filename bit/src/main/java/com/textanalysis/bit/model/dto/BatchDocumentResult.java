@@ -0,0 +1,37 @@
+package com.textanalysis.bit.model.dto;
+
+import java.util.List;
+
+/**
+ * Result for one document of a batch; index is the document's position in the request
+ */
+public class BatchDocumentResult {
+    private int index;
+    private String textUrl;
+    private String status;
+    private long processingTimeMs;
+    private List<WordMatch> matches;
+    private String message;
+    
+    public BatchDocumentResult() {}
+    
+    public BatchDocumentResult(int index, String textUrl, String status, long processingTimeMs) {
+        this.index = index;
+        this.textUrl = textUrl;
+        this.status = status;
+        this.processingTimeMs = processingTimeMs;
+    }
+    
+    public int getIndex() { return index; }
+    public void setIndex(int index) { this.index = index; }
+    public String getTextUrl() { return textUrl; }
+    public void setTextUrl(String textUrl) { this.textUrl = textUrl; }
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    public long getProcessingTimeMs() { return processingTimeMs; }
+    public void setProcessingTimeMs(long processingTimeMs) { this.processingTimeMs = processingTimeMs; }
+    public List<WordMatch> getMatches() { return matches; }
+    public void setMatches(List<WordMatch> matches) { this.matches = matches; }
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+}
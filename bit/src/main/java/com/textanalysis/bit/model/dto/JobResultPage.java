@@ -0,0 +1,35 @@
+package com.textanalysis.bit.model.dto;
+
+import java.util.List;
+
+/**
+ * One page of the words a job found, with their match counts
+ */
+public class JobResultPage {
+    private String jobId;
+    private int page;
+    private int size;
+    private int totalWords;
+    private List<WordCount> words;
+    
+    public JobResultPage() {}
+    
+    public JobResultPage(String jobId, int page, int size, int totalWords, List<WordCount> words) {
+        this.jobId = jobId;
+        this.page = page;
+        this.size = size;
+        this.totalWords = totalWords;
+        this.words = words;
+    }
+    
+    public String getJobId() { return jobId; }
+    public void setJobId(String jobId) { this.jobId = jobId; }
+    public int getPage() { return page; }
+    public void setPage(int page) { this.page = page; }
+    public int getSize() { return size; }
+    public void setSize(int size) { this.size = size; }
+    public int getTotalWords() { return totalWords; }
+    public void setTotalWords(int totalWords) { this.totalWords = totalWords; }
+    public List<WordCount> getWords() { return words; }
+    public void setWords(List<WordCount> words) { this.words = words; }
+}
@@ -0,0 +1,46 @@
+package com.textanalysis.bit.model.dto;
+
+import java.time.LocalDateTime;
+
+public class JobStatus {
+    private String jobId;
+    private String state;
+    private String textUrl;
+    private LocalDateTime submittedAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private long chunksRead;
+    private long chunksMatched;
+    private long bytesRead;
+    private long matchesFound;
+    private long processingTimeMs;
+    private String error;
+    
+    public JobStatus() {}
+    
+    // Getters and Setters
+    public String getJobId() { return jobId; }
+    public void setJobId(String jobId) { this.jobId = jobId; }
+    public String getState() { return state; }
+    public void setState(String state) { this.state = state; }
+    public String getTextUrl() { return textUrl; }
+    public void setTextUrl(String textUrl) { this.textUrl = textUrl; }
+    public LocalDateTime getSubmittedAt() { return submittedAt; }
+    public void setSubmittedAt(LocalDateTime submittedAt) { this.submittedAt = submittedAt; }
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+    public LocalDateTime getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(LocalDateTime finishedAt) { this.finishedAt = finishedAt; }
+    public long getChunksRead() { return chunksRead; }
+    public void setChunksRead(long chunksRead) { this.chunksRead = chunksRead; }
+    public long getChunksMatched() { return chunksMatched; }
+    public void setChunksMatched(long chunksMatched) { this.chunksMatched = chunksMatched; }
+    public long getBytesRead() { return bytesRead; }
+    public void setBytesRead(long bytesRead) { this.bytesRead = bytesRead; }
+    public long getMatchesFound() { return matchesFound; }
+    public void setMatchesFound(long matchesFound) { this.matchesFound = matchesFound; }
+    public long getProcessingTimeMs() { return processingTimeMs; }
+    public void setProcessingTimeMs(long processingTimeMs) { this.processingTimeMs = processingTimeMs; }
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+}
@@ -2,16 +2,32 @@ package com.textanalysis.bit.model.dto;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import java.util.List;
 
 public class TextAnalysisRequest {
     @NotBlank(message = "Text URL is required")
-    @Pattern(regexp = "^https?://.*", message = "URL must start with http:// or https://")
+    @Pattern(regexp = "^(https?|file)://.*", message = "URL must start with http://, https:// or file://")
     private String textUrl;
     
     @NotEmpty(message = "Words list cannot be empty")
     private List<String> words;
     
+    /** Read only what was appended since the last incremental request for this URL and words */
+    private boolean incremental;
+    
+    /** Report how often each word occurs, without locations */
+    private boolean countsOnly;
+    
+    /** Report only this many words, those occurring most often */
+    @Positive(message = "topWords must be positive")
+    private Integer topWords;
+    
+    /** Report only the first this many locations of each word */
+    @PositiveOrZero(message = "maxLocationsPerWord cannot be negative")
+    private Integer maxLocationsPerWord;
+    
     public TextAnalysisRequest() {}
     
     public TextAnalysisRequest(String textUrl, List<String> words) {
@@ -23,4 +39,12 @@ public class TextAnalysisRequest {
     public void setTextUrl(String textUrl) { this.textUrl = textUrl; }
     public List<String> getWords() { return words; }
     public void setWords(List<String> words) { this.words = words; }
+    public boolean isIncremental() { return incremental; }
+    public void setIncremental(boolean incremental) { this.incremental = incremental; }
+    public boolean isCountsOnly() { return countsOnly; }
+    public void setCountsOnly(boolean countsOnly) { this.countsOnly = countsOnly; }
+    public Integer getTopWords() { return topWords; }
+    public void setTopWords(Integer topWords) { this.topWords = topWords; }
+    public Integer getMaxLocationsPerWord() { return maxLocationsPerWord; }
+    public void setMaxLocationsPerWord(Integer maxLocationsPerWord) { this.maxLocationsPerWord = maxLocationsPerWord; }
 }
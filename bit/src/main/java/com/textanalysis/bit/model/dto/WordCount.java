@@ -0,0 +1,18 @@
+package com.textanalysis.bit.model.dto;
+
+public class WordCount {
+    private String word;
+    private long count;
+    
+    public WordCount() {}
+    
+    public WordCount(String word, long count) {
+        this.word = word;
+        this.count = count;
+    }
+    
+    public String getWord() { return word; }
+    public void setWord(String word) { this.word = word; }
+    public long getCount() { return count; }
+    public void setCount(long count) { this.count = count; }
+}
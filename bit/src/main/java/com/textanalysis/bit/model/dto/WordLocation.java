@@ -2,17 +2,17 @@ package com.textanalysis.bit.model.dto;
 
 public class WordLocation {
     private int lineOffset;
-    private int charOffset;
+    private long charOffset;
     
     public WordLocation() {}
     
-    public WordLocation(int lineOffset, int charOffset) {
+    public WordLocation(int lineOffset, long charOffset) {
         this.lineOffset = lineOffset;
         this.charOffset = charOffset;
     }
     
     public int getLineOffset() { return lineOffset; }
     public void setLineOffset(int lineOffset) { this.lineOffset = lineOffset; }
-    public int getCharOffset() { return charOffset; }
-    public void setCharOffset(int charOffset) { this.charOffset = charOffset; }
+    public long getCharOffset() { return charOffset; }
+    public void setCharOffset(long charOffset) { this.charOffset = charOffset; }
 }
@@ -0,0 +1,35 @@
+package com.textanalysis.bit.model.dto;
+
+import java.util.List;
+
+/**
+ * A slice of one word's locations from a job's results
+ */
+public class WordLocationPage {
+    private String jobId;
+    private String word;
+    private int offset;
+    private int total;
+    private List<WordLocation> locations;
+    
+    public WordLocationPage() {}
+    
+    public WordLocationPage(String jobId, String word, int offset, int total, List<WordLocation> locations) {
+        this.jobId = jobId;
+        this.word = word;
+        this.offset = offset;
+        this.total = total;
+        this.locations = locations;
+    }
+    
+    public String getJobId() { return jobId; }
+    public void setJobId(String jobId) { this.jobId = jobId; }
+    public String getWord() { return word; }
+    public void setWord(String word) { this.word = word; }
+    public int getOffset() { return offset; }
+    public void setOffset(int offset) { this.offset = offset; }
+    public int getTotal() { return total; }
+    public void setTotal(int total) { this.total = total; }
+    public List<WordLocation> getLocations() { return locations; }
+    public void setLocations(List<WordLocation> locations) { this.locations = locations; }
+}
@@ -3,17 +3,26 @@ import java.util.List;
 
 public class WordMatch {
     private String word;
+    /** Occurrences of the word; more than the locations when the request limited them */
+    private long count;
     private List<WordLocation> locations;
     
     public WordMatch() {}
     
     public WordMatch(String word, List<WordLocation> locations) {
+        this(word, locations, locations.size());
+    }
+    
+    public WordMatch(String word, List<WordLocation> locations, long count) {
         this.word = word;
         this.locations = locations;
+        this.count = count;
     }
     
     public String getWord() { return word; }
     public void setWord(String word) { this.word = word; }
+    public long getCount() { return count; }
+    public void setCount(long count) { this.count = count; }
     public List<WordLocation> getLocations() { return locations; }
     public void setLocations(List<WordLocation> locations) { this.locations = locations; }
 }
@@ -0,0 +1,107 @@
+package com.textanalysis.bit.model.internal;
+
+import com.textanalysis.bit.model.dto.TextAnalysisRequest;
+import com.textanalysis.bit.model.dto.WordMatch;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * One asynchronous analysis: its request, live progress and, once it succeeded, the
+ * retained results. State changes are synchronized; reads see a consistent snapshot.
+ */
+public class AnalysisJob {
+    
+    public enum State {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED;
+        
+        public boolean isFinished() {
+            return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+        }
+    }
+    
+    private final String id;
+    private final TextAnalysisRequest request;
+    private final Deadline deadline;
+    private final AnalysisProgress progress = new AnalysisProgress();
+    private final LocalDateTime submittedAt = LocalDateTime.now();
+    
+    private State state = State.QUEUED;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private long finishedAtMillis;
+    private long processingTimeMs;
+    private String error;
+    private List<WordMatch> results;
+    private long resultHeapBytes;
+    private Path resultFile;
+    
+    public AnalysisJob(String id, TextAnalysisRequest request, Deadline deadline) {
+        this.id = id;
+        this.request = request;
+        this.deadline = deadline;
+    }
+    
+    /**
+     * Moves a queued job to running; false if it was cancelled while queued
+     */
+    public synchronized boolean start() {
+        if (state != State.QUEUED) {
+            return false;
+        }
+        state = State.RUNNING;
+        startedAt = LocalDateTime.now();
+        return true;
+    }
+    
+    public synchronized void succeed(List<WordMatch> results, long processingTimeMs, long resultHeapBytes, Path resultFile) {
+        if (state.isFinished()) {
+            return;
+        }
+        this.results = results;
+        this.processingTimeMs = processingTimeMs;
+        this.resultHeapBytes = resultHeapBytes;
+        this.resultFile = resultFile;
+        finish(State.SUCCEEDED);
+    }
+    
+    public synchronized void fail(String error) {
+        if (state.isFinished()) {
+            return;
+        }
+        this.error = error;
+        finish(State.FAILED);
+    }
+    
+    /**
+     * Stops the job; a running analysis stops at its next deadline check
+     */
+    public synchronized void cancel() {
+        deadline.cancel("job " + id + " was cancelled");
+        if (!state.isFinished()) {
+            finish(State.CANCELLED);
+        }
+    }
+    
+    private void finish(State finalState) {
+        state = finalState;
+        finishedAt = LocalDateTime.now();
+        finishedAtMillis = System.currentTimeMillis();
+    }
+    
+    public String getId() { return id; }
+    public TextAnalysisRequest getRequest() { return request; }
+    public Deadline getDeadline() { return deadline; }
+    public AnalysisProgress getProgress() { return progress; }
+    public LocalDateTime getSubmittedAt() { return submittedAt; }
+    public synchronized State getState() { return state; }
+    public synchronized LocalDateTime getStartedAt() { return startedAt; }
+    public synchronized LocalDateTime getFinishedAt() { return finishedAt; }
+    public synchronized long getFinishedAtMillis() { return finishedAtMillis; }
+    public synchronized long getProcessingTimeMs() { return processingTimeMs; }
+    public synchronized String getError() { return error; }
+    public synchronized List<WordMatch> getResults() { return results; }
+    public synchronized long getResultHeapBytes() { return resultHeapBytes; }
+    public synchronized Path getResultFile() { return resultFile; }
+}
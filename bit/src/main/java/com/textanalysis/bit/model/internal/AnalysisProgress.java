@@ -0,0 +1,33 @@
+package com.textanalysis.bit.model.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters updated while one analysis runs, readable from any thread
+ */
+public class AnalysisProgress {
+    
+    private final AtomicLong chunksRead = new AtomicLong();
+    private final AtomicLong chunksMatched = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong matchesFound = new AtomicLong();
+    
+    public void chunkRead(TextChunk chunk) {
+        chunksRead.incrementAndGet();
+        bytesRead.addAndGet(chunk.getSourceBytes());
+    }
+    
+    public void chunkMatched(MatchBuffer buffer) {
+        chunksMatched.incrementAndGet();
+        matchesFound.addAndGet(buffer.getTotalCount());
+    }
+    
+    public long getChunksRead() { return chunksRead.get(); }
+    public long getChunksMatched() { return chunksMatched.get(); }
+    /**
+     * Bytes of the document read so far, as stored or downloaded after any content encoding
+     * was removed
+     */
+    public long getBytesRead() { return bytesRead.get(); }
+    public long getMatchesFound() { return matchesFound.get(); }
+}
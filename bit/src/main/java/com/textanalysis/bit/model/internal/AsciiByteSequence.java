@@ -0,0 +1,46 @@
+package com.textanalysis.bit.model.internal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Zero-copy character view over a buffer of ASCII bytes, e.g. a memory-mapped file region.
+ * Only valid when every byte is below 0x80, so each byte is exactly one char.
+ */
+public class AsciiByteSequence implements CharSequence {
+    
+    private final ByteBuffer bytes;
+    
+    public AsciiByteSequence(ByteBuffer bytes) {
+        this.bytes = bytes.slice();
+    }
+    
+    /**
+     * The underlying bytes
+     */
+    public ByteBuffer getBytes() {
+        return bytes.duplicate();
+    }
+    
+    @Override
+    public int length() {
+        return bytes.limit();
+    }
+    
+    @Override
+    public char charAt(int index) {
+        return (char) bytes.get(index);
+    }
+    
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new AsciiByteSequence(bytes.slice(start, end - start));
+    }
+    
+    @Override
+    public String toString() {
+        byte[] copy = new byte[bytes.limit()];
+        bytes.get(0, copy);
+        return new String(copy, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,63 @@
+package com.textanalysis.bit.model.internal;
+
+import com.textanalysis.bit.exception.AnalysisCancelledException;
+import com.textanalysis.bit.exception.AnalysisTimeoutException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time limit and cancellation flag shared by the reader and every matcher task of one
+ * analysis. Tasks call {@link #check()} at safe points and stop by throwing once the
+ * analysis has timed out or was cancelled.
+ */
+public class Deadline {
+    
+    private final long expiresAtNanos;
+    private final boolean bounded;
+    private volatile String cancelReason;
+    
+    private Deadline(long expiresAtNanos, boolean bounded) {
+        this.expiresAtNanos = expiresAtNanos;
+        this.bounded = bounded;
+    }
+    
+    public static Deadline after(long millis) {
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis), true);
+    }
+    
+    public static Deadline none() {
+        return new Deadline(0, false);
+    }
+    
+    /**
+     * Makes every later {@link #check()} fail; the first reason wins
+     */
+    public void cancel(String reason) {
+        if (cancelReason == null) {
+            cancelReason = reason;
+        }
+    }
+    
+    public boolean isOver() {
+        return cancelReason != null || (bounded && System.nanoTime() - expiresAtNanos >= 0);
+    }
+    
+    /**
+     * Milliseconds left, at least 1 while the deadline has not passed; Long.MAX_VALUE if unbounded
+     */
+    public long remainingMillis() {
+        if (!bounded) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAtNanos - System.nanoTime() + 999_999));
+    }
+    
+    public void check() {
+        if (cancelReason != null) {
+            throw new AnalysisCancelledException("Analysis cancelled: " + cancelReason);
+        }
+        if (bounded && System.nanoTime() - expiresAtNanos >= 0) {
+            throw new AnalysisTimeoutException("Analysis did not finish within the request timeout");
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.textanalysis.bit.model.internal;
+
+import java.util.Arrays;
+
+/**
+ * Matches found in one chunk, stored per word id as parallel primitive arrays of line
+ * numbers and global character offsets. Arrays are only allocated for words that occur
+ * and grow by doubling, so a hit costs no object allocation. Past the location limit a
+ * word's hits are only counted, so a buffer limited to zero locations is just counters.
+ */
+public class MatchBuffer {
+    
+    private static final int INITIAL_CAPACITY = 8;
+    
+    private final String[] words;
+    private final int locationLimit;
+    private final int[] occurrences;
+    private final int[] counts;
+    private final int[][] lines;
+    private final long[][] offsets;
+    private int totalCount;
+    
+    public MatchBuffer(String[] words) {
+        this(words, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * @param locationLimit locations kept per word, the first ones added
+     */
+    public MatchBuffer(String[] words, int locationLimit) {
+        this.words = words;
+        this.locationLimit = locationLimit;
+        this.occurrences = new int[words.length];
+        this.counts = new int[words.length];
+        this.lines = new int[words.length][];
+        this.offsets = new long[words.length][];
+    }
+    
+    public void add(int wordId, int lineNumber, long globalCharOffset) {
+        occurrences[wordId]++;
+        totalCount++;
+        int count = counts[wordId];
+        if (count == locationLimit) {
+            return;
+        }
+        if (count == 0 && lines[wordId] == null) {
+            int capacity = Math.min(INITIAL_CAPACITY, locationLimit);
+            lines[wordId] = new int[capacity];
+            offsets[wordId] = new long[capacity];
+        } else if (count == offsets[wordId].length) {
+            int capacity = (int) Math.min(count * 2L, locationLimit);
+            lines[wordId] = Arrays.copyOf(lines[wordId], capacity);
+            offsets[wordId] = Arrays.copyOf(offsets[wordId], capacity);
+        }
+        lines[wordId][count] = lineNumber;
+        offsets[wordId][count] = globalCharOffset;
+        counts[wordId] = count + 1;
+    }
+    
+    /**
+     * Appends all matches of a buffer for a later part of the text, built for the same words
+     */
+    public void addAll(MatchBuffer other) {
+        totalCount += other.totalCount;
+        for (int wordId = 0; wordId < words.length; wordId++) {
+            occurrences[wordId] += other.occurrences[wordId];
+            int count = counts[wordId];
+            int extra = Math.min(other.counts[wordId], locationLimit - count);
+            if (extra == 0) {
+                continue;
+            }
+            if (lines[wordId] == null) {
+                lines[wordId] = Arrays.copyOf(other.lines[wordId], extra);
+                offsets[wordId] = Arrays.copyOf(other.offsets[wordId], extra);
+            } else {
+                if (count + extra > offsets[wordId].length) {
+                    int capacity = (int) Math.min(Math.max(count + extra, count * 2L), locationLimit);
+                    lines[wordId] = Arrays.copyOf(lines[wordId], capacity);
+                    offsets[wordId] = Arrays.copyOf(offsets[wordId], capacity);
+                }
+                System.arraycopy(other.lines[wordId], 0, lines[wordId], count, extra);
+                System.arraycopy(other.offsets[wordId], 0, offsets[wordId], count, extra);
+            }
+            counts[wordId] = count + extra;
+        }
+    }
+    
+    // Getters; the arrays are the live backing storage, valid up to getCount(wordId).
+    // getOccurrences(wordId) also counts the hits past the location limit.
+    public int getWordCount() { return words.length; }
+    public String getWord(int wordId) { return words[wordId]; }
+    public int getCount(int wordId) { return counts[wordId]; }
+    public int getOccurrences(int wordId) { return occurrences[wordId]; }
+    public int[] getLines(int wordId) { return lines[wordId]; }
+    public long[] getOffsets(int wordId) { return offsets[wordId]; }
+    public int getTotalCount() { return totalCount; }
+}
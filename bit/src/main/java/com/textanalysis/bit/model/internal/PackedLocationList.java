@@ -0,0 +1,148 @@
+package com.textanalysis.bit.model.internal;
+
+import com.textanalysis.bit.model.dto.WordLocation;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Read-only list of locations stored as primitives instead of WordLocation objects. The
+ * first part may live in segments of packed records (an int line followed by a long
+ * offset): buffers spilled to disk and memory-mapped, or heap buffers left by
+ * {@link #append}. The rest is in heap arrays. Elements are created on access, so
+ * serializing the list does not keep one object per location alive.
+ */
+public class PackedLocationList extends AbstractList<WordLocation> implements RandomAccess {
+    
+    public static final int RECORD_BYTES = Integer.BYTES + Long.BYTES;
+    
+    private final ByteBuffer[] segments;
+    private final int[] segmentStarts;
+    private final int spilledSize;
+    private final int[] lines;
+    private final long[] offsets;
+    private final int heapSize;
+    
+    public PackedLocationList(int[] lines, long[] offsets, int size) {
+        this(List.of(), lines, offsets, size);
+    }
+    
+    /**
+     * @param segments spilled records in order, each buffer holding whole records from position 0
+     */
+    public PackedLocationList(List<ByteBuffer> segments, int[] lines, long[] offsets, int heapSize) {
+        this.segments = segments.toArray(new ByteBuffer[0]);
+        this.segmentStarts = new int[this.segments.length];
+        int total = 0;
+        for (int i = 0; i < this.segments.length; i++) {
+            segmentStarts[i] = total;
+            total += this.segments[i].limit() / RECORD_BYTES;
+        }
+        this.spilledSize = total;
+        this.lines = lines;
+        this.offsets = offsets;
+        this.heapSize = heapSize;
+    }
+    
+    @Override
+    public WordLocation get(int index) {
+        return new WordLocation(lineAt(index), offsetAt(index));
+    }
+    
+    /**
+     * Line of the location at the index, without creating a WordLocation
+     */
+    public int lineAt(int index) {
+        checkIndex(index);
+        if (index >= spilledSize) {
+            return lines[index - spilledSize];
+        }
+        int segment = segmentFor(index);
+        return segments[segment].getInt((index - segmentStarts[segment]) * RECORD_BYTES);
+    }
+    
+    /**
+     * Character offset of the location at the index, without creating a WordLocation
+     */
+    public long offsetAt(int index) {
+        checkIndex(index);
+        if (index >= spilledSize) {
+            return offsets[index - spilledSize];
+        }
+        int segment = segmentFor(index);
+        return segments[segment].getLong((index - segmentStarts[segment]) * RECORD_BYTES + Integer.BYTES);
+    }
+    
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+    }
+    
+    private int segmentFor(int index) {
+        int low = 0;
+        int high = segments.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (segmentStarts[mid] <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * This list followed by the locations of a later part of the document. This list's heap
+     * part becomes a segment and segments are shared, not copied; trailing segments are
+     * merged whenever the one before is no larger than the last, like a binary counter, so
+     * a list grown by many appends keeps few segments and copies each location only a
+     * logarithmic number of times.
+     */
+    public PackedLocationList append(PackedLocationList later) {
+        List<ByteBuffer> merged = new ArrayList<>(Arrays.asList(segments));
+        if (heapSize > 0) {
+            push(merged, toSegment(lines, offsets, heapSize));
+        }
+        for (ByteBuffer segment : later.segments) {
+            push(merged, segment);
+        }
+        return new PackedLocationList(merged, later.lines, later.offsets, later.heapSize);
+    }
+    
+    private static void push(List<ByteBuffer> segments, ByteBuffer segment) {
+        segments.add(segment);
+        while (segments.size() > 1
+                && segments.get(segments.size() - 2).limit() <= segments.get(segments.size() - 1).limit()) {
+            ByteBuffer last = segments.remove(segments.size() - 1);
+            ByteBuffer previous = segments.remove(segments.size() - 1);
+            segments.add(ByteBuffer.allocate(previous.limit() + last.limit())
+                .put(previous.duplicate().clear()).put(last.duplicate().clear()).flip());
+        }
+    }
+    
+    private static ByteBuffer toSegment(int[] lines, long[] offsets, int size) {
+        ByteBuffer segment = ByteBuffer.allocate(size * RECORD_BYTES);
+        for (int i = 0; i < size; i++) {
+            segment.putInt(lines[i]).putLong(offsets[i]);
+        }
+        return segment.flip();
+    }
+    
+    @Override
+    public int size() {
+        return spilledSize + heapSize;
+    }
+    
+    /**
+     * Heap taken by the locations that are not spilled
+     */
+    public long heapBytes() {
+        return (long) heapSize * RECORD_BYTES;
+    }
+}
@@ -0,0 +1,79 @@
+package com.textanalysis.bit.model.internal;
+
+import com.textanalysis.bit.model.dto.TextAnalysisRequest;
+import com.textanalysis.bit.model.dto.WordMatch;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * How much of the matches a request wants: at most a number of locations per word, the
+ * first ones in the document, and at most a number of words, those that occur most often.
+ * Words keep their full count either way. Matchers and collectors apply the location
+ * limit while matching, so fewer locations are never stored in the first place.
+ */
+public class ResultLimits {
+    
+    public static final ResultLimits NONE = new ResultLimits(Integer.MAX_VALUE, Integer.MAX_VALUE);
+    
+    /** Most frequent first; of equally frequent words the alphabetically first */
+    private static final Comparator<WordMatch> BY_FREQUENCY =
+        Comparator.comparingLong(WordMatch::getCount).reversed().thenComparing(WordMatch::getWord);
+    
+    private final int locationsPerWord;
+    private final int topWords;
+    
+    public ResultLimits(int locationsPerWord, int topWords) {
+        this.locationsPerWord = locationsPerWord;
+        this.topWords = topWords;
+    }
+    
+    public static ResultLimits of(TextAnalysisRequest request) {
+        int locationsPerWord = request.isCountsOnly() ? 0
+            : request.getMaxLocationsPerWord() != null ? request.getMaxLocationsPerWord()
+            : Integer.MAX_VALUE;
+        int topWords = request.getTopWords() != null ? request.getTopWords() : Integer.MAX_VALUE;
+        return new ResultLimits(locationsPerWord, topWords);
+    }
+    
+    public int getLocationsPerWord() {
+        return locationsPerWord;
+    }
+    
+    public int getTopWords() {
+        return topWords;
+    }
+    
+    /**
+     * Limits matches that were collected with no or a higher location limit, such as those
+     * of the document index. Without a word limit the order is kept; otherwise the top words
+     * are picked with a heap of that size and returned most frequent first.
+     */
+    public List<WordMatch> apply(List<WordMatch> matches) {
+        List<WordMatch> limited = new ArrayList<>(Math.min(matches.size(), topWords));
+        if (topWords == Integer.MAX_VALUE) {
+            matches.forEach(match -> limited.add(limitLocations(match)));
+            return limited;
+        }
+        
+        PriorityQueue<WordMatch> top = new PriorityQueue<>(Math.min(topWords, matches.size()) + 1, BY_FREQUENCY.reversed());
+        for (WordMatch match : matches) {
+            top.add(match);
+            if (top.size() > topWords) {
+                top.poll();
+            }
+        }
+        top.forEach(match -> limited.add(limitLocations(match)));
+        limited.sort(BY_FREQUENCY);
+        return limited;
+    }
+    
+    private WordMatch limitLocations(WordMatch match) {
+        if (match.getLocations().size() <= locationsPerWord) {
+            return match;
+        }
+        return new WordMatch(match.getWord(), match.getLocations().subList(0, locationsPerWord), match.getCount());
+    }
+}
@@ -0,0 +1,49 @@
+package com.textanalysis.bit.model.internal;
+
+/**
+ * Where an incremental analysis of a growing document stopped: just after the last line
+ * end it read. The next read of the document starts at the byte offset and numbers lines
+ * and characters from here on. The bytes right before the offset are kept as a fingerprint,
+ * so a document that was replaced rather than appended to is noticed.
+ */
+public class TailPosition {
+    
+    public static final TailPosition START = new TailPosition(0, 0, 0, new byte[0]);
+    
+    /** Bytes before the offset that are read again and compared on the next read */
+    public static final int FINGERPRINT_BYTES = 64;
+    
+    private final long byteOffset;
+    private final int line;
+    private final long charOffset;
+    private final byte[] fingerprint;
+    
+    public TailPosition(long byteOffset, int line, long charOffset, byte[] fingerprint) {
+        this.byteOffset = byteOffset;
+        this.line = line;
+        this.charOffset = charOffset;
+        this.fingerprint = fingerprint;
+    }
+    
+    public long getByteOffset() {
+        return byteOffset;
+    }
+    
+    /**
+     * Number of the next line, which is also the number of lines read so far
+     */
+    public int getLine() {
+        return line;
+    }
+    
+    public long getCharOffset() {
+        return charOffset;
+    }
+    
+    /**
+     * The last bytes before the offset, at most {@link #FINGERPRINT_BYTES} of them
+     */
+    public byte[] getFingerprint() {
+        return fingerprint;
+    }
+}
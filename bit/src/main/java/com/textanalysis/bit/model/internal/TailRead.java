@@ -0,0 +1,36 @@
+package com.textanalysis.bit.model.internal;
+
+/**
+ * Outcome of reading what was appended to a document since a {@link TailPosition}. Whole
+ * lines were handed to the chunk consumer and are covered by the new position; a last line
+ * without a line end yet is returned separately, since it may still grow and has to be read
+ * again next time.
+ */
+public class TailRead {
+    
+    private final TailPosition end;
+    private final TextChunk pendingLine;
+    private final int chunkCount;
+    
+    public TailRead(TailPosition end, TextChunk pendingLine, int chunkCount) {
+        this.end = end;
+        this.pendingLine = pendingLine;
+        this.chunkCount = chunkCount;
+    }
+    
+    public TailPosition getEnd() {
+        return end;
+    }
+    
+    /**
+     * The unfinished last line, with a line end added like any last line gets; null if the
+     * document ends with a line end
+     */
+    public TextChunk getPendingLine() {
+        return pendingLine;
+    }
+    
+    public int getChunkCount() {
+        return chunkCount;
+    }
+}
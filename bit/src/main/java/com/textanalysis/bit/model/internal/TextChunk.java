@@ -1,20 +1,34 @@
 package com.textanalysis.bit.model.internal;
 
+/**
+ * A run of whole lines from the document. The content is usually a String, but chunks read
+ * from local files may be views over memory-mapped bytes.
+ */
 public class TextChunk {
-    private final String content;
+    private final CharSequence content;
     private final int startLine;
     private final int endLine;
-    private final int globalCharOffset;
+    private final long globalCharOffset;
+    private final long sourceBytes;
 
-    public TextChunk(String content, int startLine, int endLine, int globalCharOffset) {
+    public TextChunk(CharSequence content, int startLine, int endLine, long globalCharOffset) {
+        this(content, startLine, endLine, globalCharOffset, 0);
+    }
+
+    /**
+     * @param sourceBytes bytes of the document the chunk was read from, before charset
+     *                    decoding; 0 where the reader does not know them
+     */
+    public TextChunk(CharSequence content, int startLine, int endLine, long globalCharOffset, long sourceBytes) {
         this.content = content;
         this.startLine = startLine;
         this.endLine = endLine;
         this.globalCharOffset = globalCharOffset;
+        this.sourceBytes = sourceBytes;
     }
 
     // Getters
-    public String getContent() {
+    public CharSequence getContent() {
         return content;
     }
 
@@ -26,7 +40,11 @@ public class TextChunk {
         return endLine;
     }
 
-    public int getGlobalCharOffset() {
+    public long getGlobalCharOffset() {
         return globalCharOffset;
     }
+
+    public long getSourceBytes() {
+        return sourceBytes;
+    }
 }
@@ -0,0 +1,207 @@
+package com.textanalysis.bit.model.internal;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Character view over a region of well-formed UTF-8 bytes, with line ends read the way
+ * BufferedReader.readLine does: "\r\n" and a lone "\r" read as "\n", and a last line without
+ * a line end gets one. Length and line count come from one validating pass over the bytes;
+ * the characters are only decoded if something asks for them, so a matcher that scans
+ * {@link #getBytes()} never pays for decoding.
+ */
+public class Utf8ByteSequence implements CharSequence {
+    
+    private final ByteBuffer bytes;
+    private final int length;
+    private final int lineCount;
+    private volatile CharBuffer chars;
+    
+    private Utf8ByteSequence(ByteBuffer bytes, int length, int lineCount) {
+        this.bytes = bytes;
+        this.length = length;
+        this.lineCount = lineCount;
+    }
+    
+    /**
+     * Wraps the region, or returns null if it is not well-formed UTF-8 and must be decoded
+     * with replacement characters instead
+     */
+    public static Utf8ByteSequence of(ByteBuffer region) {
+        ByteBuffer bytes = region.slice();
+        int limit = bytes.limit();
+        long length = 0;
+        int lines = 0;
+        int i = 0;
+        while (i < limit) {
+            int b = bytes.get(i) & 0xFF;
+            if (b < 0x80) {
+                if (b == '\n') {
+                    lines++;
+                } else if (b == '\r') {
+                    lines++;
+                    if (i + 1 < limit && bytes.get(i + 1) == '\n') {
+                        i++;
+                    }
+                }
+                length++;
+                i++;
+            } else {
+                int n = sequenceLength(bytes, i, limit);
+                if (n < 0) {
+                    return null;
+                }
+                length += charsOf(b);
+                i += n;
+            }
+        }
+        if (limit > 0 && !isLineEnd(bytes.get(limit - 1))) {
+            length++;
+            lines++;
+        }
+        return length < Integer.MAX_VALUE ? new Utf8ByteSequence(bytes, (int) length, lines) : null;
+    }
+    
+    /**
+     * Decodes the region, replacing malformed input, with line ends read as described above
+     */
+    public static CharBuffer decode(ByteBuffer region) throws CharacterCodingException {
+        CharBuffer decoded = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE)
+            .decode(region.slice());
+        
+        char[] chars = new char[decoded.remaining() + 1];
+        int size = 0;
+        while (decoded.hasRemaining()) {
+            char c = decoded.get();
+            if (c == '\r') {
+                if (decoded.hasRemaining() && decoded.get(decoded.position()) == '\n') {
+                    decoded.get();
+                }
+                c = '\n';
+            }
+            chars[size++] = c;
+        }
+        if (size > 0 && chars[size - 1] != '\n') {
+            chars[size++] = '\n';
+        }
+        return CharBuffer.wrap(chars, 0, size);
+    }
+    
+    /**
+     * UTF-16 chars a character starting with this lead byte decodes to; 0 for a
+     * continuation byte
+     */
+    public static int charsOf(int leadByte) {
+        if ((leadByte & 0xC0) == 0x80) {
+            return 0;
+        }
+        return leadByte >= 0xF0 ? 2 : 1;
+    }
+    
+    public static boolean isLineEnd(byte b) {
+        return b == '\n' || b == '\r';
+    }
+    
+    /**
+     * Length of the well-formed multi-byte sequence at index (Unicode Table 3-7), or -1
+     */
+    public static int sequenceLength(ByteBuffer bytes, int index, int limit) {
+        int b = bytes.get(index) & 0xFF;
+        int n;
+        int min = 0x80;
+        int max = 0xBF;
+        if (b >= 0xC2 && b <= 0xDF) {
+            n = 2;
+        } else if (b >= 0xE0 && b <= 0xEF) {
+            n = 3;
+            if (b == 0xE0) {
+                min = 0xA0;
+            } else if (b == 0xED) {
+                max = 0x9F;
+            }
+        } else if (b >= 0xF0 && b <= 0xF4) {
+            n = 4;
+            if (b == 0xF0) {
+                min = 0x90;
+            } else if (b == 0xF4) {
+                max = 0x8F;
+            }
+        } else {
+            return -1;
+        }
+        if (index + n > limit) {
+            return -1;
+        }
+        int second = bytes.get(index + 1) & 0xFF;
+        if (second < min || second > max) {
+            return -1;
+        }
+        for (int i = 2; i < n; i++) {
+            if ((bytes.get(index + i) & 0xC0) != 0x80) {
+                return -1;
+            }
+        }
+        return n;
+    }
+    
+    /**
+     * The bytes from start to end, which must be counted already: the region starts after a
+     * line end and ends after one or at the end of this sequence
+     */
+    public Utf8ByteSequence slice(int start, int end, int length, int lineCount) {
+        return new Utf8ByteSequence(bytes.slice(start, end - start), length, lineCount);
+    }
+    
+    /**
+     * The raw bytes, line ends not normalized
+     */
+    public ByteBuffer getBytes() {
+        return bytes.duplicate();
+    }
+    
+    /**
+     * Number of lines, counting a last line without a line end
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+    
+    @Override
+    public int length() {
+        return length;
+    }
+    
+    @Override
+    public char charAt(int index) {
+        return decoded().get(index);
+    }
+    
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return decoded().subSequence(start, end);
+    }
+    
+    @Override
+    public String toString() {
+        return decoded().toString();
+    }
+    
+    private CharBuffer decoded() {
+        CharBuffer decoded = chars;
+        if (decoded == null) {
+            try {
+                decoded = decode(bytes);
+            } catch (CharacterCodingException e) {
+                // Cannot happen: the bytes were validated and malformed input is replaced
+                throw new IllegalStateException(e);
+            }
+            chars = decoded;
+        }
+        return decoded;
+    }
+}
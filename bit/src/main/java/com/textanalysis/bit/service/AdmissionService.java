@@ -0,0 +1,236 @@
+package com.textanalysis.bit.service;
+
+import com.textanalysis.bit.config.AppConfig;
+import com.textanalysis.bit.exception.AdmissionRejectedException;
+import com.textanalysis.bit.exception.TextAnalysisException;
+import com.textanalysis.bit.model.internal.Deadline;
+import com.textanalysis.bit.util.ConfigUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control in front of the analysis pipeline. Every analysis holds a CPU slot and
+ * is charged the heap it may use for document text; requests that do not fit wait in a queue
+ * ordered by estimated document size, so small requests are not stuck behind large ones.
+ * Requests are rejected when the queue is full or they waited longer than max-queue-wait.
+ * Background jobs share the queue but are never rejected: they wait until they fit, however
+ * long that takes, so a job stays queued instead of failing on a busy server.
+ */
+@Service
+public class AdmissionService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionService.class);
+    /** How often a waiting job looks at its deadline, which may be cancelled without notice */
+    private static final long JOB_POLL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    
+    private final AppConfig appConfig;
+    private final DocumentCacheService documentCache;
+    private final LocalFileReaderService localFileReader;
+    private final int maxConcurrent;
+    private final long maxInFlightBytes;
+    private final long maxQueueWaitNanos;
+    
+    private final PriorityQueue<Ticket> waiting = new PriorityQueue<>(
+        Comparator.comparingLong((Ticket ticket) -> ticket.estimatedBytes).thenComparingLong(ticket -> ticket.sequence));
+    private long nextSequence;
+    private int waitingJobs;
+    private int active;
+    private long inFlightBytes;
+    private long averageMillis = 1000;
+    
+    public AdmissionService(AppConfig appConfig, DocumentCacheService documentCache,
+                            LocalFileReaderService localFileReader) {
+        this.appConfig = appConfig;
+        this.documentCache = documentCache;
+        this.localFileReader = localFileReader;
+        this.maxConcurrent = appConfig.getMaxConcurrentAnalyses() > 0
+            ? appConfig.getMaxConcurrentAnalyses()
+            : Runtime.getRuntime().availableProcessors();
+        this.maxInFlightBytes = ConfigUtils.parseSize(appConfig.getMaxInFlightBytes());
+        this.maxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(ConfigUtils.parseDurationMillis(appConfig.getMaxQueueWait()));
+    }
+    
+    /**
+     * Blocks until the analysis of the URL may start and returns the permit to close when it
+     * is done, or throws {@link AdmissionRejectedException} if it cannot be admitted in time
+     */
+    public Permit admit(String textUrl) {
+        return admit(textUrl, null);
+    }
+    
+    /**
+     * Blocks until the background job may start, however long the queue, and returns the
+     * permit to close when it is done. Waiting ends early only when the job's deadline is
+     * over, by throwing as {@link Deadline#check()} does.
+     */
+    public Permit admitJob(String textUrl, Deadline jobDeadline) {
+        return admit(textUrl, jobDeadline);
+    }
+    
+    private Permit admit(String textUrl, Deadline jobDeadline) {
+        if (!appConfig.isAdmissionEnabled()) {
+            return new Permit(0, false);
+        }
+        
+        long estimatedBytes = estimateBytes(textUrl);
+        long chargedBytes = Math.min(heapBytes(estimatedBytes), maxInFlightBytes);
+        boolean job = jobDeadline != null;
+        
+        synchronized (this) {
+            if (waiting.isEmpty() && fits(chargedBytes)) {
+                return grant(chargedBytes);
+            }
+            if (!job && waiting.size() - waitingJobs >= appConfig.getMaxQueuedRequests()) {
+                throw reject("Too many analyses are waiting; try again later");
+            }
+            
+            Ticket ticket = new Ticket(estimatedBytes, nextSequence++, job);
+            waiting.add(ticket);
+            if (job) {
+                waitingJobs++;
+            }
+            long deadline = System.nanoTime() + maxQueueWaitNanos;
+            try {
+                while (waiting.peek() != ticket || !fits(chargedBytes)) {
+                    long remaining;
+                    if (job) {
+                        if (jobDeadline.isOver()) {
+                            leaveQueue(ticket);
+                            jobDeadline.check();
+                        }
+                        remaining = JOB_POLL_NANOS;
+                    } else {
+                        remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            leaveQueue(ticket);
+                            throw reject("Server is busy; the analysis could not start within " + appConfig.getMaxQueueWait());
+                        }
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            } catch (InterruptedException e) {
+                leaveQueue(ticket);
+                Thread.currentThread().interrupt();
+                throw new TextAnalysisException("Interrupted while waiting for admission", e);
+            }
+            
+            Permit permit = grant(chargedBytes);
+            // Leaving wakes the next request in line, which may fit as well
+            leaveQueue(ticket);
+            return permit;
+        }
+    }
+    
+    public synchronized int getActiveCount() { return active; }
+    public synchronized long getInFlightBytes() { return inFlightBytes; }
+    public synchronized int getQueuedCount() { return waiting.size(); }
+    
+    /**
+     * Best-effort document size without touching the network: local files and cached
+     * documents are known, anything else is assumed to be as large as allowed
+     */
+    private long estimateBytes(String textUrl) {
+        if (localFileReader.isLocal(textUrl)) {
+            long size = localFileReader.sizeOf(textUrl);
+            if (size >= 0) {
+                return size;
+            }
+        }
+        DocumentCacheService.CachedDocument cached = documentCache.lookup(textUrl);
+        if (cached != null) {
+            return cached.getSize();
+        }
+        return ConfigUtils.parseSize(appConfig.getMaxFileSize());
+    }
+    
+    /**
+     * When streaming, at most max-in-flight-chunks chunks of text are on the heap at once
+     */
+    private long heapBytes(long documentBytes) {
+        if (!appConfig.isStreaming()) {
+            return documentBytes;
+        }
+        long streamingBytes = appConfig.getMaxInFlightChunks() * ConfigUtils.parseSize(appConfig.getChunkBytes());
+        return Math.min(documentBytes, streamingBytes);
+    }
+    
+    /**
+     * A request larger than the whole byte budget still runs, but only on an idle server
+     */
+    private boolean fits(long chargedBytes) {
+        return active < maxConcurrent && (active == 0 || inFlightBytes + chargedBytes <= maxInFlightBytes);
+    }
+    
+    private Permit grant(long chargedBytes) {
+        active++;
+        inFlightBytes += chargedBytes;
+        return new Permit(chargedBytes, true);
+    }
+    
+    private void leaveQueue(Ticket ticket) {
+        if (waiting.remove(ticket) && ticket.job) {
+            waitingJobs--;
+        }
+        notifyAll();
+    }
+    
+    private synchronized void release(long chargedBytes, long elapsedMillis) {
+        active--;
+        inFlightBytes -= chargedBytes;
+        averageMillis = (averageMillis * 7 + elapsedMillis) / 8;
+        notifyAll();
+    }
+    
+    /**
+     * Suggests retrying once the queue ahead has roughly drained
+     */
+    private AdmissionRejectedException reject(String message) {
+        long retryAfterMillis = averageMillis * (waiting.size() + 1) / maxConcurrent;
+        long retryAfterSeconds = Math.max(1, (retryAfterMillis + 999) / 1000);
+        logger.warn("Rejecting analysis: {} ({} active, {} queued, {} bytes in flight)",
+                   message, active, waiting.size(), inFlightBytes);
+        return new AdmissionRejectedException(message, retryAfterSeconds);
+    }
+    
+    private static class Ticket {
+        private final long estimatedBytes;
+        private final long sequence;
+        private final boolean job;
+        
+        Ticket(long estimatedBytes, long sequence, boolean job) {
+            this.estimatedBytes = estimatedBytes;
+            this.sequence = sequence;
+            this.job = job;
+        }
+    }
+    
+    /**
+     * Held for the duration of one analysis; closing it more than once has no effect
+     */
+    public class Permit implements AutoCloseable {
+        private final long chargedBytes;
+        private final long startTime = System.currentTimeMillis();
+        private boolean held;
+        
+        private Permit(long chargedBytes, boolean held) {
+            this.chargedBytes = chargedBytes;
+            this.held = held;
+        }
+        
+        @Override
+        public void close() {
+            synchronized (AdmissionService.this) {
+                if (!held) {
+                    return;
+                }
+                held = false;
+            }
+            release(chargedBytes, System.currentTimeMillis() - startTime);
+        }
+    }
+}
@@ -1,65 +1,60 @@
 package com.textanalysis.bit.service;
-import com.textanalysis.bit.model.dto.WordLocation;
+import com.textanalysis.bit.config.AppConfig;
 import com.textanalysis.bit.model.dto.WordMatch;
-import com.textanalysis.bit.model.internal.MatchResult;
+import com.textanalysis.bit.model.internal.MatchBuffer;
+import com.textanalysis.bit.model.internal.ResultLimits;
+import com.textanalysis.bit.util.ConfigUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
-import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
 
 @Service
 public class AggregatorService {
     
     private static final Logger logger = LoggerFactory.getLogger(AggregatorService.class);
     
-    public List<WordMatch> aggregateResults(List<List<MatchResult>> allResults) {
+    // Each spilled block is mapped as a single buffer, which cannot exceed 2GB
+    private static final long MAX_HEAP_BUDGET = 1024L * 1024 * 1024;
+    
+    private final long heapBudgetBytes;
+    private final Path spillDir;
+    
+    public AggregatorService(AppConfig appConfig) {
+        this.heapBudgetBytes = Math.min(ConfigUtils.parseSize(appConfig.getResultsHeapBudget()), MAX_HEAP_BUDGET);
+        this.spillDir = Paths.get(appConfig.getSpillDir());
+    }
+    
+    /**
+     * Starts collecting the results of one request; add chunk buffers in document order
+     */
+    public MatchCollector newCollector() {
+        return newCollector(ResultLimits.NONE);
+    }
+    
+    /**
+     * Starts collecting the results of a request that only wants some of them
+     */
+    public MatchCollector newCollector(ResultLimits limits) {
+        return new MatchCollector(heapBudgetBytes, spillDir, limits);
+    }
+    
+    /**
+     * Merges per-chunk buffers (in chunk order) into one sorted location list per word.
+     * All buffers must come from the same matcher, so word ids line up.
+     */
+    public List<WordMatch> aggregateResults(List<MatchBuffer> allResults) {
         logger.info("Aggregating results from {} chunks", allResults.size());
         
-        // Use ConcurrentHashMap for thread safety
-        Map<String, Set<MatchResult>> wordToResults = new ConcurrentHashMap<>();
-        
-        // Collect all results
-        for (List<MatchResult> chunkResults : allResults) {
-            for (MatchResult result : chunkResults) {
-                wordToResults.computeIfAbsent(result.getWord().toLowerCase(), 
-                    k -> ConcurrentHashMap.newKeySet()).add(result);
-            }
-        }
-        
-        // Convert to final format and deduplicate
-        List<WordMatch> finalResults = new ArrayList<>();
-        
-        for (Map.Entry<String, Set<MatchResult>> entry : wordToResults.entrySet()) {
-            String word = entry.getKey();
-            Set<MatchResult> results = entry.getValue();
+        try (MatchCollector collector = newCollector()) {
+            allResults.forEach(collector::add);
+            List<WordMatch> finalResults = collector.finish();
             
-            // Deduplicate based on global character offset
-            Map<Integer, MatchResult> uniqueResults = results.stream()
-                .collect(Collectors.toMap(
-                    MatchResult::getGlobalCharOffset,
-                    r -> r,
-                    (existing, replacement) -> existing // Keep first occurrence
-                ));
-            
-            // Convert to WordLocation and sort by position
-            List<WordLocation> locations = uniqueResults.values().stream()
-                .sorted(Comparator.comparingInt(MatchResult::getGlobalCharOffset))
-                .map(result -> new WordLocation(result.getLineNumber(), result.getGlobalCharOffset()))
-                .collect(Collectors.toList());
-            
-            if (!locations.isEmpty()) {
-                finalResults.add(new WordMatch(word, locations));
-                logger.debug("Word '{}' found {} times", word, locations.size());
-            }
+            logger.info("Aggregation complete. Found matches for {} words", finalResults.size());
+            return finalResults;
         }
-        
-        // Sort results by word name for consistent output
-        finalResults.sort(Comparator.comparing(WordMatch::getWord));
-        
-        logger.info("Aggregation complete. Found matches for {} words", finalResults.size());
-        return finalResults;
     }
 }
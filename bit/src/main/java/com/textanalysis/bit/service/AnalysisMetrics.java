@@ -0,0 +1,82 @@
+package com.textanalysis.bit.service;
+
+import com.textanalysis.bit.model.internal.MatchBuffer;
+import com.textanalysis.bit.model.internal.TextChunk;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters for the analysis pipeline. Stage timers publish histograms, so percentiles can be
+ * computed in Prometheus. In streaming mode reading overlaps matching, so the read timer
+ * covers the download, chunking and any wait for free matcher slots; the time spent waiting
+ * for the network alone is published by MetricsConfig as text.analysis.fetch.
+ */
+@Service
+public class AnalysisMetrics {
+    
+    private final MeterRegistry registry;
+    private final Timer readTimer;
+    private final Timer chunkMatchTimer;
+    private final Timer aggregateTimer;
+    private final Timer serializeTimer;
+    private final Counter bytesRead;
+    private final Counter chunks;
+    private final Counter matches;
+    
+    public AnalysisMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.readTimer = stageTimer("read");
+        this.chunkMatchTimer = stageTimer("match");
+        this.aggregateTimer = stageTimer("aggregate");
+        this.serializeTimer = stageTimer("serialize");
+        this.bytesRead = Counter.builder("text.analysis.bytes.read")
+            .description("Bytes of documents read, after any content encoding was removed")
+            .baseUnit("bytes").register(registry);
+        this.chunks = Counter.builder("text.analysis.chunks")
+            .description("Chunks matched").register(registry);
+        this.matches = Counter.builder("text.analysis.matches")
+            .description("Word occurrences found").register(registry);
+    }
+    
+    public Timer getReadTimer() { return readTimer; }
+    public Timer getChunkMatchTimer() { return chunkMatchTimer; }
+    public Timer getAggregateTimer() { return aggregateTimer; }
+    public Timer getSerializeTimer() { return serializeTimer; }
+    
+    public void chunkRead(TextChunk chunk) {
+        bytesRead.increment(chunk.getSourceBytes());
+    }
+    
+    public void chunkMatched(MatchBuffer buffer) {
+        chunks.increment();
+        matches.increment(buffer.getTotalCount());
+    }
+    
+    /**
+     * Records one whole analysis; source is scan or index, outcome success or error
+     */
+    public void recordAnalysis(String source, String outcome, long millis) {
+        Timer.builder("text.analysis.duration")
+            .description("Whole analysis, from admission to result")
+            .tag("source", source)
+            .tag("outcome", outcome)
+            .publishPercentileHistogram()
+            .register(registry)
+            .record(millis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * read: one document, match: one chunk, aggregate: one result set, serialize: one response body
+     */
+    private Timer stageTimer(String stage) {
+        return Timer.builder("text.analysis.stage")
+            .description("Time spent in one stage of the analysis pipeline")
+            .tag("stage", stage)
+            .publishPercentileHistogram()
+            .register(registry);
+    }
+}
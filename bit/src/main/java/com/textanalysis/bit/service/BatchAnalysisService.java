@@ -0,0 +1,205 @@
+package com.textanalysis.bit.service;
+
+import com.textanalysis.bit.config.AppConfig;
+import com.textanalysis.bit.exception.BatchTooLargeException;
+import com.textanalysis.bit.exception.TextAnalysisException;
+import com.textanalysis.bit.model.dto.AnalysisSummary;
+import com.textanalysis.bit.model.dto.BatchAnalysisRequest;
+import com.textanalysis.bit.model.dto.BatchDocumentResult;
+import com.textanalysis.bit.model.dto.TextAnalysisRequest;
+import com.textanalysis.bit.model.dto.TextAnalysisResponse;
+import com.textanalysis.bit.model.dto.WordMatch;
+import com.textanalysis.bit.model.internal.Deadline;
+import com.textanalysis.bit.service.matcher.WordMatcher;
+import com.textanalysis.bit.util.ConfigUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Finds one word list in many documents. The matcher is compiled once for the batch;
+ * documents are downloaded and analyzed on the batch pool, whose size bounds the concurrent
+ * downloads of all batches together, while their chunks are matched on the shared matcher
+ * pool. Every document still goes through admission control on its own, and a batch keeps
+ * only a bounded window of its documents submitted.
+ */
+@Service
+public class BatchAnalysisService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BatchAnalysisService.class);
+    
+    private static final long RESPONSE_GRACE_MILLIS = 60_000;
+    
+    private final TextAnalysisService textAnalysisService;
+    private final MatcherService matcherService;
+    private final Executor batchExecutor;
+    private final AppConfig appConfig;
+    
+    public BatchAnalysisService(TextAnalysisService textAnalysisService,
+                                MatcherService matcherService,
+                                @Qualifier("batchDocumentExecutor") Executor batchExecutor,
+                                AppConfig appConfig) {
+        this.textAnalysisService = textAnalysisService;
+        this.matcherService = matcherService;
+        this.batchExecutor = batchExecutor;
+        this.appConfig = appConfig;
+    }
+    
+    /**
+     * Rejects batches above batch-max-documents; call before the response is committed
+     */
+    public void validate(BatchAnalysisRequest request) {
+        if (request.getTextUrls().size() > appConfig.getBatchMaxDocuments()) {
+            throw new BatchTooLargeException("Batch has " + request.getTextUrls().size()
+                + " documents, at most " + appConfig.getBatchMaxDocuments() + " are allowed");
+        }
+    }
+    
+    /**
+     * How long the streamed /match/batch response may take: the batch deadline plus a
+     * minute to cancel what still runs and write the remaining results and the summary
+     */
+    public long getResponseTimeoutMillis() {
+        return ConfigUtils.parseDurationMillis(appConfig.getBatchTimeout()) + RESPONSE_GRACE_MILLIS;
+    }
+    
+    /**
+     * Analyzes every document of the batch and hands each result to the sink as soon as
+     * that document is done, so results arrive in completion order, not request order. A
+     * failed document yields a result with status ERROR and does not stop the others. At
+     * most batch-max-concurrent-documents documents of the batch are submitted at a time,
+     * and the next one only after the sink took a result, so a slow sink holds the batch
+     * back. Once batch-timeout passes, running documents are cancelled and the rest fail
+     * without being submitted. The sink is only called from the calling thread; if it
+     * fails, documents not finished yet are cancelled and the failure is rethrown.
+     */
+    public AnalysisSummary analyze(BatchAnalysisRequest request, Consumer<BatchDocumentResult> sink) {
+        validate(request);
+        List<String> textUrls = request.getTextUrls();
+        logger.info("Starting batch analysis of {} documents with {} words", textUrls.size(), request.getWords().size());
+        
+        long startTime = System.currentTimeMillis();
+        WordMatcher matcher = matcherService.getMatcher(request.getWords());
+        long timeoutMillis = ConfigUtils.parseDurationMillis(appConfig.getRequestTimeout());
+        
+        // Fails documents not started yet; running ones are cancelled through their deadlines
+        Deadline batch = Deadline.after(ConfigUtils.parseDurationMillis(appConfig.getBatchTimeout()));
+        Set<Deadline> running = ConcurrentHashMap.newKeySet();
+        int window = Math.max(1, appConfig.getBatchMaxConcurrentDocuments());
+        // Only submitted documents put results here, so the window bounds it too
+        BlockingQueue<BatchDocumentResult> done = new ArrayBlockingQueue<>(window);
+        String timedOut = "batch-timeout of " + appConfig.getBatchTimeout() + " passed";
+        
+        long totalMatches = 0;
+        int failed = 0;
+        int submitted = 0;
+        try {
+            for (int received = 0; received < textUrls.size(); received++) {
+                if (batch.isOver()) {
+                    cancel(batch, running, timedOut);
+                }
+                while (submitted < textUrls.size() && submitted - received < window) {
+                    submit(submitted, textUrls.get(submitted), request.getWords(), matcher, batch, running, timeoutMillis, done);
+                    submitted++;
+                }
+                BatchDocumentResult result = done.poll(batch.remainingMillis(), TimeUnit.MILLISECONDS);
+                if (result == null) {
+                    // Running documents now fail at their next deadline check and are still reported
+                    cancel(batch, running, timedOut);
+                    result = done.take();
+                }
+                if ("SUCCESS".equals(result.getStatus())) {
+                    for (WordMatch match : result.getMatches()) {
+                        totalMatches += match.getLocations().size();
+                    }
+                } else {
+                    failed++;
+                }
+                sink.accept(result);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel(batch, running, "batch interrupted");
+            throw new TextAnalysisException("Interrupted while waiting for batch documents", e);
+        } catch (RuntimeException e) {
+            cancel(batch, running, String.valueOf(e.getMessage()));
+            throw e;
+        }
+        
+        long processingTime = System.currentTimeMillis() - startTime;
+        logger.info("Batch analysis of {} documents completed in {} ms, {} failed",
+                   textUrls.size(), processingTime, failed);
+        AnalysisSummary summary = new AnalysisSummary(failed == 0 ? "SUCCESS" : "PARTIAL_FAILURE",
+            processingTime, totalMatches);
+        if (failed > 0) {
+            summary.setMessage(failed + " of " + textUrls.size() + " documents failed");
+        }
+        return summary;
+    }
+    
+    /**
+     * Hands one document to the batch pool. Once the batch is over, or if the pool's queue
+     * is full, the document fails at once instead.
+     */
+    private void submit(int index, String textUrl, List<String> words, WordMatcher matcher, Deadline batch,
+                        Set<Deadline> running, long timeoutMillis, BlockingQueue<BatchDocumentResult> done) {
+        if (batch.isOver()) {
+            done.add(analyzeDocument(index, textUrl, words, matcher, batch, batch));
+            return;
+        }
+        try {
+            batchExecutor.execute(() -> {
+                // Each document's request-timeout starts when it starts, not while it waits for the
+                // pool, but does not outlast the batch
+                Deadline deadline = Deadline.after(Math.min(timeoutMillis, batch.remainingMillis()));
+                running.add(deadline);
+                try {
+                    done.add(analyzeDocument(index, textUrl, words, matcher, batch, deadline));
+                } finally {
+                    running.remove(deadline);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Batch document {} ({}) rejected, the batch queue is full", index, textUrl);
+            BatchDocumentResult result = new BatchDocumentResult(index, textUrl, "ERROR", 0);
+            result.setMessage("Too many batch documents queued, retry later");
+            done.add(result);
+        }
+    }
+    
+    private BatchDocumentResult analyzeDocument(int index, String textUrl, List<String> words,
+                                                WordMatcher matcher, Deadline batch, Deadline deadline) {
+        long startTime = System.currentTimeMillis();
+        try {
+            batch.check();
+            TextAnalysisResponse response = textAnalysisService.analyzeText(
+                new TextAnalysisRequest(textUrl, words), matcher, deadline);
+            BatchDocumentResult result = new BatchDocumentResult(index, textUrl, response.getStatus(),
+                response.getProcessingTimeMs());
+            result.setMatches(response.getMatches());
+            return result;
+        } catch (RuntimeException e) {
+            logger.warn("Batch document {} ({}) failed: {}", index, textUrl, e.getMessage());
+            BatchDocumentResult result = new BatchDocumentResult(index, textUrl, "ERROR",
+                System.currentTimeMillis() - startTime);
+            result.setMessage(e.getMessage());
+            return result;
+        }
+    }
+    
+    private static void cancel(Deadline batch, Set<Deadline> running, String reason) {
+        batch.cancel(reason);
+        running.forEach(deadline -> deadline.cancel(reason));
+    }
+}
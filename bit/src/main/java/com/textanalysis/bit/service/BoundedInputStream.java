@@ -0,0 +1,63 @@
+package com.textanalysis.bit.service;
+
+import com.textanalysis.bit.exception.FileSizeExceededException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read through it and fails once they pass the size limit. Guards the
+ * decoded body, where a small compressed response may inflate far past its Content-Length.
+ */
+class BoundedInputStream extends FilterInputStream {
+    
+    private final long limit;
+    private final String limitText;
+    private long count;
+    
+    BoundedInputStream(InputStream in, long limit, String limitText) {
+        super(in);
+        this.limit = limit;
+        this.limitText = limitText;
+    }
+    
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            count(1);
+        }
+        return b;
+    }
+    
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int n = super.read(buffer, offset, length);
+        if (n > 0) {
+            count(n);
+        }
+        return n;
+    }
+    
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+    
+    /**
+     * Bytes read so far
+     */
+    long getCount() {
+        return count;
+    }
+    
+    private void count(long n) {
+        count += n;
+        if (count > limit) {
+            throw new FileSizeExceededException("File size exceeds maximum allowed: " + limitText);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.textanalysis.bit.service;
+
+import com.textanalysis.bit.model.internal.Deadline;
+import com.textanalysis.bit.model.internal.MatchBuffer;
+import com.textanalysis.bit.model.internal.TextChunk;
+import com.textanalysis.bit.model.internal.Utf8ByteSequence;
+import com.textanalysis.bit.service.matcher.WordMatcher;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Matches one chunk on a fork/join pool. A chunk larger than the leaf size is cut at line
+ * boundaries into leaves of roughly equal volume; the leaf range is then halved recursively,
+ * so idle workers steal the forked halves, and the leaf buffers are concatenated in document
+ * order. Words never span a line, so the result equals matching the chunk in one piece.
+ * Every leaf checks the analysis deadline first, so a cancelled chunk stops within a leaf.
+ * Leaf buffers keep at most the location limit per word, and so does their concatenation.
+ */
+class ChunkMatchTask extends RecursiveTask<MatchBuffer> {
+    
+    /** Below this a leaf is not worth the fork overhead */
+    static final int MIN_LEAF_CHARS = 16 * 1024;
+    /** Matcher work per leaf, in characters times the matcher's per-character cost */
+    static final long TARGET_LEAF_WORK = 1024 * 1024;
+    /** Leaves per worker thread, so uneven leaves can still be balanced by stealing */
+    static final int LEAVES_PER_THREAD = 4;
+    
+    private final WordMatcher matcher;
+    private final Deadline deadline;
+    private final int locationLimit;
+    private final TextChunk[] leaves;
+    private final int from;
+    private final int to;
+    
+    private ChunkMatchTask(WordMatcher matcher, Deadline deadline, int locationLimit, TextChunk[] leaves,
+                           int from, int to) {
+        this.matcher = matcher;
+        this.deadline = deadline;
+        this.locationLimit = locationLimit;
+        this.leaves = leaves;
+        this.from = from;
+        this.to = to;
+    }
+    
+    static ChunkMatchTask of(TextChunk chunk, WordMatcher matcher, int parallelism, Deadline deadline,
+                             int locationLimit) {
+        TextChunk[] leaves = split(chunk, leafChars(chunk.getContent().length(), matcher, parallelism));
+        return new ChunkMatchTask(matcher, deadline, locationLimit, leaves, 0, leaves.length);
+    }
+    
+    @Override
+    protected MatchBuffer compute() {
+        if (to - from == 1) {
+            deadline.check();
+            MatchBuffer buffer = matcher.newBuffer(locationLimit);
+            matcher.findMatches(leaves[from], buffer);
+            return buffer;
+        }
+        
+        int middle = (from + to) >>> 1;
+        ChunkMatchTask left = new ChunkMatchTask(matcher, deadline, locationLimit, leaves, from, middle);
+        left.fork();
+        MatchBuffer rightResults = new ChunkMatchTask(matcher, deadline, locationLimit, leaves, middle, to).compute();
+        MatchBuffer results = left.join();
+        results.addAll(rightResults);
+        return results;
+    }
+    
+    /**
+     * Leaf size for a chunk: small enough that every worker gets several leaves, large enough
+     * to amortize forking, and smaller for matchers that do more work per character
+     */
+    static int leafChars(int length, WordMatcher matcher, int parallelism) {
+        long byWork = TARGET_LEAF_WORK / Math.max(1, matcher.costPerChar());
+        long byCores = (length + (long) parallelism * LEAVES_PER_THREAD - 1) / ((long) parallelism * LEAVES_PER_THREAD);
+        return (int) Math.max(MIN_LEAF_CHARS, Math.min(byWork, byCores));
+    }
+    
+    /**
+     * Cuts the chunk after the first newline at or past every leafChars characters
+     */
+    static TextChunk[] split(TextChunk chunk, int leafChars) {
+        CharSequence content = chunk.getContent();
+        int length = content.length();
+        if (length <= leafChars) {
+            return new TextChunk[] {chunk};
+        }
+        if (content instanceof Utf8ByteSequence utf8) {
+            return splitBytes(chunk, utf8, leafChars);
+        }
+        
+        List<TextChunk> leaves = new ArrayList<>();
+        int leafStart = 0;
+        int leafStartLine = chunk.getStartLine();
+        int currentLine = chunk.getStartLine();
+        for (int i = nextNewline(content, 0); i >= 0; i = nextNewline(content, i + 1)) {
+            currentLine++;
+            int leafEnd = i + 1;
+            if (leafEnd - leafStart >= leafChars && leafEnd < length) {
+                leaves.add(new TextChunk(content.subSequence(leafStart, leafEnd),
+                    leafStartLine, currentLine - 1, chunk.getGlobalCharOffset() + leafStart));
+                leafStart = leafEnd;
+                leafStartLine = currentLine;
+            }
+        }
+        
+        if (leaves.isEmpty()) {
+            return new TextChunk[] {chunk};
+        }
+        leaves.add(new TextChunk(content.subSequence(leafStart, length),
+            leafStartLine, chunk.getEndLine(), chunk.getGlobalCharOffset() + leafStart));
+        return leaves.toArray(new TextChunk[0]);
+    }
+    
+    /**
+     * Same cut for UTF-8 bytes, counting chars and line ends without decoding
+     */
+    private static TextChunk[] splitBytes(TextChunk chunk, Utf8ByteSequence content, int leafChars) {
+        ByteBuffer bytes = content.getBytes();
+        int limit = bytes.limit();
+        
+        List<TextChunk> leaves = new ArrayList<>();
+        int leafStart = 0;
+        int leafStartChar = 0;
+        int leafStartLine = chunk.getStartLine();
+        int currentLine = chunk.getStartLine();
+        int chars = 0;
+        for (int i = 0; i < limit; i++) {
+            byte b = bytes.get(i);
+            chars += Utf8ByteSequence.charsOf(b & 0xFF);
+            if (!Utf8ByteSequence.isLineEnd(b)) {
+                continue;
+            }
+            if (b == '\r' && i + 1 < limit && bytes.get(i + 1) == '\n') {
+                i++;
+            }
+            currentLine++;
+            int leafEnd = i + 1;
+            if (chars - leafStartChar >= leafChars && leafEnd < limit) {
+                leaves.add(new TextChunk(content.slice(leafStart, leafEnd, chars - leafStartChar, currentLine - leafStartLine),
+                    leafStartLine, currentLine - 1, chunk.getGlobalCharOffset() + leafStartChar));
+                leafStart = leafEnd;
+                leafStartChar = chars;
+                leafStartLine = currentLine;
+            }
+        }
+        
+        if (leaves.isEmpty()) {
+            return new TextChunk[] {chunk};
+        }
+        leaves.add(new TextChunk(
+            content.slice(leafStart, limit, content.length() - leafStartChar, chunk.getEndLine() - leafStartLine + 1),
+            leafStartLine, chunk.getEndLine(), chunk.getGlobalCharOffset() + leafStartChar));
+        return leaves.toArray(new TextChunk[0]);
+    }
+    
+    private static int nextNewline(CharSequence content, int from) {
+        if (content instanceof String text) {
+            return text.indexOf('\n', from);
+        }
+        for (int i = from; i < content.length(); i++) {
+            if (content.charAt(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
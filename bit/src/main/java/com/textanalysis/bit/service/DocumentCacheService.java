@@ -0,0 +1,456 @@
+package com.textanalysis.bit.service;
+
+import com.textanalysis.bit.config.AppConfig;
+import com.textanalysis.bit.util.ConfigUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Local cache of downloaded documents, keyed by URL and stored content-addressed on disk
+ * (identical bodies served from different URLs share one blob). Small, recently used
+ * bodies are also kept in memory. Entries are only cached when the server sent an ETag or
+ * Last-Modified validator, so every hit can be revalidated with a conditional GET.
+ */
+@Service
+public class DocumentCacheService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(DocumentCacheService.class);
+    
+    private final boolean enabled;
+    private final Path indexDir;
+    private final Path blobDir;
+    private final long maxDiskBytes;
+    private final long maxMemoryBytes;
+    
+    private final LinkedHashMap<String, CachedDocument> index = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private final List<Consumer<String>> bodyRemovedListeners = new CopyOnWriteArrayList<>();
+    private long diskBytes;
+    private long memoryBytes;
+    private long hits;
+    private long misses;
+    
+    public DocumentCacheService(AppConfig appConfig) {
+        this.enabled = appConfig.isDocumentCacheEnabled();
+        Path root = Paths.get(appConfig.getDocumentCacheDir());
+        this.indexDir = root.resolve("index");
+        this.blobDir = root.resolve("blobs");
+        this.maxDiskBytes = ConfigUtils.parseSize(appConfig.getDocumentCacheMaxDiskSize());
+        this.maxMemoryBytes = ConfigUtils.parseSize(appConfig.getDocumentCacheMaxMemorySize());
+        
+        if (enabled) {
+            loadIndex();
+        }
+    }
+    
+    public static class CachedDocument {
+        private final String url;
+        private final String etag;
+        private final String lastModified;
+        private final String contentHash;
+        private final long size;
+        private final String charset;
+        
+        public CachedDocument(String url, String etag, String lastModified, String contentHash, long size,
+                              String charset) {
+            this.url = url;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.contentHash = contentHash;
+            this.size = size;
+            this.charset = charset;
+        }
+        
+        // Getters
+        public String getUrl() { return url; }
+        public String getEtag() { return etag; }
+        public String getLastModified() { return lastModified; }
+        public String getContentHash() { return contentHash; }
+        public long getSize() { return size; }
+        public String getCharset() { return charset; }
+    }
+    
+    /**
+     * Returns the cached entry for the URL whose body is still on disk, or null
+     */
+    public synchronized CachedDocument lookup(String url) {
+        if (!enabled) {
+            return null;
+        }
+        CachedDocument document = index.get(url);
+        if (document != null && !Files.exists(blobDir.resolve(document.getContentHash()))) {
+            removeEntry(url);
+            return null;
+        }
+        return document;
+    }
+    
+    /**
+     * Opens the cached body, from memory if it is there, otherwise from disk (promoting
+     * it to memory when it fits). Returns null if the entry was evicted since it was looked
+     * up, so the caller can fetch the document again; a body that is open stays readable
+     * when its entry is evicted meanwhile.
+     */
+    public InputStream open(CachedDocument document) throws IOException {
+        synchronized (this) {
+            byte[] bytes = memory.get(document.getContentHash());
+            if (bytes != null) {
+                return new ByteArrayInputStream(bytes);
+            }
+        }
+        
+        Path blob = blobDir.resolve(document.getContentHash());
+        try {
+            if (document.getSize() <= maxMemoryBytes / 4) {
+                byte[] bytes = Files.readAllBytes(blob);
+                putInMemory(document.getContentHash(), bytes);
+                return new ByteArrayInputStream(bytes);
+            }
+            return Files.newInputStream(blob);
+        } catch (NoSuchFileException e) {
+            logger.info("Cached document {} was evicted before it could be read", document.getUrl());
+            return null;
+        }
+    }
+    
+    /**
+     * Wraps a response body so that everything read from it is also written to the cache.
+     * Returns the body unchanged when caching is disabled or the response has no validator.
+     * The entry only becomes visible once {@link CachingInputStream#commit()} is called after
+     * the body was read to the end. The body is stored decoded from any content encoding,
+     * together with the charset its text is in.
+     */
+    public InputStream cacheWhileReading(String url, String etag, String lastModified, String charset,
+                                         InputStream body) {
+        if (!enabled) {
+            return body;
+        }
+        synchronized (this) {
+            misses++;
+        }
+        if (etag == null && lastModified == null) {
+            return body;
+        }
+        try {
+            Files.createDirectories(blobDir);
+            Path tempFile = Files.createTempFile(blobDir, "download-", ".tmp");
+            return new CachingInputStream(body, url, etag, lastModified, charset, tempFile);
+        } catch (IOException e) {
+            logger.warn("Unable to cache document {}: {}", url, e.getMessage());
+            return body;
+        }
+    }
+    
+    /**
+     * Marks a previously cached entry as just used after a successful revalidation, which
+     * counts as a cache hit
+     */
+    public synchronized void touch(CachedDocument document) {
+        hits++;
+        index.get(document.getUrl());
+        try {
+            Files.setLastModifiedTime(indexFile(document.getUrl()), FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            logger.debug("Unable to update access time for {}", document.getUrl());
+        }
+    }
+    
+    /**
+     * Calls the listener with the content hash of every cached body that is deleted, so
+     * data derived from it can go too. Runs while the cache is locked.
+     */
+    public void onBodyRemoved(Consumer<String> listener) {
+        bodyRemovedListeners.add(listener);
+    }
+    
+    /**
+     * Whether a body with this content hash is still cached
+     */
+    public synchronized boolean hasBody(String contentHash) {
+        return isBlobReferenced(contentHash);
+    }
+    
+    public synchronized long getDiskBytes() { return diskBytes; }
+    public synchronized long getMemoryBytes() { return memoryBytes; }
+    public synchronized int getEntryCount() { return index.size(); }
+    /** Documents served from the cache after the server confirmed them with a 304 */
+    public synchronized long getHits() { return hits; }
+    /** Documents downloaded while the cache is enabled, whether or not they could be cached */
+    public synchronized long getMisses() { return misses; }
+    
+    private synchronized void commit(CachedDocument document, Path tempFile) throws IOException {
+        if (index.containsKey(document.getUrl())) {
+            removeEntry(document.getUrl());
+        }
+        
+        Path blob = blobDir.resolve(document.getContentHash());
+        if (Files.exists(blob)) {
+            Files.delete(tempFile);
+        } else {
+            Files.move(tempFile, blob, StandardCopyOption.ATOMIC_MOVE);
+        }
+        if (!isBlobReferenced(document.getContentHash())) {
+            diskBytes += document.getSize();
+        }
+        index.put(document.getUrl(), document);
+        writeIndexFile(document);
+        
+        evictFromDisk();
+        logger.info("Cached document {} ({} bytes, {} bytes on disk)", document.getUrl(), document.getSize(), diskBytes);
+    }
+    
+    private void evictFromDisk() {
+        Iterator<Map.Entry<String, CachedDocument>> iterator = index.entrySet().iterator();
+        List<String> evicted = new ArrayList<>();
+        long remaining = diskBytes;
+        while (remaining > maxDiskBytes && iterator.hasNext() && index.size() - evicted.size() > 1) {
+            Map.Entry<String, CachedDocument> eldest = iterator.next();
+            evicted.add(eldest.getKey());
+            remaining -= eldest.getValue().getSize();
+        }
+        evicted.forEach(this::removeEntry);
+    }
+    
+    private void removeEntry(String url) {
+        CachedDocument document = index.remove(url);
+        if (document == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(indexFile(url));
+            if (!isBlobReferenced(document.getContentHash())) {
+                Files.deleteIfExists(blobDir.resolve(document.getContentHash()));
+                diskBytes -= document.getSize();
+                byte[] bytes = memory.remove(document.getContentHash());
+                if (bytes != null) {
+                    memoryBytes -= bytes.length;
+                }
+                bodyRemovedListeners.forEach(listener -> listener.accept(document.getContentHash()));
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to delete cached document {}: {}", url, e.getMessage());
+        }
+    }
+    
+    private boolean isBlobReferenced(String contentHash) {
+        return index.values().stream().anyMatch(d -> d.getContentHash().equals(contentHash));
+    }
+    
+    private synchronized void putInMemory(String contentHash, byte[] bytes) {
+        if (memory.put(contentHash, bytes) == null) {
+            memoryBytes += bytes.length;
+        }
+        Iterator<Map.Entry<String, byte[]>> iterator = memory.entrySet().iterator();
+        while (memoryBytes > maxMemoryBytes && iterator.hasNext()) {
+            memoryBytes -= iterator.next().getValue().length;
+            iterator.remove();
+        }
+    }
+    
+    private Path indexFile(String url) {
+        return indexDir.resolve(sha256(url.getBytes(StandardCharsets.UTF_8)) + ".properties");
+    }
+    
+    private void writeIndexFile(CachedDocument document) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("url", document.getUrl());
+        if (document.getEtag() != null) {
+            properties.setProperty("etag", document.getEtag());
+        }
+        if (document.getLastModified() != null) {
+            properties.setProperty("lastModified", document.getLastModified());
+        }
+        properties.setProperty("contentHash", document.getContentHash());
+        properties.setProperty("size", Long.toString(document.getSize()));
+        if (document.getCharset() != null) {
+            properties.setProperty("charset", document.getCharset());
+        }
+        
+        Files.createDirectories(indexDir);
+        try (Writer writer = Files.newBufferedWriter(indexFile(document.getUrl()), StandardCharsets.UTF_8)) {
+            properties.store(writer, null);
+        }
+    }
+    
+    /**
+     * Rebuilds the in-memory index from the files left by a previous run, oldest first
+     */
+    private void loadIndex() {
+        if (!Files.isDirectory(indexDir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(indexDir)) {
+            List<Path> sorted = files
+                .filter(path -> path.toString().endsWith(".properties"))
+                .sorted(Comparator.comparingLong(path -> path.toFile().lastModified()))
+                .toList();
+            for (Path file : sorted) {
+                Properties properties = new Properties();
+                try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    properties.load(reader);
+                }
+                CachedDocument document = new CachedDocument(
+                    properties.getProperty("url"),
+                    properties.getProperty("etag"),
+                    properties.getProperty("lastModified"),
+                    properties.getProperty("contentHash"),
+                    Long.parseLong(properties.getProperty("size")),
+                    properties.getProperty("charset"));
+                if (!Files.exists(blobDir.resolve(document.getContentHash()))) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                if (!isBlobReferenced(document.getContentHash())) {
+                    diskBytes += document.getSize();
+                }
+                index.put(document.getUrl(), document);
+            }
+            evictFromDisk();
+            logger.info("Loaded {} cached documents ({} bytes)", index.size(), diskBytes);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Unable to load document cache index: {}", e.getMessage());
+        }
+    }
+    
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+    
+    private static String sha256(byte[] bytes) {
+        return HexFormat.of().formatHex(newDigest().digest(bytes));
+    }
+    
+    /**
+     * Copies every byte read from the response body into a temporary file while hashing it.
+     * Caching is abandoned silently if the body grows past the disk budget.
+     */
+    public class CachingInputStream extends FilterInputStream {
+        private final String url;
+        private final String etag;
+        private final String lastModified;
+        private final String charset;
+        private final Path tempFile;
+        private final MessageDigest digest = newDigest();
+        private OutputStream out;
+        private long size;
+        
+        private CachingInputStream(InputStream body, String url, String etag, String lastModified, String charset,
+                                   Path tempFile) throws IOException {
+            super(body);
+            this.url = url;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.charset = charset;
+            this.tempFile = tempFile;
+            this.out = Files.newOutputStream(tempFile);
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                copy(new byte[] {(byte) b}, 0, 1);
+            }
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                copy(buffer, offset, read);
+            }
+            return read;
+        }
+        
+        private void copy(byte[] buffer, int offset, int length) {
+            if (out == null) {
+                return;
+            }
+            size += length;
+            if (size > maxDiskBytes) {
+                abandon();
+                return;
+            }
+            try {
+                out.write(buffer, offset, length);
+                digest.update(buffer, offset, length);
+            } catch (IOException e) {
+                logger.warn("Unable to cache document {}: {}", url, e.getMessage());
+                abandon();
+            }
+        }
+        
+        /**
+         * Publishes the copied body to the cache; call only after the whole body was read
+         */
+        public void commit() {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.close();
+                out = null;
+                DocumentCacheService.this.commit(new CachedDocument(
+                    url, etag, lastModified, HexFormat.of().formatHex(digest.digest()), size, charset), tempFile);
+            } catch (IOException e) {
+                logger.warn("Unable to cache document {}: {}", url, e.getMessage());
+                abandon();
+            }
+        }
+        
+        private void abandon() {
+            try {
+                if (out != null) {
+                    out.close();
+                    out = null;
+                }
+                Files.deleteIfExists(tempFile);
+            } catch (IOException e) {
+                logger.debug("Unable to delete temporary file {}", tempFile);
+            }
+        }
+        
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                abandon();
+            }
+        }
+    }
+}
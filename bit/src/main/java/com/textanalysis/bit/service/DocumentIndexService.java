@@ -0,0 +1,208 @@
+package com.textanalysis.bit.service;
+
+import com.textanalysis.bit.config.AppConfig;
+import com.textanalysis.bit.model.dto.WordLocation;
+import com.textanalysis.bit.model.dto.WordMatch;
+import com.textanalysis.bit.service.index.DocumentIndex;
+import com.textanalysis.bit.service.index.DocumentIndexBuilder;
+import com.textanalysis.bit.service.matcher.WordBoundaries;
+import com.textanalysis.bit.util.ConfigUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Optional positional index over previously analyzed documents. After a document has been
+ * downloaded into the document cache, its index is built in the background from the cached
+ * copy. Later requests for the same URL are answered from the index when the server confirms
+ * the document is unchanged and every requested word is a single token. An index lives
+ * as long as the cached body it was built from: it is deleted when the cache drops that
+ * body, and indexes left without one are deleted at startup.
+ */
+@Service
+public class DocumentIndexService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(DocumentIndexService.class);
+    private static final int MAX_OPEN_INDEXES = 16;
+    
+    private final AppConfig appConfig;
+    private final TextReaderService textReaderService;
+    private final DocumentCacheService documentCache;
+    private final Path indexDir;
+    
+    private final ExecutorService indexBuilder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "DocumentIndexer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Set<String> building = ConcurrentHashMap.newKeySet();
+    private final Map<String, DocumentIndex> openIndexes = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DocumentIndex> eldest) {
+            return size() > MAX_OPEN_INDEXES;
+        }
+    };
+    
+    public DocumentIndexService(AppConfig appConfig, TextReaderService textReaderService,
+                                DocumentCacheService documentCache) {
+        this.appConfig = appConfig;
+        this.textReaderService = textReaderService;
+        this.documentCache = documentCache;
+        this.indexDir = Paths.get(appConfig.getIndexDir());
+        
+        documentCache.onBodyRemoved(this::deleteIndex);
+        deleteOrphanedIndexes();
+    }
+    
+    /**
+     * Answers a request from the index without reading the text. Returns null when the
+     * index cannot be used: indexing is off, a word spans several tokens, the document
+     * changed or was never indexed.
+     */
+    public List<WordMatch> findMatches(String textUrl, Collection<String> words) {
+        if (!appConfig.isIndexingEnabled()) {
+            return null;
+        }
+        
+        Set<String> wordsToFind = new TreeSet<>();
+        for (String word : words) {
+            String normalized = word.toLowerCase();
+            if (!WordBoundaries.isSingleToken(normalized)) {
+                return null;
+            }
+            wordsToFind.add(normalized);
+        }
+        
+        DocumentCacheService.CachedDocument cached = textReaderService.revalidate(textUrl);
+        if (cached == null) {
+            return null;
+        }
+        DocumentIndex index = openIndex(cached.getContentHash());
+        if (index == null) {
+            return null;
+        }
+        
+        // Same shape as AggregatorService: sorted by word, words without matches omitted
+        List<WordMatch> matches = new ArrayList<>();
+        for (String word : wordsToFind) {
+            List<WordLocation> locations = index.lookup(WordBoundaries.foldCase(word));
+            if (!locations.isEmpty()) {
+                matches.add(new WordMatch(word, locations));
+            }
+        }
+        logger.info("Answered {} words from the index of {}", wordsToFind.size(), textUrl);
+        return matches;
+    }
+    
+    /**
+     * Builds the index for a cached document in the background, unless an up-to-date
+     * index already exists or is being built
+     */
+    public void scheduleBuild(String textUrl) {
+        if (!appConfig.isIndexingEnabled()) {
+            return;
+        }
+        DocumentCacheService.CachedDocument cached = documentCache.lookup(textUrl);
+        if (cached == null) {
+            logger.debug("Document {} is not cached, skipping indexing", textUrl);
+            return;
+        }
+        String contentHash = cached.getContentHash();
+        if (openIndex(contentHash) != null || !building.add(contentHash)) {
+            return;
+        }
+        
+        indexBuilder.execute(() -> {
+            try {
+                long startTime = System.currentTimeMillis();
+                DocumentIndexBuilder builder = new DocumentIndexBuilder(
+                    ConfigUtils.parseSize(appConfig.getIndexBuilderMaxMemory()));
+                textReaderService.readCachedInChunks(cached, builder);
+                Files.createDirectories(indexDir);
+                builder.writeTo(indexFile(contentHash));
+                // The body may have been evicted while the index was built
+                if (!documentCache.hasBody(contentHash)) {
+                    deleteIndex(contentHash);
+                    return;
+                }
+                logger.info("Indexed {} ({} tokens) in {} ms", textUrl, builder.getTokenCount(),
+                           System.currentTimeMillis() - startTime);
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Unable to index document {}: {}", textUrl, e.getMessage());
+            } finally {
+                building.remove(contentHash);
+            }
+        });
+    }
+    
+    private synchronized DocumentIndex openIndex(String contentHash) {
+        DocumentIndex index = openIndexes.get(contentHash);
+        if (index == null) {
+            Path file = indexFile(contentHash);
+            if (!Files.exists(file)) {
+                return null;
+            }
+            try {
+                index = DocumentIndex.open(file);
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Unable to open document index {}: {}", file, e.getMessage());
+                return null;
+            }
+            openIndexes.put(contentHash, index);
+        }
+        return index;
+    }
+    
+    private synchronized void deleteIndex(String contentHash) {
+        openIndexes.remove(contentHash);
+        try {
+            // Lookups still holding the mapped file keep reading it
+            if (Files.deleteIfExists(indexFile(contentHash))) {
+                logger.info("Deleted the index of evicted document {}", contentHash);
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to delete document index {}: {}", contentHash, e.getMessage());
+        }
+    }
+    
+    /**
+     * Deletes indexes whose cached body is gone and builds that never finished
+     */
+    private void deleteOrphanedIndexes() {
+        if (!Files.isDirectory(indexDir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(indexDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                } else if (name.endsWith(".idx") && !documentCache.hasBody(name.substring(0, name.length() - 4))) {
+                    deleteIndex(name.substring(0, name.length() - 4));
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to clean up index directory {}: {}", indexDir, e.getMessage());
+        }
+    }
+    
+    private Path indexFile(String contentHash) {
+        return indexDir.resolve(contentHash + ".idx");
+    }
+}
@@ -0,0 +1,137 @@
+package com.textanalysis.bit.service;
+
+import com.textanalysis.bit.model.internal.Deadline;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Blocking view of an HttpClient response body. One batch of buffers is requested at a
+ * time, so a slow reader holds back the connection instead of piling up the body in memory.
+ * A read waits at most the read timeout, and never past the deadline; then the body is
+ * cancelled and the read fails like a socket timeout.
+ */
+class HttpBodyInputStream extends InputStream implements Flow.Subscriber<List<ByteBuffer>> {
+    
+    private static final Object END = new Object();
+    
+    private final BlockingQueue<Object> items = new LinkedBlockingQueue<>();
+    private final long readTimeoutMillis;
+    private final Deadline deadline;
+    
+    private volatile Flow.Subscription subscription;
+    private Iterator<ByteBuffer> buffers = Collections.emptyIterator();
+    private ByteBuffer current;
+    private boolean finished;
+    
+    HttpBodyInputStream(long readTimeoutMillis, Deadline deadline) {
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.deadline = deadline;
+    }
+    
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+    
+    @Override
+    public void onNext(List<ByteBuffer> item) {
+        items.add(item);
+    }
+    
+    @Override
+    public void onError(Throwable throwable) {
+        items.add(throwable);
+    }
+    
+    @Override
+    public void onComplete() {
+        items.add(END);
+    }
+    
+    @Override
+    public int read() throws IOException {
+        if (!advance()) {
+            return -1;
+        }
+        return current.get() & 0xFF;
+    }
+    
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!advance()) {
+            return -1;
+        }
+        int count = Math.min(length, current.remaining());
+        current.get(buffer, offset, count);
+        return count;
+    }
+    
+    /**
+     * Cancels the rest of the body, which also releases the connection
+     */
+    @Override
+    public void close() {
+        if (!finished) {
+            finished = true;
+            Flow.Subscription s = subscription;
+            if (s != null) {
+                s.cancel();
+            }
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private boolean advance() throws IOException {
+        while (current == null || !current.hasRemaining()) {
+            if (buffers.hasNext()) {
+                current = buffers.next();
+                continue;
+            }
+            if (finished) {
+                return false;
+            }
+            Object item = take();
+            if (item == END) {
+                finished = true;
+                return false;
+            }
+            if (item instanceof Throwable failure) {
+                finished = true;
+                throw failure instanceof IOException io ? io : new IOException(failure.getMessage(), failure);
+            }
+            buffers = ((List<ByteBuffer>) item).iterator();
+            subscription.request(1);
+        }
+        return true;
+    }
+    
+    private Object take() throws IOException {
+        try {
+            Object item = items.poll(Math.min(readTimeoutMillis, deadline.remainingMillis()), TimeUnit.MILLISECONDS);
+            if (item == null) {
+                close();
+                throw new SocketTimeoutException("Read timed out");
+            }
+            return item;
+        } catch (InterruptedException e) {
+            close();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading the response body");
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.textanalysis.bit.service;
+
+import com.textanalysis.bit.config.AppConfig;
+import com.textanalysis.bit.model.dto.WordLocation;
+import com.textanalysis.bit.model.dto.WordMatch;
+import com.textanalysis.bit.model.internal.PackedLocationList;
+import com.textanalysis.bit.model.internal.ResultLimits;
+import com.textanalysis.bit.model.internal.TailPosition;
+import com.textanalysis.bit.util.ConfigUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Remembers, per URL, word set and location limit, how far incremental analyses of a growing document got
+ * and the matches found up to there, so the next analysis only reads what was appended.
+ * States are kept in memory, least recently used first out, bounded by count and by the
+ * size of their locations.
+ */
+@Service
+public class IncrementalStateService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(IncrementalStateService.class);
+    
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<String, State> states = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+    
+    public IncrementalStateService(AppConfig appConfig) {
+        this.maxEntries = appConfig.getIncrementalMaxEntries();
+        this.maxBytes = ConfigUtils.parseSize(appConfig.getIncrementalMaxMemory());
+    }
+    
+    /**
+     * The stored state for the document and words, or null if there is none
+     */
+    public synchronized State lookup(String textUrl, Collection<String> words, ResultLimits limits) {
+        return states.get(key(textUrl, words, limits));
+    }
+    
+    /**
+     * Stores the matches of the document up to the position. A state that got further,
+     * stored meanwhile by a concurrent analysis, is kept.
+     */
+    public synchronized void store(String textUrl, Collection<String> words, ResultLimits limits,
+                                   TailPosition position, List<WordMatch> matches) {
+        String key = key(textUrl, words, limits);
+        State state = new State(position, matches);
+        if (state.sizeBytes > maxBytes) {
+            remove(key);
+            logger.info("Not keeping incremental state for {}: {} bytes of matches", textUrl, state.sizeBytes);
+            return;
+        }
+        State previous = states.get(key);
+        if (previous != null && previous.position.getByteOffset() > position.getByteOffset()) {
+            return;
+        }
+        remove(key);
+        states.put(key, state);
+        currentBytes += state.sizeBytes;
+        
+        Iterator<Map.Entry<String, State>> iterator = states.entrySet().iterator();
+        while ((states.size() > maxEntries || currentBytes > maxBytes) && iterator.hasNext()) {
+            Map.Entry<String, State> eldest = iterator.next();
+            if (!eldest.getKey().equals(key)) {
+                currentBytes -= eldest.getValue().sizeBytes;
+                iterator.remove();
+            }
+        }
+    }
+    
+    public synchronized void remove(String textUrl, Collection<String> words, ResultLimits limits) {
+        remove(key(textUrl, words, limits));
+    }
+    
+    private void remove(String key) {
+        State removed = states.remove(key);
+        if (removed != null) {
+            currentBytes -= removed.sizeBytes;
+        }
+    }
+    
+    public synchronized int getSize() {
+        return states.size();
+    }
+    
+    /**
+     * Merges the matches of a later part of the document into earlier ones. Both lists are
+     * sorted by word, as the collector returns them, and so is the result; the locations of
+     * a word found in both are appended without copying the earlier ones, up to the limit.
+     */
+    public static List<WordMatch> merge(List<WordMatch> earlier, List<WordMatch> later, int locationLimit) {
+        List<WordMatch> merged = new ArrayList<>(earlier.size() + later.size());
+        int i = 0;
+        int j = 0;
+        while (i < earlier.size() || j < later.size()) {
+            int order = i == earlier.size() ? 1
+                : j == later.size() ? -1
+                : earlier.get(i).getWord().compareTo(later.get(j).getWord());
+            if (order < 0) {
+                merged.add(earlier.get(i++));
+            } else if (order > 0) {
+                merged.add(later.get(j++));
+            } else {
+                WordMatch match = earlier.get(i++);
+                WordMatch more = later.get(j++);
+                PackedLocationList locations = packed(match.getLocations());
+                List<WordLocation> moreLocations = more.getLocations();
+                int room = locationLimit - locations.size();
+                if (room > 0) {
+                    locations = locations.append(packed(moreLocations.size() <= room
+                        ? moreLocations
+                        : moreLocations.subList(0, room)));
+                }
+                merged.add(new WordMatch(match.getWord(), locations, match.getCount() + more.getCount()));
+            }
+        }
+        return merged;
+    }
+    
+    private static PackedLocationList packed(List<WordLocation> locations) {
+        if (locations instanceof PackedLocationList packed) {
+            return packed;
+        }
+        int[] lines = new int[locations.size()];
+        long[] offsets = new long[locations.size()];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = locations.get(i).getLineOffset();
+            offsets[i] = locations.get(i).getCharOffset();
+        }
+        return new PackedLocationList(lines, offsets, lines.length);
+    }
+    
+    /**
+     * Words are matched case-insensitively, so the key uses the same normalized set the
+     * matcher is compiled from. Word limits are applied to the response only and are not
+     * part of the key.
+     */
+    private static String key(String textUrl, Collection<String> words, ResultLimits limits) {
+        TreeSet<String> normalized = new TreeSet<>();
+        words.forEach(word -> normalized.add(word.toLowerCase()));
+        StringBuilder key = new StringBuilder(textUrl).append('\n').append(limits.getLocationsPerWord());
+        for (String word : normalized) {
+            key.append('\n').append(word);
+        }
+        return key.toString();
+    }
+    
+    public static class State {
+        private final TailPosition position;
+        private final List<WordMatch> matches;
+        private final long sizeBytes;
+        
+        State(TailPosition position, List<WordMatch> matches) {
+            this.position = position;
+            this.matches = matches;
+            long size = 0;
+            for (WordMatch match : matches) {
+                size += (long) match.getLocations().size() * PackedLocationList.RECORD_BYTES;
+            }
+            this.sizeBytes = size;
+        }
+        
+        public TailPosition getPosition() {
+            return position;
+        }
+        
+        public List<WordMatch> getMatches() {
+            return matches;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.textanalysis.bit.service;
+
+import com.textanalysis.bit.config.AppConfig;
+import com.textanalysis.bit.exception.AdmissionRejectedException;
+import com.textanalysis.bit.exception.AnalysisCancelledException;
+import com.textanalysis.bit.exception.JobNotFinishedException;
+import com.textanalysis.bit.exception.JobNotFoundException;
+import com.textanalysis.bit.model.dto.TextAnalysisRequest;
+import com.textanalysis.bit.model.dto.TextAnalysisResponse;
+import com.textanalysis.bit.model.dto.WordLocation;
+import com.textanalysis.bit.model.dto.WordMatch;
+import com.textanalysis.bit.model.internal.AnalysisJob;
+import com.textanalysis.bit.model.internal.Deadline;
+import com.textanalysis.bit.model.internal.PackedLocationList;
+import com.textanalysis.bit.util.ConfigUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs analyses in the background and keeps their results for polling. Finished jobs are
+ * retained for job-result-ttl, at most job-max-retained of them. Results are kept on the
+ * heap up to job-results-max-memory in total; past that they are written to job-dir and
+ * served memory-mapped, or, with spilling disabled, the oldest finished jobs are dropped.
+ */
+@Service
+public class JobService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(JobService.class);
+    private static final long MAX_SEGMENT_BYTES = (Integer.MAX_VALUE / PackedLocationList.RECORD_BYTES)
+        * (long) PackedLocationList.RECORD_BYTES;
+    /** Rough heap cost of one WordLocation object in a plain list */
+    private static final long LOCATION_OBJECT_BYTES = 40;
+    
+    private final TextAnalysisService textAnalysisService;
+    private final Executor jobExecutor;
+    private final AppConfig appConfig;
+    private final Map<String, AnalysisJob> jobs = new ConcurrentHashMap<>();
+    private final long resultTtlMillis;
+    private final long maxResultsMemory;
+    private final Path jobDir;
+    
+    private long retainedHeapBytes;
+    
+    public JobService(TextAnalysisService textAnalysisService,
+                      @Qualifier("analysisJobExecutor") Executor jobExecutor,
+                      AppConfig appConfig) {
+        this.textAnalysisService = textAnalysisService;
+        this.jobExecutor = jobExecutor;
+        this.appConfig = appConfig;
+        this.resultTtlMillis = ConfigUtils.parseDurationMillis(appConfig.getJobResultTtl());
+        this.maxResultsMemory = ConfigUtils.parseSize(appConfig.getJobResultsMaxMemory());
+        this.jobDir = Paths.get(appConfig.getJobDir());
+    }
+    
+    public AnalysisJob submit(TextAnalysisRequest request) {
+        evictExpired();
+        
+        Deadline deadline = Deadline.after(ConfigUtils.parseDurationMillis(appConfig.getJobTimeout()));
+        AnalysisJob job = new AnalysisJob(UUID.randomUUID().toString(), request, deadline);
+        jobs.put(job.getId(), job);
+        try {
+            jobExecutor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw new AdmissionRejectedException("Too many jobs are queued; try again later", 60);
+        }
+        
+        logger.info("Submitted job {} for URL: {}", job.getId(), request.getTextUrl());
+        return job;
+    }
+    
+    public AnalysisJob getJob(String jobId) {
+        evictExpired();
+        AnalysisJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new JobNotFoundException("No job with id: " + jobId);
+        }
+        return job;
+    }
+    
+    /**
+     * Results of a succeeded job, sorted by word
+     */
+    public List<WordMatch> getResults(String jobId) {
+        AnalysisJob job = getJob(jobId);
+        if (job.getState() != AnalysisJob.State.SUCCEEDED) {
+            throw new JobNotFinishedException("Job " + jobId + " has no results, it is " + job.getState());
+        }
+        return job.getResults();
+    }
+    
+    /**
+     * Cancels the job if it is still queued or running and forgets it
+     */
+    public void cancel(String jobId) {
+        AnalysisJob job = getJob(jobId);
+        job.cancel();
+        remove(job);
+        logger.info("Cancelled job {}", jobId);
+    }
+    
+    public int getJobCount() {
+        return jobs.size();
+    }
+    
+    public synchronized long getRetainedHeapBytes() {
+        return retainedHeapBytes;
+    }
+    
+    /**
+     * The job stays queued until admission lets it start, which busy servers may delay
+     * for as long as the job timeout allows
+     */
+    private void run(AnalysisJob job) {
+        try (AdmissionService.Permit permit = textAnalysisService.admitJob(job.getRequest(), job.getDeadline())) {
+            if (!job.start()) {
+                return;
+            }
+            TextAnalysisResponse response = textAnalysisService.analyzeText(
+                job.getRequest(), job.getDeadline(), job.getProgress());
+            retain(job, response.getMatches(), response.getProcessingTimeMs());
+        } catch (AnalysisCancelledException e) {
+            logger.info("Job {} stopped: {}", job.getId(), e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Job {} failed", job.getId(), e);
+            job.fail(e.getMessage());
+        }
+    }
+    
+    private synchronized void retain(AnalysisJob job, List<WordMatch> matches, long processingTimeMs) {
+        if (job.getState().isFinished()) {
+            return;
+        }
+        
+        long heapBytes = heapBytes(matches);
+        Path resultFile = null;
+        if (retainedHeapBytes + heapBytes > maxResultsMemory) {
+            if (appConfig.isJobSpillEnabled()) {
+                try {
+                    resultFile = jobDir.resolve(job.getId() + ".results");
+                    matches = spill(matches, resultFile);
+                    heapBytes = 0;
+                } catch (IOException e) {
+                    logger.warn("Unable to spill results of job {}, keeping them on heap: {}", job.getId(), e.getMessage());
+                    resultFile = null;
+                }
+            } else {
+                evictOldestFinished(heapBytes);
+            }
+        }
+        
+        retainedHeapBytes += heapBytes;
+        job.succeed(matches, processingTimeMs, heapBytes, resultFile);
+        logger.info("Job {} succeeded, retaining {} heap bytes{}", job.getId(), heapBytes,
+                   resultFile != null ? " and " + resultFile : "");
+        
+        int excess = (int) jobs.values().stream().filter(j -> j.getState().isFinished()).count()
+            - appConfig.getJobMaxRetained();
+        finishedOldestFirst().stream().limit(Math.max(0, excess)).forEach(this::remove);
+    }
+    
+    /**
+     * Writes every word's locations to one file and maps them back as read-only segments
+     */
+    private List<WordMatch> spill(List<WordMatch> matches, Path file) throws IOException {
+        Files.createDirectories(jobDir);
+        List<WordMatch> spilled = new ArrayList<>(matches.size());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer out = ByteBuffer.allocateDirect(64 * 1024);
+            long[] starts = new long[matches.size()];
+            long position = 0;
+            for (int w = 0; w < matches.size(); w++) {
+                starts[w] = position;
+                for (WordLocation location : matches.get(w).getLocations()) {
+                    if (out.remaining() < PackedLocationList.RECORD_BYTES) {
+                        writeFully(channel, out);
+                    }
+                    out.putInt(location.getLineOffset()).putLong(location.getCharOffset());
+                    position += PackedLocationList.RECORD_BYTES;
+                }
+            }
+            writeFully(channel, out);
+            
+            for (int w = 0; w < matches.size(); w++) {
+                long start = starts[w];
+                long end = w + 1 < matches.size() ? starts[w + 1] : position;
+                List<ByteBuffer> segments = new ArrayList<>();
+                while (start < end) {
+                    long length = Math.min(end - start, MAX_SEGMENT_BYTES);
+                    segments.add(channel.map(FileChannel.MapMode.READ_ONLY, start, length));
+                    start += length;
+                }
+                spilled.add(new WordMatch(matches.get(w).getWord(),
+                    new PackedLocationList(segments, new int[0], new long[0], 0), matches.get(w).getCount()));
+            }
+        }
+        return spilled;
+    }
+    
+    private static void writeFully(FileChannel channel, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+    
+    private static long heapBytes(List<WordMatch> matches) {
+        long bytes = 0;
+        for (WordMatch match : matches) {
+            bytes += match.getLocations() instanceof PackedLocationList packed
+                ? packed.heapBytes()
+                : match.getLocations().size() * LOCATION_OBJECT_BYTES;
+        }
+        return bytes;
+    }
+    
+    private synchronized void evictOldestFinished(long neededBytes) {
+        for (AnalysisJob job : finishedOldestFirst()) {
+            if (retainedHeapBytes + neededBytes <= maxResultsMemory) {
+                return;
+            }
+            remove(job);
+        }
+    }
+    
+    private synchronized void evictExpired() {
+        long now = System.currentTimeMillis();
+        for (AnalysisJob job : finishedOldestFirst()) {
+            if (now - job.getFinishedAtMillis() < resultTtlMillis) {
+                return;
+            }
+            remove(job);
+        }
+    }
+    
+    private List<AnalysisJob> finishedOldestFirst() {
+        return jobs.values().stream()
+            .filter(job -> job.getState().isFinished())
+            .sorted(Comparator.comparingLong(AnalysisJob::getFinishedAtMillis))
+            .toList();
+    }
+    
+    private synchronized void remove(AnalysisJob job) {
+        if (jobs.remove(job.getId()) == null) {
+            return;
+        }
+        retainedHeapBytes -= job.getResultHeapBytes();
+        if (job.getResultFile() != null) {
+            try {
+                Files.deleteIfExists(job.getResultFile());
+            } catch (IOException e) {
+                logger.warn("Unable to delete results of job {}: {}", job.getId(), e.getMessage());
+            }
+        }
+        logger.debug("Removed job {}", job.getId());
+    }
+}
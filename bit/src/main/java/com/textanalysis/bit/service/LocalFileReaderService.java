@@ -0,0 +1,242 @@
+package com.textanalysis.bit.service;
+
+import com.textanalysis.bit.config.AppConfig;
+import com.textanalysis.bit.exception.FileSizeExceededException;
+import com.textanalysis.bit.exception.InvalidUrlException;
+import com.textanalysis.bit.model.internal.AsciiByteSequence;
+import com.textanalysis.bit.model.internal.TextChunk;
+import com.textanalysis.bit.model.internal.Utf8ByteSequence;
+import com.textanalysis.bit.service.matcher.MatcherEngine;
+import com.textanalysis.bit.util.ConfigUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Reads file:// URLs under the configured local roots by memory-mapping the file and cutting
+ * it into byte ranges that end on a line end. Pure ASCII ranges are handed to the matchers as
+ * views over the mapped bytes; other ranges are decoded as UTF-8 once per chunk. Line endings
+ * are normalized the same way BufferedReader.readLine does, so offsets match the HTTP path.
+ * A line longer than max-local-line-bytes is cut after a space, so a phrase spanning that
+ * cut is not found.
+ */
+@Service
+public class LocalFileReaderService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(LocalFileReaderService.class);
+    
+    private final AppConfig appConfig;
+    
+    public LocalFileReaderService(AppConfig appConfig) {
+        this.appConfig = appConfig;
+    }
+    
+    public boolean isLocal(String textUrl) {
+        return textUrl.regionMatches(true, 0, "file:", 0, 5);
+    }
+    
+    /**
+     * Size of the local file in bytes, or -1 if it is not readable
+     */
+    public long sizeOf(String textUrl) {
+        try {
+            return Files.size(resolveAllowedPath(textUrl));
+        } catch (IOException | InvalidUrlException e) {
+            return -1;
+        }
+    }
+    
+    public int readTextInChunks(String textUrl, Consumer<TextChunk> chunkConsumer)
+            throws InvalidUrlException, FileSizeExceededException {
+        Path path = resolveAllowedPath(textUrl);
+        logger.info("Starting to read local file: {}", path);
+        
+        long chunkBytes = ConfigUtils.parseSize(appConfig.getChunkBytes());
+        long maxLineBytes = Math.max(2, Math.min(ConfigUtils.parseSize(appConfig.getMaxLocalLineBytes()), Integer.MAX_VALUE / 2));
+        int chunkCount = 0;
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > ConfigUtils.parseSize(appConfig.getMaxLocalFileSize())) {
+                throw new FileSizeExceededException("File size exceeds maximum allowed: " + appConfig.getMaxLocalFileSize());
+            }
+            
+            long position = 0;
+            int startLine = 0;
+            long globalCharOffset = 0;
+            while (position < size) {
+                ByteBuffer region = mapUpToLineEnd(channel, position, size, chunkBytes, maxLineBytes);
+                position += region.limit();
+                boolean lineContinues = position < size && !Utf8ByteSequence.isLineEnd(region.get(region.limit() - 1));
+                
+                TextChunk chunk = toChunk(region, startLine, globalCharOffset, position == size, lineContinues);
+                chunkConsumer.accept(chunk);
+                chunkCount++;
+                
+                startLine = lineContinues ? chunk.getEndLine() : chunk.getEndLine() + 1;
+                globalCharOffset += chunk.getContent().length();
+            }
+        } catch (IOException e) {
+            logger.error("Error reading local file: {}", path, e);
+            throw new InvalidUrlException("Unable to read local file: " + textUrl, e);
+        }
+        
+        logger.info("Successfully read {} chunks from local file", chunkCount);
+        return chunkCount;
+    }
+    
+    /**
+     * Opens the file at a byte position for reading what follows it, or returns null if
+     * the file is no longer than that
+     */
+    public InputStream openAt(String textUrl, long position) throws InvalidUrlException, FileSizeExceededException {
+        Path path = resolveAllowedPath(textUrl);
+        try {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+            long size = channel.size();
+            if (size > ConfigUtils.parseSize(appConfig.getMaxLocalFileSize())) {
+                channel.close();
+                throw new FileSizeExceededException("File size exceeds maximum allowed: " + appConfig.getMaxLocalFileSize());
+            }
+            if (size < position) {
+                channel.close();
+                return null;
+            }
+            return Channels.newInputStream(channel.position(position));
+        } catch (IOException e) {
+            logger.error("Error reading local file: {}", path, e);
+            throw new InvalidUrlException("Unable to read local file: " + textUrl, e);
+        }
+    }
+    
+    /**
+     * Maps about chunkBytes from position, trimmed back to the last "\n", "\r\n" or lone
+     * "\r". A line longer than the window doubles the window until the line fits or the
+     * window reaches maxLineBytes; then the line is cut inside instead.
+     */
+    private ByteBuffer mapUpToLineEnd(FileChannel channel, long position, long size, long chunkBytes, long maxLineBytes)
+            throws IOException {
+        long window = Math.min(Math.min(chunkBytes, maxLineBytes), size - position);
+        while (true) {
+            MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, window);
+            if (position + window == size) {
+                return region;
+            }
+            int limit = (int) window;
+            for (int i = limit - 1; i >= 0; i--) {
+                // A "\r" in the last byte may still be followed by "\n"
+                if (region.get(i) == '\n' || (region.get(i) == '\r' && i < limit - 1)) {
+                    return region.slice(0, i + 1);
+                }
+            }
+            if (window >= maxLineBytes) {
+                return region.slice(0, insideLineCut(region, limit));
+            }
+            window = Math.min(Math.min(window * 2, maxLineBytes), size - position);
+        }
+    }
+    
+    /**
+     * Where to cut a line that does not fit the window: after the last space or tab, so no
+     * word is cut, or failing that before the last character
+     */
+    private static int insideLineCut(ByteBuffer region, int limit) {
+        for (int i = limit - 2; i >= 0; i--) {
+            byte b = region.get(i);
+            if ((b == ' ' || b == '\t') && region.get(i + 1) >= 0) {
+                return i + 1;
+            }
+        }
+        for (int i = limit - 2; i > 0; i--) {
+            if ((region.get(i) & 0xC0) != 0x80) {
+                return i;
+            }
+        }
+        return limit - 1;
+    }
+    
+    /**
+     * Wraps or decodes the region. If its last line continues in the next chunk, that line
+     * gets no line end and the chunk ends on the line the next one starts with.
+     */
+    private TextChunk toChunk(ByteBuffer region, int startLine, long globalCharOffset, boolean lastChunk,
+            boolean lineContinues) throws CharacterCodingException {
+        int length = region.limit();
+        int lines = 0;
+        boolean plainAscii = true;
+        for (int i = 0; i < length; i++) {
+            byte b = region.get(i);
+            if (b == '\n') {
+                lines++;
+            } else if (b < 0 || b == '\r') {
+                plainAscii = false;
+            }
+        }
+        boolean endsWithNewline = length > 0 && region.get(length - 1) == '\n';
+        
+        int lastLine = lineContinues ? startLine + lines : startLine + lines - 1;
+        if (plainAscii && (endsWithNewline || !lastChunk)) {
+            return new TextChunk(new AsciiByteSequence(region), startLine, lastLine, globalCharOffset, length);
+        }
+        
+        // The byte matcher scans UTF-8 directly; the characters are only decoded if asked for
+        if (appConfig.getMatcherEngine() == MatcherEngine.BYTES && !lineContinues) {
+            Utf8ByteSequence utf8 = Utf8ByteSequence.of(region);
+            if (utf8 != null) {
+                return new TextChunk(utf8, startLine, startLine + utf8.getLineCount() - 1, globalCharOffset, length);
+            }
+        }
+        
+        // "\r\n" and a lone "\r" end a line just like "\n"; the last line always gets a "\n"
+        CharBuffer decoded = Utf8ByteSequence.decode(region);
+        if (lineContinues) {
+            decoded.limit(decoded.limit() - 1);
+        }
+        lines = 0;
+        for (int i = 0; i < decoded.length(); i++) {
+            if (decoded.get(i) == '\n') {
+                lines++;
+            }
+        }
+        return new TextChunk(decoded, startLine, lineContinues ? startLine + lines : startLine + lines - 1,
+            globalCharOffset, length);
+    }
+    
+    /**
+     * Only files below one of the configured local roots may be read
+     */
+    private Path resolveAllowedPath(String textUrl) {
+        Path path;
+        try {
+            path = Paths.get(URI.create(textUrl)).toRealPath();
+        } catch (IllegalArgumentException | IOException e) {
+            throw new InvalidUrlException("Unable to read local file: " + textUrl, e);
+        }
+        
+        for (String root : appConfig.getLocalRoots()) {
+            try {
+                if (path.startsWith(Paths.get(root).toRealPath())) {
+                    return path;
+                }
+            } catch (IOException e) {
+                logger.warn("Configured local root does not exist: {}", root);
+            }
+        }
+        throw new InvalidUrlException("Local file is outside the allowed roots: " + textUrl);
+    }
+}
@@ -0,0 +1,267 @@
+package com.textanalysis.bit.service;
+
+import com.textanalysis.bit.exception.TextAnalysisException;
+import com.textanalysis.bit.model.dto.WordLocation;
+import com.textanalysis.bit.model.dto.WordMatch;
+import com.textanalysis.bit.model.internal.MatchBuffer;
+import com.textanalysis.bit.model.internal.PackedLocationList;
+import com.textanalysis.bit.model.internal.ResultLimits;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Accumulates the matches of one request, chunk by chunk in document order. Locations are
+ * kept per word in primitive arrays; once they exceed the heap budget, everything collected
+ * so far is written to a spill file as one block and later served memory-mapped, so the
+ * heap needed for results stays bounded however many hits the document has. Under result
+ * limits only the first locations of each word are kept and the rest are counted, and the
+ * most frequent words are picked at the end.
+ * <p>
+ * Not thread-safe: chunks must be added from one thread, in order.
+ */
+public class MatchCollector implements AutoCloseable {
+    
+    private static final Logger logger = LoggerFactory.getLogger(MatchCollector.class);
+    private static final int[] NO_LINES = new int[0];
+    private static final long[] NO_OFFSETS = new long[0];
+    
+    private final long heapBudgetBytes;
+    private final Path spillDir;
+    private final ResultLimits limits;
+    
+    private String[] words;
+    private WordLocations[] locations;
+    private long[] occurrences;
+    private long heapBytes;
+    
+    private Path spillFile;
+    private FileChannel spillChannel;
+    private int spillCount;
+    
+    MatchCollector(long heapBudgetBytes, Path spillDir, ResultLimits limits) {
+        this.heapBudgetBytes = heapBudgetBytes;
+        this.spillDir = spillDir;
+        this.limits = limits;
+    }
+    
+    /**
+     * Appends the matches of the next chunk. All buffers must come from the same matcher.
+     */
+    public void add(MatchBuffer buffer) {
+        if (words == null) {
+            words = new String[buffer.getWordCount()];
+            locations = new WordLocations[buffer.getWordCount()];
+            occurrences = new long[buffer.getWordCount()];
+            for (int id = 0; id < words.length; id++) {
+                words[id] = buffer.getWord(id);
+                locations[id] = new WordLocations();
+            }
+        }
+        
+        for (int id = 0; id < words.length; id++) {
+            occurrences[id] += buffer.getOccurrences(id);
+            int count = Math.min(buffer.getCount(id), limits.getLocationsPerWord() - locations[id].size());
+            if (count > 0) {
+                locations[id].append(buffer.getLines(id), buffer.getOffsets(id), count);
+                heapBytes += (long) count * PackedLocationList.RECORD_BYTES;
+            }
+        }
+        
+        if (heapBytes > heapBudgetBytes) {
+            spill();
+        }
+    }
+    
+    /**
+     * Builds the final matches: sorted by word, words without matches omitted. Under a word
+     * limit only the most frequent words are kept, most frequent first.
+     */
+    public List<WordMatch> finish() {
+        List<WordMatch> finalResults = new ArrayList<>();
+        if (words == null) {
+            return finalResults;
+        }
+        
+        // Words that only differ in case share one entry
+        Map<String, List<Integer>> idsByWord = new TreeMap<>();
+        for (int id = 0; id < words.length; id++) {
+            if (occurrences[id] > 0) {
+                idsByWord.computeIfAbsent(words[id].toLowerCase(), k -> new ArrayList<>()).add(id);
+            }
+        }
+        
+        for (Map.Entry<String, List<Integer>> entry : idsByWord.entrySet()) {
+            List<Integer> ids = entry.getValue();
+            List<WordLocation> wordLocations = ids.size() == 1
+                ? locations[ids.get(0)].toList()
+                : mergeCaseVariants(ids);
+            // Case variants match the same occurrences when the matcher ignores case
+            long count = wordLocations.size();
+            for (int id : ids) {
+                count = Math.max(count, occurrences[id]);
+            }
+            finalResults.add(new WordMatch(entry.getKey(), wordLocations, count));
+            logger.debug("Word '{}' found {} times", entry.getKey(), count);
+        }
+        
+        close();
+        return limits.apply(finalResults);
+    }
+    
+    /**
+     * Rare path for word sets that were not normalized. Each variant's list is already in
+     * offset order, so the lists are merged k ways rather than concatenated and sorted; of
+     * locations with the same offset only the first is kept.
+     */
+    private List<WordLocation> mergeCaseVariants(List<Integer> ids) {
+        PackedLocationList[] runs = new PackedLocationList[ids.size()];
+        int[] positions = new int[runs.length];
+        int total = 0;
+        for (int i = 0; i < runs.length; i++) {
+            runs[i] = locations[ids.get(i)].toList();
+            total += runs[i].size();
+        }
+        
+        int[] mergedLines = new int[total];
+        long[] mergedOffsets = new long[total];
+        int size = 0;
+        while (true) {
+            // Variants are few, so a linear scan for the smallest head beats a heap
+            int next = -1;
+            long nextOffset = Long.MAX_VALUE;
+            for (int i = 0; i < runs.length; i++) {
+                if (positions[i] < runs[i].size() && runs[i].offsetAt(positions[i]) < nextOffset) {
+                    next = i;
+                    nextOffset = runs[i].offsetAt(positions[i]);
+                }
+            }
+            if (next < 0) {
+                break;
+            }
+            if ((size == 0 || mergedOffsets[size - 1] != nextOffset) && size < limits.getLocationsPerWord()) {
+                mergedLines[size] = runs[next].lineAt(positions[next]);
+                mergedOffsets[size] = nextOffset;
+                size++;
+            }
+            positions[next]++;
+        }
+        return new PackedLocationList(mergedLines, mergedOffsets, size);
+    }
+    
+    /**
+     * Writes every word's in-memory locations to the spill file as one block, maps the block
+     * and frees the heap arrays
+     */
+    private void spill() {
+        try {
+            if (spillChannel == null) {
+                Files.createDirectories(spillDir);
+                spillFile = Files.createTempFile(spillDir, "matches-", ".spill");
+                spillChannel = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            
+            long blockStart = spillChannel.position();
+            long blockBytes = heapBytes;
+            ByteBuffer out = ByteBuffer.allocateDirect(64 * 1024);
+            for (WordLocations word : locations) {
+                for (int i = 0; i < word.size; i++) {
+                    if (out.remaining() < PackedLocationList.RECORD_BYTES) {
+                        writeFully(out);
+                    }
+                    out.putInt(word.lines[i]).putLong(word.offsets[i]);
+                }
+            }
+            writeFully(out);
+            
+            ByteBuffer block = spillChannel.map(FileChannel.MapMode.READ_ONLY, blockStart, blockBytes);
+            int position = 0;
+            for (WordLocations word : locations) {
+                if (word.size > 0) {
+                    int length = word.size * PackedLocationList.RECORD_BYTES;
+                    word.spilled.add(block.slice(position, length));
+                    word.spilledSize += word.size;
+                    word.clear();
+                    position += length;
+                }
+            }
+            
+            heapBytes = 0;
+            spillCount++;
+            logger.info("Spilled {} bytes of matches to {} (block {})", blockBytes, spillFile, spillCount);
+        } catch (IOException e) {
+            close();
+            throw new TextAnalysisException("Unable to spill matches to disk", e);
+        }
+    }
+    
+    private void writeFully(ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            spillChannel.write(out);
+        }
+        out.clear();
+    }
+    
+    /**
+     * Releases the spill file. Lists returned by {@link #finish()} stay readable, since
+     * mapped blocks outlive the closed and unlinked file.
+     */
+    @Override
+    public void close() {
+        if (spillChannel == null) {
+            return;
+        }
+        try {
+            spillChannel.close();
+            Files.deleteIfExists(spillFile);
+        } catch (IOException e) {
+            spillFile.toFile().deleteOnExit();
+        }
+        spillChannel = null;
+    }
+    
+    private static class WordLocations {
+        private int[] lines = NO_LINES;
+        private long[] offsets = NO_OFFSETS;
+        private int size;
+        private final List<ByteBuffer> spilled = new ArrayList<>();
+        private int spilledSize;
+        
+        void append(int[] moreLines, long[] moreOffsets, int count) {
+            if (size + count > offsets.length) {
+                int capacity = Math.max(size + count, offsets.length * 2);
+                lines = Arrays.copyOf(lines, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+            }
+            System.arraycopy(moreLines, 0, lines, size, count);
+            System.arraycopy(moreOffsets, 0, offsets, size, count);
+            size += count;
+        }
+        
+        void clear() {
+            lines = NO_LINES;
+            offsets = NO_OFFSETS;
+            size = 0;
+        }
+        
+        int size() {
+            return spilledSize + size;
+        }
+        
+        PackedLocationList toList() {
+            return new PackedLocationList(spilled, lines, offsets, size);
+        }
+    }
+}
@@ -1,60 +1,142 @@
 package com.textanalysis.bit.service;
 
-import com.textanalysis.bit.model.internal.MatchResult;
+import com.textanalysis.bit.config.AppConfig;
+import com.textanalysis.bit.exception.TextAnalysisException;
+import com.textanalysis.bit.model.internal.Deadline;
+import com.textanalysis.bit.model.internal.MatchBuffer;
+import com.textanalysis.bit.model.internal.ResultLimits;
 import com.textanalysis.bit.model.internal.TextChunk;
+import com.textanalysis.bit.service.matcher.AhoCorasickWordMatcher;
+import com.textanalysis.bit.service.matcher.ByteWordMatcher;
+import com.textanalysis.bit.service.matcher.MatcherEngine;
+import com.textanalysis.bit.service.matcher.RegexWordMatcher;
+import com.textanalysis.bit.service.matcher.WordMatcher;
+import com.textanalysis.bit.service.matcher.WordMatcherCache;
+import com.textanalysis.bit.util.ConfigUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 @Service
 public class MatcherService {
     
     private static final Logger logger = LoggerFactory.getLogger(MatcherService.class);
     
-    public List<MatchResult> findMatches(TextChunk chunk, Set<String> wordsToFind) {
-        logger.debug("Processing chunk from line {} to {}", chunk.getStartLine(), chunk.getEndLine());
-        
-        List<MatchResult> results = new ArrayList<>();
-        String content = chunk.getContent();
-        String[] lines = content.split("\n");
+    private final AppConfig appConfig;
+    private final WordMatcherCache matcherCache;
+    
+    public MatcherService(AppConfig appConfig) {
+        this.appConfig = appConfig;
+        this.matcherCache = new WordMatcherCache(
+            appConfig.getMatcherCacheMaxEntries(),
+            ConfigUtils.parseSize(appConfig.getMatcherCacheMaxSize()),
+            ConfigUtils.parseDurationMillis(appConfig.getMatcherCacheTtl()));
+    }
+    
+    /**
+     * Returns a matcher for the request words using the configured engine. Words are
+     * lower-cased and de-duplicated, and compiled matchers are reused across requests
+     * with the same word set.
+     */
+    public WordMatcher getMatcher(Collection<String> words) {
+        MatcherEngine engine = appConfig.getMatcherEngine();
         
-        int currentGlobalCharOffset = chunk.getGlobalCharOffset();
-        int currentLineNumber = chunk.getStartLine();
+        // Sorting gives the same key regardless of the order the client sent the words in
+        Set<String> wordsToFind = new LinkedHashSet<>();
+        words.stream().map(String::toLowerCase).sorted().forEach(wordsToFind::add);
         
-        for (String line : lines) {
-            for (String word : wordsToFind) {
-                // Create case-insensitive word boundary pattern
-                Pattern pattern = Pattern.compile("\\b" + Pattern.quote(word) + "\\b", Pattern.CASE_INSENSITIVE);
-                Matcher matcher = pattern.matcher(line);
-                
-                while (matcher.find()) {
-                    int charPositionInLine = matcher.start();
-                    int globalCharPosition = currentGlobalCharOffset + charPositionInLine;
-                    
-                    MatchResult result = new MatchResult(
-                        word,
-                        currentLineNumber,
-                        charPositionInLine,
-                        globalCharPosition
-                    );
-                    
-                    results.add(result);
-                    logger.debug("Found '{}' at line {} position {}", word, currentLineNumber, charPositionInLine);
-                }
-            }
-            
-            currentGlobalCharOffset += line.length() + 1; // +1 for newline character
-            currentLineNumber++;
+        if (!appConfig.isMatcherCacheEnabled()) {
+            return compile(wordsToFind, engine);
         }
         
-        logger.debug("Found {} matches in chunk", results.size());
+        WordMatcher matcher = matcherCache.getOrCompile(
+            cacheKey(wordsToFind, engine), () -> compile(wordsToFind, engine));
+        logger.debug("Matcher cache: {} hits, {} misses, {} entries",
+                    matcherCache.getHits(), matcherCache.getMisses(), matcherCache.getSize());
+        return matcher;
+    }
+    
+    /**
+     * Compiles the words into a matcher using the configured engine, bypassing the cache
+     */
+    public WordMatcher compile(Set<String> wordsToFind) {
+        return compile(wordsToFind, appConfig.getMatcherEngine());
+    }
+    
+    public WordMatcher compile(Set<String> wordsToFind, MatcherEngine engine) {
+        long startTime = System.currentTimeMillis();
+        
+        WordMatcher matcher = switch (engine) {
+            case REGEX -> new RegexWordMatcher(wordsToFind);
+            case AHO_CORASICK -> new AhoCorasickWordMatcher(wordsToFind);
+            case BYTES -> ByteWordMatcher.supports(wordsToFind)
+                ? new ByteWordMatcher(wordsToFind)
+                : new AhoCorasickWordMatcher(wordsToFind);
+        };
+        
+        logger.debug("Compiled {} words with {} engine in {} ms",
+                    matcher.size(), engine, System.currentTimeMillis() - startTime);
+        return matcher;
+    }
+    
+    public MatchBuffer findMatches(TextChunk chunk, WordMatcher matcher) {
+        return findMatches(chunk, matcher, Deadline.none());
+    }
+    
+    /**
+     * Matches the chunk, giving up with an exception once the deadline is over
+     */
+    public MatchBuffer findMatches(TextChunk chunk, WordMatcher matcher, Deadline deadline) {
+        return findMatches(chunk, matcher, deadline, ResultLimits.NONE);
+    }
+    
+    /**
+     * Matches the chunk keeping at most the limit's locations per word; every hit is still
+     * counted, so counts-only requests never store a location
+     */
+    public MatchBuffer findMatches(TextChunk chunk, WordMatcher matcher, Deadline deadline, ResultLimits limits) {
+        logger.debug("Processing chunk from line {} to {}", chunk.getStartLine(), chunk.getEndLine());
+        
+        // Inside the matcher pool the split runs on that pool; elsewhere on the common pool
+        ForkJoinPool pool = ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool() : ForkJoinPool.commonPool();
+        MatchBuffer results = ChunkMatchTask.of(chunk, matcher, pool.getParallelism(), deadline,
+            limits.getLocationsPerWord()).invoke();
+        
+        logger.debug("Found {} matches in chunk", results.getTotalCount());
         return results;
     }
+    
+    public MatchBuffer findMatches(TextChunk chunk, Set<String> wordsToFind) {
+        return findMatches(chunk, compile(wordsToFind));
+    }
+    
+    public WordMatcherCache getMatcherCache() {
+        return matcherCache;
+    }
+    
+    /**
+     * SHA-256 over the sorted, length-prefixed words, so no two word sets share a key
+     */
+    private String cacheKey(Set<String> sortedWords, MatcherEngine engine) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String word : sortedWords) {
+                digest.update((word.length() + ":").getBytes(StandardCharsets.UTF_8));
+                digest.update(word.getBytes(StandardCharsets.UTF_8));
+            }
+            return engine + ":" + HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new TextAnalysisException("SHA-256 is not available", e);
+        }
+    }
 }
-
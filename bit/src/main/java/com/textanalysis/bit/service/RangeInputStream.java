@@ -0,0 +1,154 @@
+package com.textanalysis.bit.service;
+
+import com.textanalysis.bit.model.internal.Deadline;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The body of a remote document, fetched as consecutive byte ranges over several
+ * connections at once but read as one ordered stream. Up to {@code window} parts are in
+ * flight or buffered ahead of the reader; a part becomes readable as soon as it and every
+ * part before it have landed. Because the reader sees one contiguous stream, line ends and
+ * multi-byte characters that straddle a range boundary need no special handling.
+ * <p>
+ * The first part is taken from the response that probed the document, so no round trip
+ * is wasted on it.
+ */
+class RangeInputStream extends InputStream {
+    
+    /**
+     * Opens the bytes start to end (inclusive) of the same version of the document
+     */
+    interface RangeOpener {
+        InputStream open(long start, long end) throws IOException;
+    }
+    
+    private final RangeOpener opener;
+    private final long length;
+    private final int partSize;
+    private final int window;
+    private final ExecutorService executor;
+    private final Deadline deadline;
+    private final Deque<Future<byte[]>> parts = new ArrayDeque<>();
+    
+    private long nextPartStart;
+    private byte[] current = new byte[0];
+    private int position;
+    
+    RangeInputStream(InputStream firstPart, long length, int partSize, int window,
+                     RangeOpener opener, ExecutorService executor, Deadline deadline) {
+        this.opener = opener;
+        this.length = length;
+        this.partSize = partSize;
+        this.window = window;
+        this.executor = executor;
+        this.deadline = deadline;
+        
+        int firstSize = (int) Math.min(partSize, length);
+        parts.add(executor.submit(() -> {
+            try (firstPart) {
+                return readPart(firstPart, firstSize);
+            }
+        }));
+        nextPartStart = firstSize;
+        schedule();
+    }
+    
+    @Override
+    public int read() throws IOException {
+        if (!advance()) {
+            return -1;
+        }
+        return current[position++] & 0xFF;
+    }
+    
+    @Override
+    public int read(byte[] buffer, int offset, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!advance()) {
+            return -1;
+        }
+        int count = Math.min(len, current.length - position);
+        System.arraycopy(current, position, buffer, offset, count);
+        position += count;
+        return count;
+    }
+    
+    /**
+     * Cancels the parts still being fetched
+     */
+    @Override
+    public void close() {
+        parts.forEach(part -> part.cancel(true));
+        parts.clear();
+        current = new byte[0];
+        position = 0;
+    }
+    
+    /**
+     * Makes sure unread bytes are available; false at the end of the document
+     */
+    private boolean advance() throws IOException {
+        while (position == current.length) {
+            Future<byte[]> next = parts.poll();
+            if (next == null) {
+                return false;
+            }
+            current = await(next);
+            position = 0;
+            schedule();
+        }
+        return true;
+    }
+    
+    private void schedule() {
+        while (parts.size() < window && nextPartStart < length) {
+            long start = nextPartStart;
+            int size = (int) Math.min(partSize, length - start);
+            parts.add(executor.submit(() -> {
+                try (InputStream in = opener.open(start, start + size - 1)) {
+                    return readPart(in, size);
+                }
+            }));
+            nextPartStart = start + size;
+        }
+    }
+    
+    private byte[] await(Future<byte[]> part) throws IOException {
+        try {
+            return part.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            close();
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IOException("Fetching a byte range failed", e.getCause());
+        } catch (TimeoutException e) {
+            close();
+            throw new IOException("Byte range did not arrive before the deadline");
+        } catch (InterruptedException e) {
+            close();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a byte range");
+        }
+    }
+    
+    private static byte[] readPart(InputStream in, int size) throws IOException {
+        byte[] part = in.readNBytes(size);
+        if (part.length != size) {
+            throw new IOException("Byte range ended after " + part.length + " of " + size + " bytes");
+        }
+        return part;
+    }
+}
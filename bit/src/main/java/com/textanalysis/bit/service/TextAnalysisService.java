@@ -1,9 +1,21 @@
 package com.textanalysis.bit.service;
+import com.textanalysis.bit.config.AppConfig;
+import com.textanalysis.bit.exception.AnalysisTimeoutException;
+import com.textanalysis.bit.exception.TextAnalysisException;
+import com.textanalysis.bit.model.dto.AnalysisSummary;
 import com.textanalysis.bit.model.dto.TextAnalysisRequest;
 import com.textanalysis.bit.model.dto.TextAnalysisResponse;
 import com.textanalysis.bit.model.dto.WordMatch;
-import com.textanalysis.bit.model.internal.MatchResult;
+import com.textanalysis.bit.model.internal.AnalysisProgress;
+import com.textanalysis.bit.model.internal.Deadline;
+import com.textanalysis.bit.model.internal.MatchBuffer;
+import com.textanalysis.bit.model.internal.PackedLocationList;
+import com.textanalysis.bit.model.internal.ResultLimits;
+import com.textanalysis.bit.model.internal.TailPosition;
+import com.textanalysis.bit.model.internal.TailRead;
 import com.textanalysis.bit.model.internal.TextChunk;
+import com.textanalysis.bit.service.matcher.WordMatcher;
+import com.textanalysis.bit.util.ConfigUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -11,8 +23,13 @@ import org.springframework.stereotype.Service;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
-import java.util.stream.Collectors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @Service
 public class TextAnalysisService {
@@ -22,69 +39,370 @@ public class TextAnalysisService {
     private final TextReaderService textReaderService;
     private final MatcherService matcherService;
     private final AggregatorService aggregatorService;
+    private final DocumentIndexService documentIndexService;
+    private final IncrementalStateService incrementalState;
+    private final AdmissionService admissionService;
+    private final AnalysisMetrics metrics;
     private final Executor textProcessingExecutor;
+    private final AppConfig appConfig;
     
     public TextAnalysisService(
             TextReaderService textReaderService,
             MatcherService matcherService,
             AggregatorService aggregatorService,
-            @Qualifier("textProcessingExecutor") Executor textProcessingExecutor) {
+            DocumentIndexService documentIndexService,
+            IncrementalStateService incrementalState,
+            AdmissionService admissionService,
+            AnalysisMetrics metrics,
+            @Qualifier("textProcessingExecutor") Executor textProcessingExecutor,
+            AppConfig appConfig) {
         this.textReaderService = textReaderService;
         this.matcherService = matcherService;
         this.aggregatorService = aggregatorService;
+        this.documentIndexService = documentIndexService;
+        this.incrementalState = incrementalState;
+        this.admissionService = admissionService;
+        this.metrics = metrics;
         this.textProcessingExecutor = textProcessingExecutor;
+        this.appConfig = appConfig;
     }
     
     public TextAnalysisResponse analyzeText(TextAnalysisRequest request) {
+        try (AdmissionService.Permit permit = admit(request)) {
+            return analyzeText(request, newDeadline(), new AnalysisProgress());
+        }
+    }
+    
+    /**
+     * Runs the analysis under the given deadline, which the caller may also cancel, and
+     * reports chunks and matches to the progress counters as they are processed. The
+     * caller must hold a permit, from {@link #admitJob} for a background job.
+     */
+    public TextAnalysisResponse analyzeText(TextAnalysisRequest request, Deadline deadline, AnalysisProgress progress) {
+        return analyzeAdmitted(request, () -> matcherService.getMatcher(request.getWords()), deadline, progress);
+    }
+    
+    /**
+     * Runs the analysis with a matcher the caller compiled from the request words, so a
+     * batch of documents shares one compilation
+     */
+    public TextAnalysisResponse analyzeText(TextAnalysisRequest request, WordMatcher matcher, Deadline deadline) {
+        try (AdmissionService.Permit permit = admit(request)) {
+            return analyzeAdmitted(request, () -> matcher, deadline, new AnalysisProgress());
+        }
+    }
+    
+    /**
+     * Waits for the request to be admitted; the permit must be closed when the analysis ends
+     */
+    public AdmissionService.Permit admit(TextAnalysisRequest request) {
+        return admissionService.admit(request.getTextUrl());
+    }
+    
+    /**
+     * Waits for a background job to be admitted, for as long as its deadline allows
+     */
+    public AdmissionService.Permit admitJob(TextAnalysisRequest request, Deadline deadline) {
+        return admissionService.admitJob(request.getTextUrl(), deadline);
+    }
+    
+    private TextAnalysisResponse analyzeAdmitted(TextAnalysisRequest request, Supplier<WordMatcher> matcherSupplier,
+                                                 Deadline deadline, AnalysisProgress progress) {
         logger.info("Starting text analysis for URL: {} with {} words", 
                    request.getTextUrl(), request.getWords().size());
         
         long startTime = System.currentTimeMillis();
+        ResultLimits limits = ResultLimits.of(request);
         
         try {
-            // Step 1: Read text in chunks
-            List<TextChunk> chunks = textReaderService.readTextInChunks(request.getTextUrl());
+            if (request.isIncremental()) {
+                List<WordMatch> matches = matchIncrementally(request, matcherSupplier.get(), limits,
+                    incrementalState.lookup(request.getTextUrl(), request.getWords(), limits), deadline, progress);
+                if (matches != null) {
+                    long processingTime = System.currentTimeMillis() - startTime;
+                    logger.info("Incremental text analysis completed in {} ms. Found matches for {} words",
+                               processingTime, matches.size());
+                    metrics.recordAnalysis("incremental", "success", processingTime);
+                    return new TextAnalysisResponse(matches, "SUCCESS", processingTime);
+                }
+            }
             
-            // Step 2: Convert words to set for faster lookup (case-insensitive)
-            Set<String> wordsToFind = request.getWords().stream()
-                .map(String::toLowerCase)
-                .collect(Collectors.toSet());
+            // Step 0: Answer from the document index if the text has not changed
+            List<WordMatch> indexedMatches = documentIndexService.findMatches(request.getTextUrl(), request.getWords());
+            if (indexedMatches != null) {
+                long processingTime = System.currentTimeMillis() - startTime;
+                logger.info("Text analysis answered from index in {} ms. Found matches for {} words",
+                           processingTime, indexedMatches.size());
+                metrics.recordAnalysis("index", "success", processingTime);
+                return new TextAnalysisResponse(limits.apply(indexedMatches), "SUCCESS", processingTime);
+            }
             
-            // Step 3: Process chunks in parallel
-            List<CompletableFuture<List<MatchResult>>> futures = chunks.stream()
-                .map(chunk -> CompletableFuture.supplyAsync(
-                    () -> matcherService.findMatches(chunk, wordsToFind),
-                    textProcessingExecutor
-                ))
-                .collect(Collectors.toList());
+            // Step 1: Get the compiled matcher for the words (case-insensitive, cached)
+            WordMatcher matcher = matcherSupplier.get();
             
-            // Step 4: Wait for all futures to complete
-            CompletableFuture<Void> allFutures = CompletableFuture.allOf(
-                futures.toArray(new CompletableFuture[0])
-            );
+            // Step 2: Read text in chunks, match them in parallel and collect the results
+            List<WordMatch> matches;
+            try (MatchCollector collector = aggregatorService.newCollector(limits)) {
+                matchInOrder(chunkConsumer -> textReaderService.readTextInChunks(request.getTextUrl(), chunkConsumer, deadline),
+                    matcher, limits, collector::add, deadline, progress);
+                
+                // Step 3: Aggregate results
+                matches = metrics.getAggregateTimer().record(collector::finish);
+            }
             
-            // Step 5: Collect all results
-            List<List<MatchResult>> allResults = allFutures
-                .thenApply(v -> futures.stream()
-                    .map(CompletableFuture::join)
-                    .collect(Collectors.toList()))
-                .join();
-            
-            // Step 6: Aggregate results
-            List<WordMatch> matches = aggregatorService.aggregateResults(allResults);
+            documentIndexService.scheduleBuild(request.getTextUrl());
             
             long processingTime = System.currentTimeMillis() - startTime;
             
             logger.info("Text analysis completed in {} ms. Found matches for {} words",
                        processingTime, matches.size());
+            metrics.recordAnalysis("scan", "success", processingTime);
             
             return new TextAnalysisResponse(matches, "SUCCESS", processingTime);
             
         } catch (Exception e) {
             long processingTime = System.currentTimeMillis() - startTime;
             logger.error("Text analysis failed after {} ms", processingTime, e);
+            metrics.recordAnalysis("scan", "error", processingTime);
+            throw e;
+        }
+    }
+    
+    /**
+     * Streaming variant of {@link #analyzeText(TextAnalysisRequest)}: instead of collecting
+     * and sorting all matches, the matches of each chunk are handed to the sink in document
+     * order as soon as that chunk and every chunk before it are matched. A word therefore
+     * appears in several batches, each holding its locations within one chunk. Returns the
+     * summary, without matches, once the whole text was processed. The caller must hold a
+     * permit from {@link #admit(TextAnalysisRequest)}.
+     */
+    public AnalysisSummary analyzeText(TextAnalysisRequest request, Consumer<List<WordMatch>> sink) {
+        logger.info("Starting streaming text analysis for URL: {} with {} words",
+                   request.getTextUrl(), request.getWords().size());
+        
+        long startTime = System.currentTimeMillis();
+        Deadline deadline = newDeadline();
+        
+        try {
+            long totalMatches = 0;
+            List<WordMatch> indexedMatches = documentIndexService.findMatches(request.getTextUrl(), request.getWords());
+            if (indexedMatches != null) {
+                sink.accept(indexedMatches);
+                for (WordMatch match : indexedMatches) {
+                    totalMatches += match.getLocations().size();
+                }
+            } else {
+                WordMatcher matcher = matcherService.getMatcher(request.getWords());
+                long[] counted = new long[1];
+                matchInOrder(chunkConsumer -> textReaderService.readTextInChunks(request.getTextUrl(), chunkConsumer, deadline),
+                    matcher, ResultLimits.NONE, buffer -> {
+                    if (buffer.getTotalCount() > 0) {
+                        sink.accept(toWordMatches(buffer));
+                        counted[0] += buffer.getTotalCount();
+                    }
+                }, deadline, new AnalysisProgress());
+                totalMatches = counted[0];
+                documentIndexService.scheduleBuild(request.getTextUrl());
+            }
+            
+            long processingTime = System.currentTimeMillis() - startTime;
+            logger.info("Streaming text analysis completed in {} ms. Emitted {} matches",
+                       processingTime, totalMatches);
+            metrics.recordAnalysis(indexedMatches != null ? "index" : "scan", "success", processingTime);
+            
+            return new AnalysisSummary("SUCCESS", processingTime, totalMatches);
+            
+        } catch (Exception e) {
+            long processingTime = System.currentTimeMillis() - startTime;
+            logger.error("Streaming text analysis failed after {} ms", processingTime, e);
+            metrics.recordAnalysis("scan", "error", processingTime);
             throw e;
         }
     }
+    
+    /**
+     * Reads and matches only what was appended to the document since the stored state, and
+     * adds it to the stored matches. Without a state the whole document is read, and the
+     * state for the next request is stored either way. A last line without a line end is
+     * matched but not stored, since it is read again next time. Returns null if the document
+     * cannot be read this way, so it is analyzed in full like any other request. The stored
+     * matches keep the location limit but every word, since the top words may change.
+     */
+    private List<WordMatch> matchIncrementally(TextAnalysisRequest request, WordMatcher matcher, ResultLimits limits,
+                                               IncrementalStateService.State state, Deadline deadline,
+                                               AnalysisProgress progress) {
+        String textUrl = request.getTextUrl();
+        int locationLimit = limits.getLocationsPerWord();
+        ResultLimits allWords = new ResultLimits(locationLimit, Integer.MAX_VALUE);
+        TailPosition from = state != null ? state.getPosition() : TailPosition.START;
+        TailRead[] read = new TailRead[1];
+        List<WordMatch> appended;
+        try (MatchCollector collector = aggregatorService.newCollector(allWords)) {
+            matchInOrder(chunkConsumer -> read[0] = textReaderService.readAppendedInChunks(textUrl, from, chunkConsumer, deadline),
+                matcher, allWords, collector::add, deadline, progress);
+            appended = metrics.getAggregateTimer().record(collector::finish);
+        }
+        
+        if (read[0] == null) {
+            if (state == null) {
+                return null;
+            }
+            // Replaced or truncated rather than appended to: start over
+            incrementalState.remove(textUrl, request.getWords(), limits);
+            return matchIncrementally(request, matcher, limits, null, deadline, progress);
+        }
+        List<WordMatch> matches = state != null
+            ? IncrementalStateService.merge(state.getMatches(), appended, locationLimit)
+            : appended;
+        incrementalState.store(textUrl, request.getWords(), limits, read[0].getEnd(), matches);
+        
+        TextChunk pendingLine = read[0].getPendingLine();
+        if (pendingLine == null) {
+            return limits.apply(matches);
+        }
+        progress.chunkRead(pendingLine);
+        metrics.chunkRead(pendingLine);
+        MatchBuffer pending = matcherService.findMatches(pendingLine, matcher, deadline, allWords);
+        progress.chunkMatched(pending);
+        metrics.chunkMatched(pending);
+        try (MatchCollector collector = aggregatorService.newCollector(allWords)) {
+            collector.add(pending);
+            return limits.apply(IncrementalStateService.merge(matches, collector.finish(), locationLimit));
+        }
+    }
+    
+    /**
+     * Reads and matches the text, passing each chunk's matches to the sink in document order.
+     * The sink is only ever called from the calling thread. When anything fails, including
+     * the sink or the deadline, the deadline is cancelled so running tasks stop at their next
+     * check, chunks not started yet are dropped, and the failure is rethrown.
+     */
+    private void matchInOrder(ChunkReader reader, WordMatcher matcher, ResultLimits limits,
+                              Consumer<MatchBuffer> resultSink, Deadline deadline, AnalysisProgress progress) {
+        Deque<CompletableFuture<MatchBuffer>> pending = new ArrayDeque<>();
+        Consumer<MatchBuffer> sink = buffer -> {
+            progress.chunkMatched(buffer);
+            metrics.chunkMatched(buffer);
+            resultSink.accept(buffer);
+        };
+        try {
+            if (appConfig.isStreaming()) {
+                submitWhileReading(reader, matcher, limits, sink, deadline, progress, pending);
+            } else {
+                submitAfterReading(reader, matcher, limits, deadline, progress, pending);
+            }
+            
+            while (!pending.isEmpty()) {
+                sink.accept(await(pending.poll(), deadline));
+            }
+        } catch (RuntimeException e) {
+            deadline.cancel(String.valueOf(e.getMessage()));
+            pending.forEach(future -> future.cancel(false));
+            pending.clear();
+            throw e;
+        }
+    }
+    
+    /**
+     * Waits for one chunk, at most until the deadline, and unwraps the chunk's own failure
+     */
+    private static MatchBuffer await(CompletableFuture<MatchBuffer> future, Deadline deadline) {
+        try {
+            return future.get(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            deadline.check();
+            throw new AnalysisTimeoutException("Analysis did not finish within the request timeout");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new TextAnalysisException("Matching a chunk failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TextAnalysisException("Interrupted while waiting for matches", e);
+        }
+    }
+    
+    private Deadline newDeadline() {
+        return Deadline.after(ConfigUtils.parseDurationMillis(appConfig.getRequestTimeout()));
+    }
+    
+    /**
+     * Views one chunk's matches as word matches without copying the location arrays
+     */
+    private static List<WordMatch> toWordMatches(MatchBuffer buffer) {
+        List<WordMatch> matches = new ArrayList<>();
+        for (int id = 0; id < buffer.getWordCount(); id++) {
+            int count = buffer.getCount(id);
+            if (count > 0) {
+                matches.add(new WordMatch(buffer.getWord(id),
+                    new PackedLocationList(buffer.getLines(id), buffer.getOffsets(id), count)));
+            }
+        }
+        return matches;
+    }
+    
+    /**
+     * Downloads the whole text first, then submits every chunk at once
+     */
+    private void submitAfterReading(ChunkReader reader, WordMatcher matcher, ResultLimits limits, Deadline deadline,
+                                    AnalysisProgress progress, Deque<CompletableFuture<MatchBuffer>> futures) {
+        List<TextChunk> chunks = new ArrayList<>();
+        metrics.getReadTimer().record(() -> reader.read(chunks::add));
+        
+        for (TextChunk chunk : chunks) {
+            progress.chunkRead(chunk);
+            metrics.chunkRead(chunk);
+            futures.add(CompletableFuture.supplyAsync(
+                () -> metrics.getChunkMatchTimer().record(() -> matcherService.findMatches(chunk, matcher, deadline, limits)),
+                textProcessingExecutor
+            ));
+        }
+    }
+    
+    /**
+     * Submits each chunk as soon as the reader emits it. At most maxInFlightChunks chunks
+     * are queued or being matched at a time; when the limit is reached the reader blocks,
+     * which keeps both the executor queue and the heap bounded. Results of the leading
+     * finished chunks are passed to the sink while reading continues.
+     */
+    private void submitWhileReading(ChunkReader reader, WordMatcher matcher, ResultLimits limits,
+                                    Consumer<MatchBuffer> sink, Deadline deadline, AnalysisProgress progress,
+                                    Deque<CompletableFuture<MatchBuffer>> futures) {
+        Semaphore inFlight = new Semaphore(appConfig.getMaxInFlightChunks());
+        
+        metrics.getReadTimer().record(() -> reader.read(chunk -> {
+            progress.chunkRead(chunk);
+            metrics.chunkRead(chunk);
+            try {
+                if (!inFlight.tryAcquire(deadline.remainingMillis(), TimeUnit.MILLISECONDS)) {
+                    deadline.check();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TextAnalysisException("Interrupted while waiting for a free matcher slot", e);
+            }
+            
+            try {
+                futures.add(CompletableFuture
+                    .supplyAsync(() -> metrics.getChunkMatchTimer().record(
+                        () -> matcherService.findMatches(chunk, matcher, deadline, limits)), textProcessingExecutor)
+                    .whenComplete((results, error) -> inFlight.release()));
+            } catch (RuntimeException e) {
+                inFlight.release();
+                throw e;
+            }
+            
+            while (!futures.isEmpty() && futures.peek().isDone()) {
+                sink.accept(await(futures.poll(), deadline));
+            }
+        }));
+    }
+    
+    /**
+     * Reads a document, or part of one, handing each chunk to the consumer in order
+     */
+    private interface ChunkReader {
+        void read(Consumer<TextChunk> chunkConsumer);
+    }
 }
-
@@ -3,161 +3,693 @@ package com.textanalysis.bit.service;
 import com.textanalysis.bit.config.AppConfig;
 import com.textanalysis.bit.exception.InvalidUrlException;
 import com.textanalysis.bit.exception.FileSizeExceededException;
+import com.textanalysis.bit.exception.TextAnalysisException;
+import com.textanalysis.bit.model.internal.Deadline;
+import com.textanalysis.bit.model.internal.TailPosition;
+import com.textanalysis.bit.model.internal.TailRead;
 import com.textanalysis.bit.model.internal.TextChunk;
+import com.textanalysis.bit.model.internal.Utf8ByteSequence;
+import com.textanalysis.bit.service.matcher.MatcherEngine;
+import com.textanalysis.bit.util.ConfigUtils;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 @Service
 public class TextReaderService {
     
     private static final Logger logger = LoggerFactory.getLogger(TextReaderService.class);
+    private static final long READ_TIMEOUT_MILLIS = 60000; // 60 seconds at most
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_PARTIAL = 206;
+    private static final int HTTP_NOT_MODIFIED = 304;
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
     private final AppConfig appConfig;
+    private final DocumentCacheService documentCache;
+    private final LocalFileReaderService localFileReader;
+    private final ExecutorService rangeExecutor;
+    private final HttpClient httpClient;
+    private final AtomicLong fetchCount = new AtomicLong();
+    private final AtomicLong fetchNanos = new AtomicLong();
     
-    public TextReaderService(AppConfig appConfig) {
+    public TextReaderService(AppConfig appConfig, DocumentCacheService documentCache,
+                             LocalFileReaderService localFileReader) {
         this.appConfig = appConfig;
+        this.documentCache = documentCache;
+        this.localFileReader = localFileReader;
+        // Blocking range fetches: range-connections for each analysis admission lets run at
+        // once. Admission can be turned off, so the pool is capped itself and further parts
+        // wait in its queue; each download keeps only a few parts queued or in flight.
+        int analyses = appConfig.getMaxConcurrentAnalyses() > 0
+            ? appConfig.getMaxConcurrentAnalyses()
+            : Runtime.getRuntime().availableProcessors();
+        int rangeThreadCount = Math.max(1, appConfig.getRangeConnections()) * analyses;
+        AtomicInteger rangeThreads = new AtomicInteger();
+        ThreadPoolExecutor rangePool = new ThreadPoolExecutor(rangeThreadCount, rangeThreadCount,
+            60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "RangeDownload-" + rangeThreads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        rangePool.allowCoreThreadTimeOut(true);
+        this.rangeExecutor = rangePool;
+        // One client for every fetch: it keeps connections alive between documents and
+        // multiplexes requests to the same host over one HTTP/2 connection where offered
+        this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(Duration.ofSeconds(30))
+            .build();
+    }
+    
+    /**
+     * Stops the range fetches still running or queued; downloads waiting for them fail
+     */
+    @PreDestroy
+    public void shutdown() {
+        for (Runnable queued : rangeExecutor.shutdownNow()) {
+            ((Future<?>) queued).cancel(false);
+        }
     }
     
     public List<TextChunk> readTextInChunks(String textUrl) throws InvalidUrlException, FileSizeExceededException {
+        return readTextInChunks(textUrl, Deadline.none());
+    }
+    
+    public List<TextChunk> readTextInChunks(String textUrl, Deadline deadline)
+            throws InvalidUrlException, FileSizeExceededException {
+        List<TextChunk> chunks = new ArrayList<>();
+        readTextInChunks(textUrl, chunks::add, deadline);
+        return chunks;
+    }
+    
+    public int readTextInChunks(String textUrl, Consumer<TextChunk> chunkConsumer)
+            throws InvalidUrlException, FileSizeExceededException {
+        return readTextInChunks(textUrl, chunkConsumer, Deadline.none());
+    }
+    
+    /**
+     * Reads the text and hands each chunk to the consumer as soon as it is complete,
+     * so downstream work can start before the download finishes. The consumer runs on
+     * the reading thread; blocking in it slows down the download. The deadline is checked
+     * before every chunk and bounds the socket timeouts, so reading stops once it passes.
+     *
+     * @return the number of chunks emitted
+     */
+    public int readTextInChunks(String textUrl, Consumer<TextChunk> consumer, Deadline deadline)
+            throws InvalidUrlException, FileSizeExceededException {
+        Consumer<TextChunk> chunkConsumer = chunk -> {
+            deadline.check();
+            consumer.accept(chunk);
+        };
+        if (localFileReader.isLocal(textUrl)) {
+            return localFileReader.readTextInChunks(textUrl, chunkConsumer);
+        }
         logger.info("Starting to read text from URL: {}", textUrl);
         
-        List<TextChunk> chunks = new ArrayList<>();
+        int chunkCount;
         
         try {
-            URL url = new URL(textUrl);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setConnectTimeout(30000); // 30 seconds
-            connection.setReadTimeout(60000); // 60 seconds
+            // Revalidate a cached copy instead of downloading it again
+            DocumentCacheService.CachedDocument cached = documentCache.lookup(textUrl);
+            HttpRequest.Builder request = newRequest(textUrl, cached, deadline)
+                .header("Accept-Encoding", "gzip, deflate");
+            HttpBodyInputStream rawBody = new HttpBodyInputStream(READ_TIMEOUT_MILLIS, deadline);
+            HttpResponse<?> response = send(request.GET().build(), rawBody);
             
             // Check response code
-            int responseCode = connection.getResponseCode();
-            if (responseCode != HttpURLConnection.HTTP_OK) {
+            int responseCode = response.statusCode();
+            if (responseCode == HTTP_NOT_MODIFIED && cached != null) {
+                rawBody.close();
+                // Once open, the cached body survives eviction; evicted before that, it is a miss
+                InputStream cachedBody = documentCache.open(cached);
+                if (cachedBody != null) {
+                    logger.info("Document not modified, reading {} bytes from cache", cached.getSize());
+                    documentCache.touch(cached);
+                    return readCachedInChunks(cached, cachedBody, chunkConsumer);
+                }
+                rawBody = new HttpBodyInputStream(READ_TIMEOUT_MILLIS, deadline);
+                response = send(newRequest(textUrl, null, deadline)
+                    .header("Accept-Encoding", "gzip, deflate").GET().build(), rawBody);
+                responseCode = response.statusCode();
+            }
+            if (responseCode != HTTP_OK) {
+                rawBody.close();
                 throw new InvalidUrlException("HTTP error code: " + responseCode + " for URL: " + textUrl);
             }
             
-            // Check content length if available
-            long contentLength = connection.getContentLengthLong();
-            if (contentLength > 0 && contentLength > parseFileSize(appConfig.getMaxFileSize())) {
+            // Check content length if available; compressed bodies are checked again as they inflate
+            HttpHeaders headers = response.headers();
+            long maxFileSize = ConfigUtils.parseSize(appConfig.getMaxFileSize());
+            long contentLength = headers.firstValueAsLong("Content-Length").orElse(-1);
+            if (contentLength > 0 && contentLength > maxFileSize) {
+                rawBody.close();
                 throw new FileSizeExceededException("File size exceeds maximum allowed: " + appConfig.getMaxFileSize());
             }
             
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
-                chunks = processTextInChunks(reader);
+            // The cache keeps the decoded bytes, so it never needs the transfer encoding again
+            Charset charset = charsetOf(headers.firstValue("Content-Type").orElse(null), textUrl);
+            TimedInputStream fetched;
+            InputStream body;
+            try {
+                fetched = new TimedInputStream(decode(headers, openBody(textUrl, headers, rawBody, contentLength, deadline)));
+                body = documentCache.cacheWhileReading(textUrl,
+                    headers.firstValue("ETag").orElse(null), headers.firstValue("Last-Modified").orElse(null),
+                    charset.name(), new BoundedInputStream(fetched, maxFileSize, appConfig.getMaxFileSize()));
+            } catch (IOException | RuntimeException e) {
+                rawBody.close();
+                throw e;
+            }
+            try (body) {
+                chunkCount = chunk(body, charset, chunkConsumer);
+                if (body instanceof DocumentCacheService.CachingInputStream cachingBody) {
+                    cachingBody.commit();
+                }
+            } finally {
+                fetchCount.incrementAndGet();
+                fetchNanos.addAndGet(fetched.getNanos());
             }
             
         } catch (IOException e) {
+            // A socket timeout caused by the deadline is a timeout, not a bad URL
+            deadline.check();
             logger.error("Error reading text from URL: {}", textUrl, e);
             throw new InvalidUrlException("Unable to read from URL: " + textUrl, e);
         }
         
-        logger.info("Successfully read {} chunks from URL", chunks.size());
-        return chunks;
+        logger.info("Successfully read {} chunks from URL", chunkCount);
+        return chunkCount;
     }
     
-    private List<TextChunk> processTextInChunks(BufferedReader reader) throws IOException {
-        List<TextChunk> chunks = new ArrayList<>();
-        List<String> currentChunk = new ArrayList<>();
-        List<String> overlapBuffer = new ArrayList<>();
+    /**
+     * Number of documents downloaded in full
+     */
+    public long getFetchCount() {
+        return fetchCount.get();
+    }
+    
+    /**
+     * Time downloads spent waiting for body bytes, in total; the rest of the read time
+     * went into chunking and handing chunks on
+     */
+    public long getFetchNanos() {
+        return fetchNanos.get();
+    }
+    
+    /**
+     * Checks with a conditional HEAD request whether the cached copy of the URL is still
+     * current. Returns the cached entry if the server answered 304, otherwise null.
+     */
+    public DocumentCacheService.CachedDocument revalidate(String textUrl) {
+        DocumentCacheService.CachedDocument cached = documentCache.lookup(textUrl);
+        if (cached == null) {
+            return null;
+        }
+        
+        try {
+            HttpRequest request = newRequest(textUrl, cached, Deadline.none())
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
+            HttpBodyInputStream body = new HttpBodyInputStream(READ_TIMEOUT_MILLIS, Deadline.none());
+            HttpResponse<?> response = send(request, body);
+            body.close();
+            if (response.statusCode() == HTTP_NOT_MODIFIED) {
+                documentCache.touch(cached);
+                return cached;
+            }
+        } catch (IOException | InvalidUrlException e) {
+            logger.warn("Unable to revalidate cached document {}: {}", textUrl, e.getMessage());
+        }
+        return null;
+    }
+    
+    /**
+     * Chunks a cached document exactly as if it had been downloaded
+     */
+    public int readCachedInChunks(DocumentCacheService.CachedDocument cached, Consumer<TextChunk> chunkConsumer) {
+        InputStream body;
+        try {
+            body = documentCache.open(cached);
+        } catch (IOException e) {
+            throw new TextAnalysisException("Unable to read cached document for URL: " + cached.getUrl(), e);
+        }
+        if (body == null) {
+            throw new TextAnalysisException("Cached document was evicted: " + cached.getUrl());
+        }
+        return readCachedInChunks(cached, body, chunkConsumer);
+    }
+    
+    private int readCachedInChunks(DocumentCacheService.CachedDocument cached, InputStream cachedBody,
+                                   Consumer<TextChunk> chunkConsumer) {
+        int chunkCount;
+        // Entries cached before charsets were recorded are UTF-8
+        Charset charset = cached.getCharset() != null ? Charset.forName(cached.getCharset()) : StandardCharsets.UTF_8;
+        try (InputStream body = cachedBody) {
+            chunkCount = chunk(body, charset, chunkConsumer);
+        } catch (IOException e) {
+            throw new TextAnalysisException("Unable to read cached document for URL: " + cached.getUrl(), e);
+        }
+        logger.info("Successfully read {} chunks from cache", chunkCount);
+        return chunkCount;
+    }
+    
+    /**
+     * Reads only what was appended to a growing document since an earlier read stopped at
+     * the given position: a local file from that byte on, a remote one with a Range request.
+     * The bytes just before the position are fetched too and must equal its fingerprint.
+     * Whole lines go to the consumer, numbered on from the position; see {@link TailRead}.
+     * Only UTF-8 (and ASCII) text can be resumed in the middle, since lines are found in the
+     * raw bytes.
+     *
+     * @return null if the document cannot be read from the position: it is shorter, its
+     *         bytes before the position changed, it is not UTF-8, or the server does not
+     *         serve byte ranges. The caller then reads the whole document instead.
+     */
+    public TailRead readAppendedInChunks(String textUrl, TailPosition from, Consumer<TextChunk> consumer,
+                                         Deadline deadline) throws InvalidUrlException, FileSizeExceededException {
+        Consumer<TextChunk> chunkConsumer = chunk -> {
+            deadline.check();
+            consumer.accept(chunk);
+        };
+        byte[] fingerprint = from.getFingerprint();
+        long start = from.getByteOffset() - fingerprint.length;
+        
+        try (InputStream body = localFileReader.isLocal(textUrl)
+                ? localFileReader.openAt(textUrl, start)
+                : openAppended(textUrl, start, deadline)) {
+            if (body == null || !Arrays.equals(body.readNBytes(fingerprint.length), fingerprint)) {
+                logger.info("{} was not appended to since byte {}", textUrl, from.getByteOffset());
+                return null;
+            }
+            TailRead read = processAppendedInChunks(body, from, chunkConsumer);
+            logger.info("Read {} appended bytes in {} chunks from {}",
+                       read.getEnd().getByteOffset() - from.getByteOffset(), read.getChunkCount(), textUrl);
+            return read;
+        } catch (IOException e) {
+            deadline.check();
+            logger.error("Error reading appended text from URL: {}", textUrl, e);
+            throw new InvalidUrlException("Unable to read from URL: " + textUrl, e);
+        }
+    }
+    
+    /**
+     * The document from a byte on, or null if the server cannot serve it that way. A
+     * transfer encoding is not asked for, since ranges of a compressed body are useless.
+     */
+    private InputStream openAppended(String textUrl, long start, Deadline deadline) throws IOException {
+        HttpRequest request = newRequest(textUrl, null, deadline)
+            .header("Range", "bytes=" + start + "-")
+            .GET()
+            .build();
+        HttpBodyInputStream body = new HttpBodyInputStream(READ_TIMEOUT_MILLIS, deadline);
+        HttpResponse<?> response = send(request, body);
+        HttpHeaders headers = response.headers();
+        
+        int responseCode = response.statusCode();
+        String contentRange = headers.firstValue("Content-Range").orElse("");
+        boolean fromStart = responseCode == HTTP_PARTIAL
+            ? contentRange.startsWith("bytes " + start + "-")
+            : responseCode == HTTP_OK && start == 0;
+        Charset charset = charsetOf(headers.firstValue("Content-Type").orElse(null), textUrl);
+        if (!fromStart || headers.firstValue("Content-Encoding").isPresent()
+                || !(charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII))) {
+            body.close();
+            // 416: the document is shorter than the start
+            if (responseCode != HTTP_OK && responseCode != HTTP_PARTIAL && responseCode != HTTP_RANGE_NOT_SATISFIABLE) {
+                throw new InvalidUrlException("HTTP error code: " + responseCode + " for URL: " + textUrl);
+            }
+            return null;
+        }
+        
+        // The limit is on the whole document, most of which was read before
+        long maxFileSize = ConfigUtils.parseSize(appConfig.getMaxFileSize());
+        long contentLength = headers.firstValueAsLong("Content-Length").orElse(-1);
+        if (start + contentLength > maxFileSize) {
+            body.close();
+            throw new FileSizeExceededException("File size exceeds maximum allowed: " + appConfig.getMaxFileSize());
+        }
+        return new BoundedInputStream(body, maxFileSize - start, appConfig.getMaxFileSize());
+    }
+    
+    /**
+     * Cuts the appended UTF-8 bytes into chunks of whole lines like processBytesInChunks,
+     * numbering lines and characters on from the position. Bytes after the last line end
+     * are not part of the new position; they come back as the pending line.
+     */
+    public TailRead processAppendedInChunks(InputStream body, TailPosition from, Consumer<TextChunk> chunkConsumer)
+            throws IOException {
+        int chunkBytes = (int) Math.min(ConfigUtils.parseSize(appConfig.getChunkBytes()), Integer.MAX_VALUE / 4);
+        byte[] buffer = new byte[Math.max(chunkBytes, 1024)];
+        int filled = 0;
+        int chunkCount = 0;
+        long byteOffset = from.getByteOffset();
+        int line = from.getLine();
+        long charOffset = from.getCharOffset();
+        byte[] fingerprint = from.getFingerprint();
+        
+        while (true) {
+            filled += body.readNBytes(buffer, filled, buffer.length - filled);
+            boolean end = filled < buffer.length;
+            int cut = afterLastLineEnd(buffer, filled);
+            if (cut < 0 && !end) {
+                buffer = Arrays.copyOf(buffer, (int) Math.min(Integer.MAX_VALUE - 8, 2L * buffer.length));
+                continue;
+            }
+            if (cut > 0) {
+                TextChunk chunk = toChunk(ByteBuffer.wrap(Arrays.copyOf(buffer, cut)), line, charOffset);
+                chunkConsumer.accept(chunk);
+                chunkCount++;
+                byteOffset += cut;
+                line = chunk.getEndLine() + 1;
+                charOffset += chunk.getContent().length();
+                fingerprint = lastBytes(fingerprint, buffer, cut);
+                System.arraycopy(buffer, cut, buffer, 0, filled - cut);
+                filled -= cut;
+            }
+            if (end) {
+                TextChunk pendingLine = filled > 0
+                    ? toChunk(ByteBuffer.wrap(Arrays.copyOf(buffer, filled)), line, charOffset)
+                    : null;
+                return new TailRead(new TailPosition(byteOffset, line, charOffset, fingerprint), pendingLine, chunkCount);
+            }
+        }
+    }
+    
+    /**
+     * The last FINGERPRINT_BYTES of the previous fingerprint followed by the bytes up to end
+     */
+    private static byte[] lastBytes(byte[] previous, byte[] bytes, int end) {
+        int fromBytes = Math.min(end, TailPosition.FINGERPRINT_BYTES);
+        int fromPrevious = Math.min(previous.length, TailPosition.FINGERPRINT_BYTES - fromBytes);
+        byte[] fingerprint = new byte[fromPrevious + fromBytes];
+        System.arraycopy(previous, previous.length - fromPrevious, fingerprint, 0, fromPrevious);
+        System.arraycopy(bytes, end - fromBytes, fingerprint, fromPrevious, fromBytes);
+        return fingerprint;
+    }
+    
+    /**
+     * The response body, or for large documents on servers that accept byte ranges, a
+     * stream that fetches the rest of the document over several connections at once
+     */
+    private InputStream openBody(String textUrl, HttpHeaders headers, InputStream body, long contentLength,
+                                 Deadline deadline) {
+        if (!appConfig.isRangeDownloadEnabled()
+                || appConfig.getRangeConnections() < 2
+                || contentLength < ConfigUtils.parseSize(appConfig.getRangeMinSize())
+                || !"bytes".equalsIgnoreCase(headers.firstValue("Accept-Ranges").orElse(null))
+                || headers.firstValue("Content-Encoding").isPresent()) {
+            return body;
+        }
+        
+        // Every range must come from the version the first response belongs to
+        String validator = headers.firstValue("ETag").or(() -> headers.firstValue("Last-Modified")).orElse(null);
+        if (validator == null || validator.startsWith("W/")) {
+            return body;
+        }
+        
+        int partSize = (int) Math.min(Integer.MAX_VALUE - 8, ConfigUtils.parseSize(appConfig.getRangePartSize()));
+        logger.info("Downloading {} bytes in ranges of {} bytes over {} connections",
+                   contentLength, partSize, appConfig.getRangeConnections());
+        return new RangeInputStream(body, contentLength, partSize,
+            appConfig.getRangeConnections(), (start, end) -> openRange(textUrl, validator, start, end, deadline),
+            rangeExecutor, deadline);
+    }
+    
+    private InputStream openRange(String textUrl, String validator, long start, long end,
+                                  Deadline deadline) throws IOException {
+        HttpRequest request = newRequest(textUrl, null, deadline)
+            .header("Range", "bytes=" + start + "-" + end)
+            .header("If-Range", validator)
+            .GET()
+            .build();
+        HttpBodyInputStream body = new HttpBodyInputStream(READ_TIMEOUT_MILLIS, deadline);
+        HttpResponse<?> response = send(request, body);
+        
+        // A 200 means the document changed since the first response, or ranges were ignored
+        int responseCode = response.statusCode();
+        String contentRange = response.headers().firstValue("Content-Range").orElse(null);
+        if (responseCode != HTTP_PARTIAL
+                || contentRange == null || !contentRange.startsWith("bytes " + start + "-")) {
+            body.close();
+            throw new IOException("Expected bytes " + start + "-" + end + " but got HTTP " + responseCode
+                + (contentRange != null ? " with " + contentRange : ""));
+        }
+        return body;
+    }
+    
+    private HttpRequest.Builder newRequest(String textUrl, DocumentCacheService.CachedDocument cached,
+                                           Deadline deadline) {
+        HttpRequest.Builder request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(textUrl));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidUrlException("Invalid URL: " + textUrl, e);
+        }
+        // Bounds the wait for the response headers; the body has its own read timeout
+        long remaining = Math.max(1, deadline.remainingMillis());
+        request.timeout(Duration.ofMillis(Math.min(READ_TIMEOUT_MILLIS, remaining)));
+        
+        if (cached != null) {
+            if (cached.getEtag() != null) {
+                request.header("If-None-Match", cached.getEtag());
+            }
+            if (cached.getLastModified() != null) {
+                request.header("If-Modified-Since", cached.getLastModified());
+            }
+        }
+        return request;
+    }
+    
+    /**
+     * Sends the request on the shared client and returns as soon as the headers are in; the
+     * body then streams into the given stream, which the caller reads or closes
+     */
+    private HttpResponse<?> send(HttpRequest request, HttpBodyInputStream body) throws IOException {
+        HttpResponse<Flow.Publisher<List<ByteBuffer>>> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofPublisher());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TextAnalysisException("Interrupted while fetching " + request.uri(), e);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidUrlException("Invalid URL: " + request.uri(), e);
+        }
+        response.body().subscribe(body);
+        return response;
+    }
+    
+    /**
+     * Undoes the Content-Encoding the server picked from our Accept-Encoding
+     */
+    private static InputStream decode(HttpHeaders headers, InputStream body) throws IOException {
+        String encoding = headers.firstValue("Content-Encoding").orElse("identity").trim().toLowerCase(Locale.ROOT);
+        return switch (encoding) {
+            case "gzip", "x-gzip" -> new GZIPInputStream(body, 64 * 1024);
+            case "deflate" -> new InflaterInputStream(body, new Inflater(), 64 * 1024);
+            case "identity" -> body;
+            default -> {
+                body.close();
+                throw new IOException("Unsupported Content-Encoding: " + encoding);
+            }
+        };
+    }
+    
+    /**
+     * The charset named in the Content-Type header, UTF-8 if there is none or it is unknown
+     */
+    private static Charset charsetOf(String contentType, String textUrl) {
+        if (contentType == null) {
+            return StandardCharsets.UTF_8;
+        }
+        try {
+            Charset charset = MediaType.parseMediaType(contentType).getCharset();
+            return charset != null ? charset : StandardCharsets.UTF_8;
+        } catch (IllegalArgumentException e) {
+            logger.warn("Ignoring Content-Type '{}' of {}, reading it as UTF-8: {}", contentType, textUrl, e.getMessage());
+            return StandardCharsets.UTF_8;
+        }
+    }
+    
+    /**
+     * Chunks the body as UTF-8 bytes for the byte matcher, otherwise as decoded lines
+     */
+    private int chunk(InputStream body, Charset charset, Consumer<TextChunk> chunkConsumer) throws IOException {
+        if (appConfig.getMatcherEngine() == MatcherEngine.BYTES
+                && (charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII))) {
+            return processBytesInChunks(body, chunkConsumer);
+        }
+        BoundedInputStream counted = new BoundedInputStream(body, Long.MAX_VALUE, null);
+        return processTextInChunks(new BufferedReader(new InputStreamReader(counted, charset)), counted::getCount,
+            chunkConsumer);
+    }
+    
+    /**
+     * Cuts a UTF-8 body into chunks of about chunk-bytes that end after a line end, without
+     * decoding it: each chunk is a {@link Utf8ByteSequence} the byte matcher scans directly.
+     * Line ends, chunk lines and offsets come out the same as from processTextInChunks. A
+     * chunk that is not well-formed UTF-8 is decoded with replacement characters instead.
+     */
+    public int processBytesInChunks(InputStream body, Consumer<TextChunk> chunkConsumer) throws IOException {
+        int chunkBytes = (int) Math.min(ConfigUtils.parseSize(appConfig.getChunkBytes()), Integer.MAX_VALUE / 4);
+        byte[] buffer = new byte[Math.max(chunkBytes, 1024)];
+        int filled = 0;
+        int chunkCount = 0;
+        int startLine = 0;
+        long globalCharOffset = 0;
+        
+        while (true) {
+            filled += body.readNBytes(buffer, filled, buffer.length - filled);
+            boolean end = filled < buffer.length;
+            int cut = end ? filled : afterLastLineEnd(buffer, filled);
+            if (cut < 0) {
+                // A line longer than the buffer; lines are never split
+                buffer = Arrays.copyOf(buffer, (int) Math.min(Integer.MAX_VALUE - 8, 2L * buffer.length));
+                continue;
+            }
+            if (cut > 0) {
+                ByteBuffer region = ByteBuffer.wrap(Arrays.copyOf(buffer, cut));
+                TextChunk chunk = toChunk(region, startLine, globalCharOffset);
+                chunkConsumer.accept(chunk);
+                chunkCount++;
+                startLine = chunk.getEndLine() + 1;
+                globalCharOffset += chunk.getContent().length();
+                System.arraycopy(buffer, cut, buffer, 0, filled - cut);
+                filled -= cut;
+            }
+            if (end) {
+                return chunkCount;
+            }
+        }
+    }
+    
+    private static TextChunk toChunk(ByteBuffer region, int startLine, long globalCharOffset) throws IOException {
+        Utf8ByteSequence utf8 = Utf8ByteSequence.of(region);
+        if (utf8 != null) {
+            return new TextChunk(utf8, startLine, startLine + utf8.getLineCount() - 1, globalCharOffset, region.limit());
+        }
+        CharBuffer decoded = Utf8ByteSequence.decode(region);
+        int lines = 0;
+        for (int i = 0; i < decoded.length(); i++) {
+            if (decoded.get(i) == '\n') {
+                lines++;
+            }
+        }
+        return new TextChunk(decoded, startLine, startLine + lines - 1, globalCharOffset, region.limit());
+    }
+    
+    /**
+     * Index after the last complete line end, or -1; a "\r" in the last byte may still be
+     * followed by "\n", so it does not count yet
+     */
+    private static int afterLastLineEnd(byte[] buffer, int filled) {
+        for (int i = filled - 1; i >= 0; i--) {
+            if (buffer[i] == '\n' || (buffer[i] == '\r' && i < filled - 1)) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Splits the text into consecutive chunks of whole lines, each closed once it holds at
+     * least chunk-bytes characters, so chunk cost follows text volume rather than line
+     * count. Words never span a line, so chunks do not overlap: every character is scanned
+     * exactly once, and the offsets the matchers compute inside a chunk are true positions
+     * in the document.
+     */
+    public int processTextInChunks(BufferedReader reader, Consumer<TextChunk> chunkConsumer) throws IOException {
+        return processTextInChunks(reader, () -> 0, chunkConsumer);
+    }
+    
+    /**
+     * Same, crediting each chunk with the source bytes the reader consumed since the one
+     * before; the reader's read-ahead makes that approximate per chunk but exact in total
+     */
+    private int processTextInChunks(BufferedReader reader, LongSupplier bytesRead, Consumer<TextChunk> chunkConsumer)
+            throws IOException {
+        int chunkCount = 0;
+        long chunkStartBytes = 0;
+        int chunkChars = (int) Math.min(ConfigUtils.parseSize(appConfig.getChunkBytes()), Integer.MAX_VALUE / 4);
+        StringBuilder chunkContent = new StringBuilder();
+        int linesInChunk = 0;
         
         String line;
         int currentLine = 0;
-        int globalCharOffset = 0;
+        long globalCharOffset = 0;
         int chunkStartLine = 0;
         
         while ((line = reader.readLine()) != null) {
-            currentChunk.add(line);
+            chunkContent.append(line).append('\n');
+            linesInChunk++;
             currentLine++;
             
             // Check if chunk is full
-            if (currentChunk.size() >= appConfig.getChunkSize()) {
-                // Create chunk with overlap from previous chunk
-                StringBuilder chunkContent = new StringBuilder();
-                
-                // Add overlap from previous chunk
-                for (String overlapLine : overlapBuffer) {
-                    chunkContent.append(overlapLine).append("\n");
-                }
-                
-                // Add current chunk content
-                for (String chunkLine : currentChunk) {
-                    chunkContent.append(chunkLine).append("\n");
-                }
+            if (chunkContent.length() >= chunkChars) {
+                long consumedBytes = bytesRead.getAsLong();
+                chunkConsumer.accept(new TextChunk(
+                    chunkContent.toString(),
+                    chunkStartLine,
+                    currentLine - 1,
+                    globalCharOffset,
+                    consumedBytes - chunkStartBytes
+                ));
+                chunkCount++;
+                chunkStartBytes = consumedBytes;
                 
-                // Create and add chunk
-                TextChunk chunk = new TextChunk(
-                    chunkContent.toString(), 
-                    chunkStartLine, 
-                    currentLine - 1, 
-                    globalCharOffset
-                );
-                chunks.add(chunk);
-                
-                // Update global char offset
+                // Next chunk starts right after this one
                 globalCharOffset += chunkContent.length();
-                
-                // Prepare overlap for next chunk
-                overlapBuffer.clear();
-                int overlapStart = Math.max(0, currentChunk.size() - appConfig.getChunkOverlap());
-                for (int i = overlapStart; i < currentChunk.size(); i++) {
-                    overlapBuffer.add(currentChunk.get(i));
-                }
-                
-                // Reset for next chunk
-                chunkStartLine = currentLine - appConfig.getChunkOverlap();
-                currentChunk.clear();
+                chunkStartLine = currentLine;
+                chunkContent.setLength(0);
+                linesInChunk = 0;
             }
         }
         
         // Handle remaining lines
-        if (!currentChunk.isEmpty() || !overlapBuffer.isEmpty()) {
-            StringBuilder chunkContent = new StringBuilder();
-            
-            for (String overlapLine : overlapBuffer) {
-                chunkContent.append(overlapLine).append("\n");
-            }
-            
-            for (String chunkLine : currentChunk) {
-                chunkContent.append(chunkLine).append("\n");
-            }
-            
-            if (chunkContent.length() > 0) {
-                TextChunk chunk = new TextChunk(
-                    chunkContent.toString(), 
-                    chunkStartLine, 
-                    currentLine - 1, 
-                    globalCharOffset
-                );
-                chunks.add(chunk);
-            }
-        }
-        
-        return chunks;
-    }
-    
-    private long parseFileSize(String sizeStr) {
-        sizeStr = sizeStr.toUpperCase().trim();
-        long multiplier = 1;
-        
-        if (sizeStr.endsWith("KB")) {
-            multiplier = 1024;
-            sizeStr = sizeStr.substring(0, sizeStr.length() - 2);
-        } else if (sizeStr.endsWith("MB")) {
-            multiplier = 1024 * 1024;
-            sizeStr = sizeStr.substring(0, sizeStr.length() - 2);
-        } else if (sizeStr.endsWith("GB")) {
-            multiplier = 1024 * 1024 * 1024;
-            sizeStr = sizeStr.substring(0, sizeStr.length() - 2);
+        if (linesInChunk > 0) {
+            chunkConsumer.accept(new TextChunk(
+                chunkContent.toString(),
+                chunkStartLine,
+                currentLine - 1,
+                globalCharOffset,
+                bytesRead.getAsLong() - chunkStartBytes
+            ));
+            chunkCount++;
         }
         
-        return Long.parseLong(sizeStr.trim()) * multiplier;
+        return chunkCount;
     }
 }
@@ -0,0 +1,56 @@
+package com.textanalysis.bit.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Adds up the time spent in reads of the wrapped stream. Around a response body that is the
+ * time the reader waited for the network and for inflating what arrived, as opposed to the
+ * time it spent chunking.
+ */
+class TimedInputStream extends FilterInputStream {
+    
+    private long nanos;
+    
+    TimedInputStream(InputStream in) {
+        super(in);
+    }
+    
+    @Override
+    public int read() throws IOException {
+        long start = System.nanoTime();
+        try {
+            return super.read();
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+    
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return super.read(buffer, offset, length);
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+    
+    @Override
+    public long skip(long n) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return super.skip(n);
+        } finally {
+            nanos += System.nanoTime() - start;
+        }
+    }
+    
+    /**
+     * Nanoseconds spent reading so far
+     */
+    long getNanos() {
+        return nanos;
+    }
+}
@@ -0,0 +1,128 @@
+package com.textanalysis.bit.service.index;
+
+import com.textanalysis.bit.model.dto.WordLocation;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only, memory-mapped positional index of one document. The file is mapped in
+ * segments of at most 1GB and addressed with long positions, so indexes of any size open.
+ * <p>
+ * File layout (big-endian):
+ * <pre>
+ * header     int magic "TAIX", int version, int tokenCount
+ * postings   per token, per occurrence: varint(charOffset delta), varint(zigzag(line delta))
+ * directory  per token: int keyLength, UTF-8 key, long postingsPosition, int count
+ * trailer    long directoryPosition
+ * </pre>
+ */
+public class DocumentIndex {
+    
+    static final int MAGIC = 0x54414958;
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 3 * Integer.BYTES;
+    static final int SEGMENT_SHIFT = 30;
+    
+    private final MappedByteBuffer[] segments;
+    private final int segmentShift;
+    private final Map<String, long[]> directory;
+    
+    private DocumentIndex(MappedByteBuffer[] segments, int segmentShift, Map<String, long[]> directory) {
+        this.segments = segments;
+        this.segmentShift = segmentShift;
+        this.directory = directory;
+    }
+    
+    public static DocumentIndex open(Path file) throws IOException {
+        return open(file, SEGMENT_SHIFT);
+    }
+    
+    /**
+     * @param segmentShift log2 of the segment size; smaller in tests, to cross segment ends
+     */
+    static DocumentIndex open(Path file, int segmentShift) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long segmentSize = 1L << segmentShift;
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((size + segmentSize - 1) >>> segmentShift)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i << segmentShift;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentSize, size - start));
+            }
+            
+            // Header and directory are read once, through the channel rather than the segments
+            DataInputStream header = new DataInputStream(Channels.newInputStream(channel.position(0)));
+            if (header.readInt() != MAGIC || header.readInt() != VERSION) {
+                throw new IOException("Not a document index or unsupported version: " + file);
+            }
+            int tokenCount = header.readInt();
+            long directoryPosition = new DataInputStream(Channels.newInputStream(channel.position(size - Long.BYTES))).readLong();
+            
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(channel.position(directoryPosition)), 64 * 1024));
+            Map<String, long[]> directory = new HashMap<>(tokenCount * 2);
+            for (int t = 0; t < tokenCount; t++) {
+                byte[] key = new byte[in.readInt()];
+                in.readFully(key);
+                long postingsPosition = in.readLong();
+                int count = in.readInt();
+                directory.put(new String(key, StandardCharsets.UTF_8), new long[] {postingsPosition, count});
+            }
+            return new DocumentIndex(segments, segmentShift, directory);
+        }
+    }
+    
+    public int getTokenCount() { return directory.size(); }
+    
+    /**
+     * Returns the locations of a case-folded token in offset order, empty if it never occurs
+     */
+    public List<WordLocation> lookup(String token) {
+        long[] entry = directory.get(token);
+        if (entry == null) {
+            return Collections.emptyList();
+        }
+        
+        int count = (int) entry[1];
+        List<WordLocation> locations = new ArrayList<>(count);
+        long[] position = {entry[0]};
+        long offset = 0;
+        long line = 0;
+        for (int i = 0; i < count; i++) {
+            offset += readVarLong(position);
+            long zigZag = readVarLong(position);
+            line += (zigZag >>> 1) ^ -(zigZag & 1);
+            locations.add(new WordLocation((int) line, offset));
+        }
+        return locations;
+    }
+    
+    /**
+     * Decodes a varint at position[0] with absolute reads, so lookups can run concurrently
+     */
+    private long readVarLong(long[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            long at = position[0]++;
+            b = segments[(int) (at >>> segmentShift)].get((int) (at & ((1L << segmentShift) - 1)));
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
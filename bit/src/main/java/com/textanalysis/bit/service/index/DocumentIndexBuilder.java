@@ -0,0 +1,191 @@
+package com.textanalysis.bit.service.index;
+
+import com.textanalysis.bit.model.internal.TextChunk;
+import com.textanalysis.bit.service.matcher.WordBoundaries;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Collects the positions of every token in a document from its chunks and writes them as a
+ * {@link DocumentIndex}. A token is a maximal run of {@code \b} word characters on one line,
+ * ASCII case-folded, so a single-token word matches exactly the positions of its token.
+ * Positions are taken from the chunks exactly as the matchers would report them.
+ * <p>
+ * Every posting is held on the heap until the index is written, about 12 bytes per token
+ * occurrence plus each distinct token. The builder gives up with an exception once its
+ * estimate passes the memory limit, so a huge document is left unindexed instead of
+ * exhausting the heap.
+ */
+public class DocumentIndexBuilder implements Consumer<TextChunk> {
+    
+    /** Map entry, String, Postings object and its initial arrays of a new token */
+    private static final int TOKEN_OVERHEAD_BYTES = 160;
+    private static final int POSTING_BYTES = Integer.BYTES + Long.BYTES;
+    
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final long maxMemoryBytes;
+    private long memoryBytes;
+    private long nextCharOffset;
+    
+    public DocumentIndexBuilder() {
+        this(Long.MAX_VALUE);
+    }
+    
+    public DocumentIndexBuilder(long maxMemoryBytes) {
+        this.maxMemoryBytes = maxMemoryBytes;
+    }
+    
+    /**
+     * Adds the tokens of the next chunk; chunks must be passed in document order so that
+     * every posting list stays sorted by offset
+     */
+    @Override
+    public void accept(TextChunk chunk) {
+        CharSequence content = chunk.getContent();
+        long globalCharOffset = chunk.getGlobalCharOffset();
+        if (globalCharOffset < nextCharOffset) {
+            throw new IllegalStateException("Chunk at offset " + globalCharOffset + " is out of order");
+        }
+        nextCharOffset = globalCharOffset + content.length();
+        int lineStart = 0;
+        int lineNumber = chunk.getStartLine();
+        
+        int i = 0;
+        int length = content.length();
+        while (i < length) {
+            if (content.charAt(i) == '\n') {
+                i++;
+                lineStart = i;
+                lineNumber++;
+                continue;
+            }
+            if (!WordBoundaries.isWordAt(content, i, lineStart)) {
+                i += Character.charCount(Character.codePointAt(content, i));
+                continue;
+            }
+            
+            int start = i;
+            while (i < length && content.charAt(i) != '\n' && WordBoundaries.isWordAt(content, i, lineStart)) {
+                i += Character.charCount(Character.codePointAt(content, i));
+            }
+            String token = WordBoundaries.foldCase(content.subSequence(start, i));
+            Postings list = postings.get(token);
+            if (list == null) {
+                list = new Postings();
+                postings.put(token, list);
+                memoryBytes += TOKEN_OVERHEAD_BYTES + token.length();
+            }
+            memoryBytes += list.add(lineNumber, globalCharOffset + start);
+        }
+        if (memoryBytes > maxMemoryBytes) {
+            throw new IllegalStateException("Index would need more than " + maxMemoryBytes + " bytes of heap");
+        }
+    }
+    
+    /**
+     * Estimated heap held by the postings collected so far
+     */
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+    
+    public int getTokenCount() {
+        return postings.size();
+    }
+    
+    /**
+     * Writes the index to a temporary file next to {@code file} and moves it into place,
+     * so readers never see a partially written index
+     */
+    public void writeTo(Path file) throws IOException {
+        List<String> tokens = new ArrayList<>(postings.keySet());
+        tokens.sort(null);
+        
+        Path tempFile = Files.createTempFile(file.getParent(), "index-", ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(DocumentIndex.MAGIC);
+            out.writeInt(DocumentIndex.VERSION);
+            out.writeInt(tokens.size());
+            long position = DocumentIndex.HEADER_SIZE;
+            
+            long[] postingsOffsets = new long[tokens.size()];
+            for (int t = 0; t < tokens.size(); t++) {
+                postingsOffsets[t] = position;
+                Postings list = postings.get(tokens.get(t));
+                long previousOffset = 0;
+                int previousLine = 0;
+                for (int p = 0; p < list.size; p++) {
+                    position += writeVarLong(out, list.offsets[p] - previousOffset);
+                    position += writeVarLong(out, zigZag(list.lines[p] - previousLine));
+                    previousOffset = list.offsets[p];
+                    previousLine = list.lines[p];
+                }
+            }
+            
+            // Directory: token, postings position and posting count, in token order
+            for (int t = 0; t < tokens.size(); t++) {
+                byte[] key = tokens.get(t).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(key.length);
+                out.write(key);
+                out.writeLong(postingsOffsets[t]);
+                out.writeInt(postings.get(tokens.get(t)).size);
+            }
+            
+            // Trailer: where the directory starts
+            out.writeLong(position);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+    
+    private static int writeVarLong(DataOutputStream out, long value) throws IOException {
+        int written = 1;
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+            written++;
+        }
+        out.writeByte((int) value);
+        return written;
+    }
+    
+    private static class Postings {
+        private int[] lines = new int[4];
+        private long[] offsets = new long[4];
+        private int size;
+        
+        /**
+         * Adds a posting and returns the bytes the arrays grew by
+         */
+        long add(int line, long offset) {
+            long grown = 0;
+            if (size == offsets.length) {
+                lines = Arrays.copyOf(lines, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+                grown = (long) size * POSTING_BYTES;
+            }
+            lines[size] = line;
+            offsets[size] = offset;
+            size++;
+            return grown;
+        }
+    }
+}
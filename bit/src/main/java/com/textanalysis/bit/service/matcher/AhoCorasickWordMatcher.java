@@ -0,0 +1,210 @@
+package com.textanalysis.bit.service.matcher;
+
+import com.textanalysis.bit.model.internal.MatchBuffer;
+import com.textanalysis.bit.model.internal.TextChunk;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds all dictionary words in a single pass over a chunk using an Aho-Corasick automaton.
+ * <p>
+ * The automaton is built over ASCII case-folded words and compiled into a full transition
+ * table over the dictionary's own alphabet; characters that never occur in any word share a
+ * single column that leads back to the root. Results are the same as {@link RegexWordMatcher}:
+ * matches never cross a line, must sit on {@code \b} boundaries, and occurrences of the same
+ * word do not overlap.
+ */
+public class AhoCorasickWordMatcher implements WordMatcher {
+    
+    private static final int ROOT = 0;
+    
+    private final String[] words;
+    private final int[] wordLengths;
+    
+    private final int[] asciiClasses = new int[128];
+    private final Map<Character, Integer> otherClasses = new HashMap<>();
+    private final int alphabetWidth;
+    
+    private final int[] transitions;
+    private final int[][] outputs;
+    private final int[] outputLinks;
+    
+    public AhoCorasickWordMatcher(Set<String> wordsToFind) {
+        // An empty word has no regex equivalent worth reproducing, so it is ignored
+        this.words = wordsToFind.stream().filter(word -> !word.isEmpty()).toArray(String[]::new);
+        this.wordLengths = new int[words.length];
+        
+        this.alphabetWidth = buildAlphabet() + 1;
+        
+        // Build the trie; 0 means "no edge" since the root is never a child
+        int[] table = new int[alphabetWidth * 64];
+        List<int[]> nodeOutputs = new ArrayList<>();
+        nodeOutputs.add(null);
+        int nodeCount = 1;
+        
+        for (int id = 0; id < words.length; id++) {
+            String word = words[id];
+            wordLengths[id] = word.length();
+            int node = ROOT;
+            for (int i = 0; i < word.length(); i++) {
+                int slot = node * alphabetWidth + classOf(word.charAt(i));
+                if (table[slot] == 0) {
+                    if ((nodeCount + 1) * alphabetWidth > table.length) {
+                        table = Arrays.copyOf(table, table.length * 2);
+                    }
+                    table[slot] = nodeCount++;
+                    nodeOutputs.add(null);
+                }
+                node = table[slot];
+            }
+            int[] existing = nodeOutputs.get(node);
+            int[] updated = existing == null ? new int[1] : Arrays.copyOf(existing, existing.length + 1);
+            updated[updated.length - 1] = id;
+            nodeOutputs.set(node, updated);
+        }
+        
+        this.transitions = Arrays.copyOf(table, nodeCount * alphabetWidth);
+        this.outputs = nodeOutputs.toArray(new int[0][]);
+        this.outputLinks = new int[nodeCount];
+        
+        buildFailureTransitions(nodeCount);
+    }
+    
+    private int buildAlphabet() {
+        int classes = 0;
+        for (String word : words) {
+            for (int i = 0; i < word.length(); i++) {
+                char c = WordBoundaries.foldCase(word.charAt(i));
+                if (c < 128) {
+                    if (asciiClasses[c] == 0) {
+                        asciiClasses[c] = ++classes;
+                    }
+                } else if (!otherClasses.containsKey(c)) {
+                    otherClasses.put(c, ++classes);
+                }
+            }
+        }
+        // Upper-case ASCII letters share the column of their lower-case form
+        for (char c = 'A'; c <= 'Z'; c++) {
+            asciiClasses[c] = asciiClasses[WordBoundaries.foldCase(c)];
+        }
+        return classes;
+    }
+    
+    /**
+     * Breadth-first pass that turns the trie into a complete DFA and links every node to the
+     * nearest proper suffix that ends a word
+     */
+    private void buildFailureTransitions(int nodeCount) {
+        int[] failure = new int[nodeCount];
+        Deque<Integer> queue = new ArrayDeque<>();
+        
+        outputLinks[ROOT] = -1;
+        for (int cls = 0; cls < alphabetWidth; cls++) {
+            int child = transitions[cls];
+            if (child != 0) {
+                failure[child] = ROOT;
+                outputLinks[child] = -1;
+                queue.add(child);
+            }
+        }
+        
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int cls = 0; cls < alphabetWidth; cls++) {
+                int slot = node * alphabetWidth + cls;
+                int child = transitions[slot];
+                int fallback = transitions[failure[node] * alphabetWidth + cls];
+                if (child == 0) {
+                    transitions[slot] = fallback;
+                } else {
+                    failure[child] = fallback;
+                    outputLinks[child] = outputs[fallback] != null ? fallback : outputLinks[fallback];
+                    queue.add(child);
+                }
+            }
+        }
+    }
+    
+    private int classOf(char c) {
+        if (c < 128) {
+            return asciiClasses[c];
+        }
+        Integer cls = otherClasses.get(c);
+        return cls == null ? 0 : cls;
+    }
+    
+    @Override
+    public void findMatches(TextChunk chunk, MatchBuffer buffer) {
+        CharSequence content = chunk.getContent();
+        long globalCharOffset = chunk.getGlobalCharOffset();
+        
+        // End of the last accepted occurrence per word; the regex engine never overlaps them
+        int[] lastEnd = new int[words.length];
+        
+        int state = ROOT;
+        int lineStart = 0;
+        int lineNumber = chunk.getStartLine();
+        
+        for (int i = 0, length = content.length(); i < length; i++) {
+            char c = content.charAt(i);
+            if (c == '\n') {
+                state = ROOT;
+                lineStart = i + 1;
+                lineNumber++;
+                continue;
+            }
+            
+            state = transitions[state * alphabetWidth + classOf(c)];
+            
+            int node = outputs[state] != null ? state : outputLinks[state];
+            while (node > ROOT) {
+                for (int id : outputs[node]) {
+                    int end = i + 1;
+                    int start = end - wordLengths[id];
+                    if (start >= lastEnd[id]
+                            && WordBoundaries.isBoundary(content, start, lineStart)
+                            && WordBoundaries.isBoundary(content, end, lineStart)) {
+                        lastEnd[id] = end;
+                        buffer.add(id, lineNumber, globalCharOffset + start);
+                    }
+                }
+                node = outputLinks[node];
+            }
+        }
+    }
+    
+    @Override
+    public MatchBuffer newBuffer(int locationLimit) {
+        return new MatchBuffer(words, locationLimit);
+    }
+    
+    @Override
+    public int size() {
+        return words.length;
+    }
+    
+    /**
+     * One automaton step per character, whatever the dictionary size
+     */
+    @Override
+    public int costPerChar() {
+        return 1;
+    }
+    
+    @Override
+    public long estimatedSizeBytes() {
+        long bytes = 4L * transitions.length + 4L * outputLinks.length + 8L * outputs.length + 4L * wordLengths.length;
+        for (String word : words) {
+            bytes += 40 + 2L * word.length();
+        }
+        return bytes;
+    }
+}
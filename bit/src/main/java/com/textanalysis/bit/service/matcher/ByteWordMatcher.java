@@ -0,0 +1,382 @@
+package com.textanalysis.bit.service.matcher;
+
+import com.textanalysis.bit.model.internal.AsciiByteSequence;
+import com.textanalysis.bit.model.internal.MatchBuffer;
+import com.textanalysis.bit.model.internal.TextChunk;
+import com.textanalysis.bit.model.internal.Utf8ByteSequence;
+
+import java.nio.ByteBuffer;
+import java.util.Set;
+
+/**
+ * Matcher for dictionaries of ASCII word characters only ({@code [A-Za-z0-9_]+}), the common
+ * case. Such a word can only match a whole maximal run of word characters, so the text is
+ * cut into runs and every run made of ASCII word characters is looked up, case-folded, in an
+ * open-addressing hash table. Chunks backed by bytes (memory-mapped files, downloaded
+ * blocks) are scanned as UTF-8 without decoding them; line numbers and UTF-16 offsets are
+ * counted along the way. Other chunks are scanned char by char with the same tables.
+ * <p>
+ * Results are the same as {@link RegexWordMatcher}: non-ASCII characters are decoded, to
+ * decide whether they are letters, digits or combining marks that extend a run.
+ */
+public class ByteWordMatcher implements WordMatcher {
+    
+    private static final byte OTHER = 0;
+    private static final byte WORD = 1;
+    private static final byte NEWLINE = 2;
+    private static final byte CARRIAGE_RETURN = 3;
+    private static final byte NON_ASCII = 4;
+    
+    /** Run length marking a run with non-ASCII characters, longer than any word */
+    private static final int NOT_ASCII = 1 << 30;
+    
+    /** Byte classes and ASCII case folding, shared by both scans */
+    private static final byte[] CLASSES = new byte[256];
+    private static final byte[] FOLDED = new byte[128];
+    
+    static {
+        for (int b = 0; b < 256; b++) {
+            CLASSES[b] = b >= 0x80 ? NON_ASCII : isAsciiWord(b) ? WORD : OTHER;
+        }
+        CLASSES['\n'] = NEWLINE;
+        CLASSES['\r'] = CARRIAGE_RETURN;
+        for (int b = 0; b < 128; b++) {
+            FOLDED[b] = (byte) WordBoundaries.foldCase((char) b);
+        }
+    }
+    
+    private final String[] words;
+    private final byte[][] wordBytes;
+    private final int[] slots;
+    private final int mask;
+    private final int shift;
+    private final long[] filter;
+    private final int filterShift;
+    private final int maxWordLength;
+    
+    public ByteWordMatcher(Set<String> wordsToFind) {
+        this.words = wordsToFind.toArray(String[]::new);
+        this.wordBytes = new byte[words.length][];
+        
+        // At most a quarter full, so a miss usually ends at the first empty slot
+        int bits = Math.max(4, 34 - Integer.numberOfLeadingZeros(Math.max(1, words.length)));
+        this.slots = new int[1 << bits];
+        this.mask = slots.length - 1;
+        this.shift = 32 - bits;
+        // Eight filter bits per slot, so few runs that are not words reach the table
+        this.filter = new long[1 << (bits + 3 - 6)];
+        this.filterShift = 32 - (bits + 3);
+        
+        int longest = 0;
+        for (int id = 0; id < words.length; id++) {
+            String word = words[id];
+            if (!supports(word)) {
+                throw new IllegalArgumentException("Not an ASCII word: " + word);
+            }
+            byte[] folded = new byte[word.length()];
+            int hash = 0;
+            for (int i = 0; i < folded.length; i++) {
+                folded[i] = FOLDED[word.charAt(i)];
+                hash = 31 * hash + folded[i];
+            }
+            wordBytes[id] = folded;
+            longest = Math.max(longest, folded.length);
+            
+            // Slots hold id + 1, so 0 is free
+            int slot = slotOf(hash);
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+            int bit = (hash * 0x9E3779B9) >>> filterShift;
+            filter[bit >>> 6] |= 1L << bit;
+        }
+        this.maxWordLength = longest;
+    }
+    
+    /**
+     * Checks whether every word is made of ASCII word characters, so this matcher applies
+     */
+    public static boolean supports(Set<String> words) {
+        return words.stream().allMatch(ByteWordMatcher::supports);
+    }
+    
+    private static boolean supports(String word) {
+        if (word.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (word.charAt(i) >= 128 || !isAsciiWord(word.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    @Override
+    public void findMatches(TextChunk chunk, MatchBuffer buffer) {
+        CharSequence content = chunk.getContent();
+        if (content instanceof Utf8ByteSequence utf8) {
+            scanBytes(utf8.getBytes(), chunk, buffer);
+        } else if (content instanceof AsciiByteSequence ascii) {
+            scanBytes(ascii.getBytes(), chunk, buffer);
+        } else {
+            scanChars(content, chunk, buffer);
+        }
+    }
+    
+    /**
+     * Scans UTF-8 bytes, reading "\r\n" and a lone "\r" as one line end like the readers do
+     */
+    private void scanBytes(ByteBuffer bytes, TextChunk chunk, MatchBuffer buffer) {
+        int line = chunk.getStartLine();
+        int limit = bytes.limit();
+        
+        // Chars minus bytes so far, plus the chunk offset: byte i is at char i + charShift
+        long charShift = chunk.getGlobalCharOffset();
+        int runLength = 0;
+        int runHash = 0;
+        // Whether the last non-ASCII character that was not a combining mark is a letter or digit
+        boolean afterBase = false;
+        
+        for (int i = 0; i < limit; i++) {
+            int b = bytes.get(i) & 0xFF;
+            int cls = CLASSES[b];
+            if (cls <= WORD) {
+                // Masks are all ones inside a run and zero after it, so the run state needs no
+                // branch; a finished run is only looked up if the filter lets it through
+                int wordMask = -cls;
+                if ((runLength & ~wordMask) != 0 && mayMatch(runHash)) {
+                    matchRun(bytes, i - runLength, runLength, runHash, line, i + charShift - runLength, buffer);
+                }
+                runHash = (31 * runHash + FOLDED[b]) & wordMask;
+                runLength = (runLength + 1) & wordMask;
+                continue;
+            }
+            
+            if (cls == NON_ASCII) {
+                int codePoint = decode(bytes, i, b);
+                int byteCount = b < 0xE0 ? 2 : b < 0xF0 ? 3 : 4;
+                int previous = i > 0 ? bytes.get(i - 1) : '\n';
+                boolean base = previous >= 0 ? isAsciiLetterOrDigit(previous) : afterBase;
+                if (isWord(codePoint, base)) {
+                    runLength = NOT_ASCII;
+                    afterBase = isBase(codePoint, base);
+                } else {
+                    if (runLength > 0 && mayMatch(runHash)) {
+                        matchRun(bytes, i - runLength, runLength, runHash, line, i + charShift - runLength, buffer);
+                    }
+                    runLength = 0;
+                    runHash = 0;
+                    afterBase = false;
+                }
+                charShift += Character.charCount(codePoint) - byteCount;
+                i += byteCount - 1;
+                continue;
+            }
+            
+            if (runLength > 0 && mayMatch(runHash)) {
+                matchRun(bytes, i - runLength, runLength, runHash, line, i + charShift - runLength, buffer);
+            }
+            runLength = 0;
+            runHash = 0;
+            line++;
+            if (b == '\r' && i + 1 < limit && bytes.get(i + 1) == '\n') {
+                i++;
+                charShift--;
+            }
+        }
+        if (runLength > 0) {
+            matchRun(bytes, limit - runLength, runLength, runHash, line, limit + charShift - runLength, buffer);
+        }
+    }
+    
+    /**
+     * Same scan over chars; only '\n' ends a line, as for the other matchers
+     */
+    private void scanChars(CharSequence content, TextChunk chunk, MatchBuffer buffer) {
+        long globalCharOffset = chunk.getGlobalCharOffset();
+        int line = chunk.getStartLine();
+        int length = content.length();
+        
+        int runLength = 0;
+        int runHash = 0;
+        boolean afterBase = false;
+        
+        for (int i = 0; i < length; i++) {
+            char c = content.charAt(i);
+            int cls = c < 128 ? CLASSES[c] : NON_ASCII;
+            if (cls <= WORD) {
+                int wordMask = -cls;
+                if ((runLength & ~wordMask) != 0 && mayMatch(runHash)) {
+                    matchRun(content, i - runLength, runLength, runHash, line, globalCharOffset + i - runLength, buffer);
+                }
+                runHash = (31 * runHash + FOLDED[c]) & wordMask;
+                runLength = (runLength + 1) & wordMask;
+                continue;
+            }
+            
+            if (cls == NON_ASCII) {
+                int codePoint = Character.codePointAt(content, i);
+                char previous = i > 0 ? content.charAt(i - 1) : '\n';
+                boolean base = previous < 128 ? isAsciiLetterOrDigit(previous) : afterBase;
+                if (isWord(codePoint, base)) {
+                    runLength = NOT_ASCII;
+                    afterBase = isBase(codePoint, base);
+                } else {
+                    if (runLength > 0 && mayMatch(runHash)) {
+                        matchRun(content, i - runLength, runLength, runHash, line, globalCharOffset + i - runLength, buffer);
+                    }
+                    runLength = 0;
+                    runHash = 0;
+                    afterBase = false;
+                }
+                i += Character.charCount(codePoint) - 1;
+                continue;
+            }
+            
+            if (runLength > 0 && mayMatch(runHash)) {
+                matchRun(content, i - runLength, runLength, runHash, line, globalCharOffset + i - runLength, buffer);
+            }
+            runLength = 0;
+            runHash = 0;
+            if (c == '\n') {
+                line++;
+            }
+        }
+        if (runLength > 0) {
+            matchRun(content, length - runLength, runLength, runHash, line, globalCharOffset + length - runLength, buffer);
+        }
+    }
+    
+    private boolean mayMatch(int hash) {
+        int bit = (hash * 0x9E3779B9) >>> filterShift;
+        return (filter[bit >>> 6] & (1L << bit)) != 0;
+    }
+    
+    /**
+     * Looks up a finished run; runs with non-ASCII characters have length NOT_ASCII and are
+     * skipped here
+     */
+    private void matchRun(ByteBuffer bytes, int start, int length, int hash, int line, long offset,
+                          MatchBuffer buffer) {
+        if (length > maxWordLength) {
+            return;
+        }
+        for (int slot = slotOf(hash); slots[slot] != 0; slot = (slot + 1) & mask) {
+            byte[] word = wordBytes[slots[slot] - 1];
+            if (word.length == length && equalsFolded(bytes, start, word)) {
+                buffer.add(slots[slot] - 1, line, offset);
+                return;
+            }
+        }
+    }
+    
+    private void matchRun(CharSequence content, int start, int length, int hash, int line, long offset,
+                          MatchBuffer buffer) {
+        if (length > maxWordLength) {
+            return;
+        }
+        for (int slot = slotOf(hash); slots[slot] != 0; slot = (slot + 1) & mask) {
+            byte[] word = wordBytes[slots[slot] - 1];
+            if (word.length == length && equalsFolded(content, start, word)) {
+                buffer.add(slots[slot] - 1, line, offset);
+                return;
+            }
+        }
+    }
+    
+    private static boolean equalsFolded(ByteBuffer bytes, int start, byte[] word) {
+        for (int i = 0; i < word.length; i++) {
+            if (FOLDED[bytes.get(start + i)] != word[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static boolean equalsFolded(CharSequence content, int start, byte[] word) {
+        for (int i = 0; i < word.length; i++) {
+            if (FOLDED[content.charAt(start + i)] != word[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * A word character for {@code \b}: a letter, a digit, or a combining mark on one
+     */
+    private static boolean isWord(int codePoint, boolean afterBase) {
+        return Character.isLetterOrDigit(codePoint)
+            || (afterBase && Character.getType(codePoint) == Character.NON_SPACING_MARK);
+    }
+    
+    /**
+     * Like {@code \b}, a mark only finds its base across BMP characters: stepping back from
+     * a mark onto a surrogate pair sees a lone low surrogate, which is not a letter
+     */
+    private static boolean isBase(int codePoint, boolean afterBase) {
+        if (Character.isLetterOrDigit(codePoint)) {
+            return Character.isBmpCodePoint(codePoint);
+        }
+        return afterBase;
+    }
+    
+    /**
+     * Code point of the well-formed UTF-8 sequence starting with lead byte b at index
+     */
+    private static int decode(ByteBuffer bytes, int index, int b) {
+        if (b < 0xE0) {
+            return (b & 0x1F) << 6 | (bytes.get(index + 1) & 0x3F);
+        }
+        if (b < 0xF0) {
+            return (b & 0x0F) << 12 | (bytes.get(index + 1) & 0x3F) << 6 | (bytes.get(index + 2) & 0x3F);
+        }
+        return (b & 0x07) << 18 | (bytes.get(index + 1) & 0x3F) << 12
+            | (bytes.get(index + 2) & 0x3F) << 6 | (bytes.get(index + 3) & 0x3F);
+    }
+    
+    private static boolean isAsciiWord(int c) {
+        return c == '_' || isAsciiLetterOrDigit(c);
+    }
+    
+    private static boolean isAsciiLetterOrDigit(int c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+    
+    /**
+     * Fibonacci hashing: the top bits of the product depend on every character, unlike the
+     * low bits of a polynomial hash over letters
+     */
+    private int slotOf(int hash) {
+        return (hash * 0x9E3779B9) >>> shift;
+    }
+    
+    @Override
+    public MatchBuffer newBuffer(int locationLimit) {
+        return new MatchBuffer(words, locationLimit);
+    }
+    
+    @Override
+    public int size() {
+        return words.length;
+    }
+    
+    /**
+     * A few table lookups per byte, and a probe for the runs that pass the filter
+     */
+    @Override
+    public int costPerChar() {
+        return 1;
+    }
+    
+    @Override
+    public long estimatedSizeBytes() {
+        long bytes = 4L * slots.length + 8L * filter.length + 8L * wordBytes.length;
+        for (String word : words) {
+            bytes += 40 + 2L * word.length() + 16 + word.length();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,13 @@
+package com.textanalysis.bit.service.matcher;
+
+public enum MatcherEngine {
+    /** One {@code \b<word>\b} pattern per word, applied line by line */
+    REGEX,
+    /** Single case-folded Aho-Corasick automaton, one pass per chunk */
+    AHO_CORASICK,
+    /**
+     * Case-folded hash lookup of word runs, scanning UTF-8 bytes without decoding them;
+     * dictionaries with other than ASCII word characters fall back to AHO_CORASICK
+     */
+    BYTES
+}
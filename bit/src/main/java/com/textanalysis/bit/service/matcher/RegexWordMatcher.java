@@ -0,0 +1,90 @@
+package com.textanalysis.bit.service.matcher;
+
+import com.textanalysis.bit.model.internal.MatchBuffer;
+import com.textanalysis.bit.model.internal.TextChunk;
+
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reference matcher: one word-boundary regex per word, applied to every line.
+ * Patterns are compiled once when the matcher is built.
+ */
+public class RegexWordMatcher implements WordMatcher {
+    
+    private final String[] words;
+    private final Pattern[] patterns;
+    
+    public RegexWordMatcher(Set<String> wordsToFind) {
+        this.words = wordsToFind.toArray(new String[0]);
+        this.patterns = new Pattern[words.length];
+        for (int i = 0; i < words.length; i++) {
+            // Create case-insensitive word boundary pattern
+            patterns[i] = Pattern.compile("\\b" + Pattern.quote(words[i]) + "\\b", Pattern.CASE_INSENSITIVE);
+        }
+    }
+    
+    @Override
+    public void findMatches(TextChunk chunk, MatchBuffer buffer) {
+        CharSequence content = chunk.getContent();
+        
+        // One matcher per word, restricted to one line at a time; with opaque region bounds
+        // \b behaves at the line edges exactly as it would on a separate line string
+        Matcher[] matchers = new Matcher[patterns.length];
+        for (int i = 0; i < patterns.length; i++) {
+            matchers[i] = patterns[i].matcher(content);
+        }
+        
+        long globalCharOffset = chunk.getGlobalCharOffset();
+        int currentLineNumber = chunk.getStartLine();
+        int lineStart = 0;
+        int length = content.length();
+        
+        while (lineStart < length) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && content.charAt(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            
+            for (int i = 0; i < matchers.length; i++) {
+                Matcher matcher = matchers[i].region(lineStart, lineEnd);
+                
+                while (matcher.find()) {
+                    buffer.add(i, currentLineNumber, globalCharOffset + matcher.start());
+                }
+            }
+            
+            lineStart = lineEnd + 1; // +1 for newline character
+            currentLineNumber++;
+        }
+    }
+    
+    @Override
+    public MatchBuffer newBuffer(int locationLimit) {
+        return new MatchBuffer(words, locationLimit);
+    }
+    
+    @Override
+    public int size() {
+        return words.length;
+    }
+    
+    /**
+     * Every pattern scans every line
+     */
+    @Override
+    public int costPerChar() {
+        return words.length;
+    }
+    
+    @Override
+    public long estimatedSizeBytes() {
+        long bytes = 0;
+        for (String word : words) {
+            // Word string, quoted pattern source and the compiled node graph
+            bytes += 256 + 6L * word.length();
+        }
+        return bytes;
+    }
+}
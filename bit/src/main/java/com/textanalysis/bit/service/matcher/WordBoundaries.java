@@ -0,0 +1,84 @@
+package com.textanalysis.bit.service.matcher;
+
+/**
+ * Word boundary checks equivalent to {@code \b} in {@link java.util.regex.Pattern}
+ * (without UNICODE_CHARACTER_CLASS) when the pattern is applied to a single line.
+ */
+public final class WordBoundaries {
+    
+    private WordBoundaries() {
+    }
+    
+    /**
+     * Checks whether there is a word boundary at {@code index}, where the current line
+     * starts at {@code lineStart} and ends before the next '\n' or the end of the text
+     */
+    static boolean isBoundary(CharSequence text, int index, int lineStart) {
+        boolean left = index > lineStart && isWordBefore(text, index, lineStart);
+        boolean right = index < text.length() && text.charAt(index) != '\n' && isWordAt(text, index, lineStart);
+        return left != right;
+    }
+    
+    private static boolean isWordBefore(CharSequence text, int index, int lineStart) {
+        int ch = Character.codePointBefore(text, index);
+        return isWord(ch) || (Character.getType(ch) == Character.NON_SPACING_MARK
+            && hasBaseCharacter(text, index - 1, lineStart));
+    }
+    
+    /**
+     * Checks whether the code point at {@code index} counts as a word character for {@code \b}
+     */
+    public static boolean isWordAt(CharSequence text, int index, int lineStart) {
+        int ch = Character.codePointAt(text, index);
+        return isWord(ch) || (Character.getType(ch) == Character.NON_SPACING_MARK
+            && hasBaseCharacter(text, index, lineStart));
+    }
+    
+    private static boolean isWord(int ch) {
+        return ch == '_' || Character.isLetterOrDigit(ch);
+    }
+    
+    private static boolean hasBaseCharacter(CharSequence text, int index, int lineStart) {
+        for (int i = index; i >= lineStart; i--) {
+            int ch = Character.codePointAt(text, i);
+            if (Character.isLetterOrDigit(ch)) {
+                return true;
+            }
+            if (Character.getType(ch) != Character.NON_SPACING_MARK) {
+                return false;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Checks whether {@code \b<word>\b} can only ever match a whole maximal run of word
+     * characters, i.e. the word is non-empty and made of word characters only
+     */
+    public static boolean isSingleToken(String word) {
+        if (word.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i += Character.charCount(word.codePointAt(i))) {
+            if (!isWordAt(word, i, 0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * ASCII-only lower-casing, matching Pattern.CASE_INSENSITIVE without UNICODE_CASE
+     */
+    public static char foldCase(char c) {
+        return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+    }
+    
+    public static String foldCase(CharSequence text) {
+        StringBuilder folded = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            folded.append(foldCase(text.charAt(i)));
+        }
+        return folded.toString();
+    }
+}
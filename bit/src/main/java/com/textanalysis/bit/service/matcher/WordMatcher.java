@@ -0,0 +1,45 @@
+package com.textanalysis.bit.service.matcher;
+
+import com.textanalysis.bit.model.internal.MatchBuffer;
+import com.textanalysis.bit.model.internal.TextChunk;
+
+/**
+ * A dictionary of words compiled once per request and then applied to every chunk.
+ * Implementations must be thread-safe, since chunks are matched concurrently.
+ */
+public interface WordMatcher {
+    
+    /**
+     * Finds all whole-word, case-insensitive occurrences of the dictionary words in the chunk
+     * and records them in the buffer. For each word, occurrences are added in offset order.
+     */
+    void findMatches(TextChunk chunk, MatchBuffer buffer);
+    
+    /**
+     * Creates an empty buffer indexed by this matcher's word ids
+     */
+    default MatchBuffer newBuffer() {
+        return newBuffer(Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Creates an empty buffer that keeps at most this many locations per word and only
+     * counts the rest
+     */
+    MatchBuffer newBuffer(int locationLimit);
+    
+    /**
+     * Number of words in the compiled dictionary
+     */
+    int size();
+    
+    /**
+     * Relative matching work per text character, used to size parallel work units
+     */
+    int costPerChar();
+    
+    /**
+     * Rough heap footprint of the compiled dictionary, used to bound the matcher cache
+     */
+    long estimatedSizeBytes();
+}
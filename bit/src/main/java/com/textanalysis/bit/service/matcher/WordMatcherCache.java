@@ -0,0 +1,129 @@
+package com.textanalysis.bit.service.matcher;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of compiled matchers. Entries are limited both by count and by their
+ * estimated size, and expire after a fixed time-to-live. Concurrent misses for the same key
+ * share a single compilation.
+ */
+public class WordMatcherCache {
+    
+    private final int maxEntries;
+    private final long maxBytes;
+    private final long ttlMillis;
+    
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<WordMatcher>> pending = new ConcurrentHashMap<>();
+    private long currentBytes;
+    
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    
+    public WordMatcherCache(int maxEntries, long maxBytes, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttlMillis;
+    }
+    
+    public WordMatcher getOrCompile(String key, Supplier<WordMatcher> compiler) {
+        WordMatcher cached = get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+        
+        CompletableFuture<WordMatcher> created = new CompletableFuture<>();
+        CompletableFuture<WordMatcher> inProgress = pending.putIfAbsent(key, created);
+        if (inProgress != null) {
+            return inProgress.join();
+        }
+        
+        try {
+            WordMatcher matcher = compiler.get();
+            put(key, matcher);
+            created.complete(matcher);
+            return matcher;
+        } catch (RuntimeException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            pending.remove(key);
+        }
+    }
+    
+    private synchronized WordMatcher get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.createdAt > ttlMillis) {
+            remove(key, entry);
+            return null;
+        }
+        return entry.matcher;
+    }
+    
+    private synchronized void put(String key, WordMatcher matcher) {
+        long size = matcher.estimatedSizeBytes();
+        if (size > maxBytes) {
+            return;
+        }
+        
+        Entry previous = entries.put(key, new Entry(matcher, size, System.currentTimeMillis()));
+        if (previous != null) {
+            currentBytes -= previous.size;
+        }
+        currentBytes += size;
+        
+        // Evict least recently used entries until both limits hold
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || currentBytes > maxBytes) && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            if (eldest.getKey().equals(key)) {
+                continue;
+            }
+            currentBytes -= eldest.getValue().size;
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+    
+    private void remove(String key, Entry entry) {
+        entries.remove(key);
+        currentBytes -= entry.size;
+        evictions.incrementAndGet();
+    }
+    
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+    
+    // Statistics
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public long getEvictions() { return evictions.get(); }
+    public synchronized int getSize() { return entries.size(); }
+    public synchronized long getSizeBytes() { return currentBytes; }
+    
+    private static class Entry {
+        private final WordMatcher matcher;
+        private final long size;
+        private final long createdAt;
+        
+        Entry(WordMatcher matcher, long size, long createdAt) {
+            this.matcher = matcher;
+            this.size = size;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.textanalysis.bit.util;
+
+public class ConfigUtils {
+    
+    /**
+     * Parses a size such as "512", "64KB", "100MB" or "2GB" into bytes
+     */
+    public static long parseSize(String sizeStr) {
+        sizeStr = sizeStr.toUpperCase().trim();
+        long multiplier = 1;
+        
+        if (sizeStr.endsWith("KB")) {
+            multiplier = 1024;
+            sizeStr = sizeStr.substring(0, sizeStr.length() - 2);
+        } else if (sizeStr.endsWith("MB")) {
+            multiplier = 1024 * 1024;
+            sizeStr = sizeStr.substring(0, sizeStr.length() - 2);
+        } else if (sizeStr.endsWith("GB")) {
+            multiplier = 1024L * 1024 * 1024;
+            sizeStr = sizeStr.substring(0, sizeStr.length() - 2);
+        } else if (sizeStr.endsWith("B")) {
+            sizeStr = sizeStr.substring(0, sizeStr.length() - 1);
+        }
+        
+        return Long.parseLong(sizeStr.trim()) * multiplier;
+    }
+    
+    /**
+     * Parses a duration such as "250ms", "300s", "30m" or "2h" into milliseconds;
+     * a bare number is taken as seconds
+     */
+    public static long parseDurationMillis(String durationStr) {
+        durationStr = durationStr.toLowerCase().trim();
+        long multiplier = 1000;
+        
+        if (durationStr.endsWith("ms")) {
+            multiplier = 1;
+            durationStr = durationStr.substring(0, durationStr.length() - 2);
+        } else if (durationStr.endsWith("s")) {
+            durationStr = durationStr.substring(0, durationStr.length() - 1);
+        } else if (durationStr.endsWith("m")) {
+            multiplier = 60 * 1000;
+            durationStr = durationStr.substring(0, durationStr.length() - 1);
+        } else if (durationStr.endsWith("h")) {
+            multiplier = 60 * 60 * 1000;
+            durationStr = durationStr.substring(0, durationStr.length() - 1);
+        }
+        
+        return Long.parseLong(durationStr.trim()) * multiplier;
+    }
+}
@@ -0,0 +1,88 @@
+package com.textanalysis.bit.controller.encoding;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.textanalysis.bit.model.dto.TextAnalysisResponse;
+import com.textanalysis.bit.model.dto.WordLocation;
+import com.textanalysis.bit.model.dto.WordMatch;
+import com.textanalysis.bit.model.internal.PackedLocationList;
+import com.textanalysis.bit.service.AnalysisMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MatchesMessageConverterTest {
+    
+    private final AnalysisMetrics metrics = new AnalysisMetrics(new SimpleMeterRegistry());
+    
+    private final TextAnalysisResponse response = new TextAnalysisResponse(List.of(
+        new WordMatch("james", new PackedLocationList(new int[] {0, 0, 7}, new long[] {4, 300, 5_000_000_000L}, 3)),
+        new WordMatch("mary", List.of(new WordLocation(2, 40)), 5)
+    ), "SUCCESS", 12);
+    
+    @Test
+    void columnarJsonHoldsDeltaEncodedOffsets() throws IOException {
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+        new ColumnarJsonMessageConverter(new ObjectMapper(), metrics)
+            .write(response, ColumnarJsonMessageConverter.MEDIA_TYPE, message);
+        
+        JsonNode json = new ObjectMapper().readTree(message.getBodyAsString(StandardCharsets.UTF_8));
+        JsonNode james = json.get("matches").get(0);
+        assertThat(json.get("status").asText()).isEqualTo("SUCCESS");
+        assertThat(james.get("count").asInt()).isEqualTo(3);
+        assertThat(james.get("lineOffsets").toString()).isEqualTo("[0,0,7]");
+        assertThat(james.get("charOffsets").toString()).isEqualTo("[4,296,4999999700]");
+        assertThat(json.get("matches").get(1).get("charOffsets").toString()).isEqualTo("[40]");
+        assertThat(json.get("matches").get(1).get("count").asInt()).isEqualTo(5);
+    }
+    
+    @Test
+    void binaryLayoutDecodesToTheSameMatches() throws IOException {
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+        new BinaryMatchesMessageConverter(metrics).write(response, BinaryMatchesMessageConverter.MEDIA_TYPE, message);
+        
+        ByteArrayInputStream in = new ByteArrayInputStream(message.getBodyAsBytes());
+        assertThat(in.readNBytes(4)).isEqualTo(BinaryMatchesMessageConverter.MAGIC);
+        assertThat(readString(in)).isEqualTo("SUCCESS");
+        assertThat(readVarint(in)).isEqualTo(12);
+        
+        StringBuilder decoded = new StringBuilder();
+        long words = readVarint(in);
+        for (int w = 0; w < words; w++) {
+            decoded.append(readString(in)).append('/').append(readVarint(in));
+            long locations = readVarint(in);
+            long line = 0;
+            long offset = 0;
+            for (int i = 0; i < locations; i++) {
+                line += readVarint(in);
+                offset += readVarint(in);
+                decoded.append(' ').append(line).append(':').append(offset);
+            }
+            decoded.append(';');
+        }
+        assertThat(decoded.toString()).isEqualTo("james/3 0:4 0:300 7:5000000000;mary/5 2:40;");
+        assertThat(in.available()).isZero();
+    }
+    
+    private static String readString(ByteArrayInputStream in) throws IOException {
+        return new String(in.readNBytes((int) readVarint(in)), StandardCharsets.UTF_8);
+    }
+    
+    private static long readVarint(ByteArrayInputStream in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.read();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
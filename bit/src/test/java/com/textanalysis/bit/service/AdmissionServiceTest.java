@@ -0,0 +1,89 @@
+package com.textanalysis.bit.service;
+
+import com.textanalysis.bit.config.AppConfig;
+import com.textanalysis.bit.exception.AdmissionRejectedException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdmissionServiceTest {
+    
+    @TempDir
+    Path root;
+    
+    @Test
+    void queuedSmallRequestsAreAdmittedBeforeLargeOnes() throws Exception {
+        String small = file("small.txt", 10);
+        String large = file("large.txt", 100_000);
+        AppConfig appConfig = appConfig();
+        appConfig.setMaxConcurrentAnalyses(1);
+        AdmissionService admission = newAdmissionService(appConfig);
+        
+        List<String> admitted = new CopyOnWriteArrayList<>();
+        AdmissionService.Permit running = admission.admit(small);
+        Thread largeRequest = waitInQueue(admission, large, "large", admitted, 1);
+        Thread smallRequest = waitInQueue(admission, small, "small", admitted, 2);
+        
+        running.close();
+        largeRequest.join(5000);
+        smallRequest.join(5000);
+        
+        assertThat(admitted).containsExactly("small", "large");
+        assertThat(admission.getActiveCount()).isZero();
+        assertThat(admission.getInFlightBytes()).isZero();
+    }
+    
+    @Test
+    void rejectsWithRetryAfterWhenQueueIsFull() throws Exception {
+        String small = file("small.txt", 10);
+        AppConfig appConfig = appConfig();
+        appConfig.setMaxConcurrentAnalyses(1);
+        appConfig.setMaxQueuedRequests(0);
+        AdmissionService admission = newAdmissionService(appConfig);
+        
+        try (AdmissionService.Permit running = admission.admit(small)) {
+            assertThatThrownBy(() -> admission.admit(small))
+                .isInstanceOf(AdmissionRejectedException.class)
+                .satisfies(e -> assertThat(((AdmissionRejectedException) e).getRetryAfterSeconds()).isPositive());
+        }
+        admission.admit(small).close();
+    }
+    
+    private Thread waitInQueue(AdmissionService admission, String url, String name, List<String> admitted,
+                               int expectedQueued) throws InterruptedException {
+        Thread thread = new Thread(() -> {
+            try (AdmissionService.Permit permit = admission.admit(url)) {
+                admitted.add(name);
+            }
+        });
+        thread.start();
+        while (admission.getQueuedCount() < expectedQueued) {
+            Thread.sleep(5);
+        }
+        return thread;
+    }
+    
+    private AppConfig appConfig() {
+        AppConfig appConfig = new AppConfig();
+        appConfig.setLocalRoots(List.of(root.toString()));
+        appConfig.setDocumentCacheEnabled(false);
+        return appConfig;
+    }
+    
+    private static AdmissionService newAdmissionService(AppConfig appConfig) {
+        return new AdmissionService(appConfig, new DocumentCacheService(appConfig), new LocalFileReaderService(appConfig));
+    }
+    
+    private String file(String name, int size) throws Exception {
+        Path file = root.resolve(name);
+        Files.write(file, new byte[size]);
+        return file.toUri().toString();
+    }
+}
@@ -0,0 +1,52 @@
+package com.textanalysis.bit.service;
+
+import com.textanalysis.bit.config.AppConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Hand-wires a TextAnalysisService without a Spring context, matching on the common pool.
+ * Collaborators a test wants to inspect or control are passed in; the rest are created
+ * from the AppConfig.
+ */
+final class AnalysisServiceFixture {
+    
+    private final AppConfig appConfig;
+    private MatcherService matcherService;
+    private IncrementalStateService incrementalState;
+    private AdmissionService admission;
+    
+    AnalysisServiceFixture(AppConfig appConfig) {
+        this.appConfig = appConfig;
+    }
+    
+    AnalysisServiceFixture matcherService(MatcherService matcherService) {
+        this.matcherService = matcherService;
+        return this;
+    }
+    
+    AnalysisServiceFixture incrementalState(IncrementalStateService incrementalState) {
+        this.incrementalState = incrementalState;
+        return this;
+    }
+    
+    AnalysisServiceFixture admission(AdmissionService admission) {
+        this.admission = admission;
+        return this;
+    }
+    
+    TextAnalysisService build() {
+        DocumentCacheService documentCache = new DocumentCacheService(appConfig);
+        LocalFileReaderService localFileReader = new LocalFileReaderService(appConfig);
+        TextReaderService textReader = new TextReaderService(appConfig, documentCache, localFileReader);
+        return new TextAnalysisService(textReader,
+            matcherService != null ? matcherService : new MatcherService(appConfig),
+            new AggregatorService(appConfig),
+            new DocumentIndexService(appConfig, textReader, documentCache),
+            incrementalState != null ? incrementalState : new IncrementalStateService(appConfig),
+            admission != null ? admission : new AdmissionService(appConfig, documentCache, localFileReader),
+            new AnalysisMetrics(new SimpleMeterRegistry()),
+            ForkJoinPool.commonPool(), appConfig);
+    }
+}
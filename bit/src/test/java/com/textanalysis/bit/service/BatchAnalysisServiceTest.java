@@ -0,0 +1,136 @@
+package com.textanalysis.bit.service;
+
+import com.textanalysis.bit.config.AppConfig;
+import com.textanalysis.bit.model.dto.AnalysisSummary;
+import com.textanalysis.bit.model.dto.BatchAnalysisRequest;
+import com.textanalysis.bit.model.dto.BatchDocumentResult;
+import com.textanalysis.bit.model.dto.TextAnalysisRequest;
+import com.textanalysis.bit.service.matcher.WordMatcherCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchAnalysisServiceTest {
+    
+    @TempDir
+    Path root;
+    
+    @Test
+    void reportsEveryDocumentAndCompilesWordsOnce() throws Exception {
+        List<String> urls = new ArrayList<>();
+        for (int doc = 0; doc < 3; doc++) {
+            Path file = root.resolve("doc" + doc + ".txt");
+            Files.writeString(file, "James met John\n".repeat(doc + 1) + "Mary\n");
+            urls.add(file.toUri().toString());
+        }
+        urls.add(root.resolve("missing.txt").toUri().toString());
+        
+        AppConfig appConfig = newConfig();
+        MatcherService matcherService = new MatcherService(appConfig);
+        TextAnalysisService analysis = new AnalysisServiceFixture(appConfig).matcherService(matcherService).build();
+        BatchAnalysisService batchService = new BatchAnalysisService(analysis, matcherService,
+            Executors.newFixedThreadPool(2), appConfig);
+        
+        List<BatchDocumentResult> results = new ArrayList<>();
+        AnalysisSummary summary = batchService.analyze(
+            new BatchAnalysisRequest(urls, List.of("james", "mary")), results::add);
+        
+        results.sort(Comparator.comparingInt(BatchDocumentResult::getIndex));
+        assertThat(results).extracting(BatchDocumentResult::getStatus)
+            .containsExactly("SUCCESS", "SUCCESS", "SUCCESS", "ERROR");
+        for (int doc = 0; doc < 3; doc++) {
+            assertThat(results.get(doc).getMatches()).usingRecursiveComparison()
+                .isEqualTo(analysis.analyzeText(new TextAnalysisRequest(urls.get(doc), List.of("james", "mary"))).getMatches());
+        }
+        assertThat(results.get(3).getMessage()).isNotBlank();
+        assertThat(summary.getStatus()).isEqualTo("PARTIAL_FAILURE");
+        assertThat(summary.getTotalMatches()).isEqualTo(1 + 2 + 3 + 3);
+        
+        WordMatcherCache cache = matcherService.getMatcherCache();
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+    
+    @Test
+    void submitsAtMostTheWindowAheadOfTheSink() throws Exception {
+        List<String> urls = documents(20);
+        AppConfig appConfig = newConfig();
+        appConfig.setBatchMaxConcurrentDocuments(3);
+        MatcherService matcherService = new MatcherService(appConfig);
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        AtomicInteger submitted = new AtomicInteger();
+        BatchAnalysisService batchService = new BatchAnalysisService(
+            new AnalysisServiceFixture(appConfig).matcherService(matcherService).build(), matcherService,
+            task -> {
+                submitted.incrementAndGet();
+                pool.execute(task);
+            }, appConfig);
+        
+        List<BatchDocumentResult> results = new ArrayList<>();
+        AtomicInteger mostAhead = new AtomicInteger();
+        AnalysisSummary summary = batchService.analyze(new BatchAnalysisRequest(urls, List.of("james")), result -> {
+            mostAhead.accumulateAndGet(submitted.get() - results.size(), Math::max);
+            results.add(result);
+        });
+        pool.shutdown();
+        
+        assertThat(summary.getStatus()).isEqualTo("SUCCESS");
+        assertThat(results).hasSize(20);
+        assertThat(submitted.get()).isEqualTo(20);
+        assertThat(mostAhead.get()).isBetween(1, 3);
+    }
+    
+    @Test
+    void failsRemainingDocumentsAfterBatchTimeout() throws Exception {
+        List<String> urls = documents(10);
+        AppConfig appConfig = newConfig();
+        appConfig.setBatchMaxConcurrentDocuments(1);
+        appConfig.setBatchTimeout("200ms");
+        MatcherService matcherService = new MatcherService(appConfig);
+        BatchAnalysisService batchService = new BatchAnalysisService(
+            new AnalysisServiceFixture(appConfig).matcherService(matcherService).build(), matcherService,
+            Executors.newFixedThreadPool(1), appConfig);
+        
+        List<BatchDocumentResult> results = new ArrayList<>();
+        AnalysisSummary summary = batchService.analyze(new BatchAnalysisRequest(urls, List.of("james")), result -> {
+            results.add(result);
+            try {
+                // A slow client: the batch runs out of time before all documents are submitted
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        
+        assertThat(results).hasSize(10);
+        assertThat(results.get(0).getStatus()).isEqualTo("SUCCESS");
+        assertThat(results.get(9).getStatus()).isEqualTo("ERROR");
+        assertThat(results.get(9).getMessage()).contains("batch-timeout");
+        assertThat(summary.getStatus()).isEqualTo("PARTIAL_FAILURE");
+    }
+    
+    private List<String> documents(int count) throws Exception {
+        List<String> urls = new ArrayList<>();
+        for (int doc = 0; doc < count; doc++) {
+            urls.add(Files.writeString(root.resolve("small" + doc + ".txt"), "James\n").toUri().toString());
+        }
+        return urls;
+    }
+    
+    private AppConfig newConfig() {
+        AppConfig appConfig = new AppConfig();
+        appConfig.setLocalRoots(List.of(root.toString()));
+        appConfig.setDocumentCacheEnabled(false);
+        appConfig.setIndexingEnabled(false);
+        return appConfig;
+    }
+}
@@ -0,0 +1,64 @@
+package com.textanalysis.bit.service;
+
+import com.textanalysis.bit.config.AppConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DocumentIndexServiceTest {
+    
+    @TempDir
+    Path root;
+    
+    @Test
+    void indexFilesGoWithTheirCachedDocuments() throws Exception {
+        AppConfig appConfig = new AppConfig();
+        appConfig.setDocumentCacheDir(root.resolve("cache").toString());
+        appConfig.setDocumentCacheMaxDiskSize("100B");
+        appConfig.setIndexingEnabled(true);
+        appConfig.setIndexDir(root.resolve("index").toString());
+        Path indexDir = root.resolve("index");
+        Files.createDirectories(indexDir);
+        Files.writeString(indexDir.resolve("0123abcd.idx"), "left by an evicted document");
+        Files.writeString(indexDir.resolve("index-1.tmp"), "left by an unfinished build");
+        
+        DocumentCacheService documentCache = new DocumentCacheService(appConfig);
+        TextReaderService textReader = new TextReaderService(appConfig, documentCache, new LocalFileReaderService(appConfig));
+        DocumentIndexService indexService = new DocumentIndexService(appConfig, textReader, documentCache);
+        assertThat(indexDir).isEmptyDirectory();
+        
+        cache(documentCache, "http://example.com/a", "James met John\n".repeat(4));
+        String hash = documentCache.lookup("http://example.com/a").getContentHash();
+        indexService.scheduleBuild("http://example.com/a");
+        Path indexFile = indexDir.resolve(hash + ".idx");
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!Files.exists(indexFile) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(indexFile).exists();
+        
+        // Caching another document pushes the first one out of the 100 byte cache
+        cache(documentCache, "http://example.com/b", "Mary met Ann\n".repeat(5));
+        assertThat(documentCache.lookup("http://example.com/a")).isNull();
+        assertThat(indexFile).doesNotExist();
+        assertThat(indexService.findMatches("http://example.com/a", List.of("james"))).isNull();
+    }
+    
+    private static void cache(DocumentCacheService documentCache, String url, String text) throws IOException {
+        InputStream body = documentCache.cacheWhileReading(url, "\"v1\"", null, "UTF-8",
+            new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+        try (body) {
+            body.readAllBytes();
+            ((DocumentCacheService.CachingInputStream) body).commit();
+        }
+    }
+}
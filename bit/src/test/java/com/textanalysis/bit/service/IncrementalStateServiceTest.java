@@ -0,0 +1,121 @@
+package com.textanalysis.bit.service;
+
+import com.textanalysis.bit.config.AppConfig;
+import com.textanalysis.bit.model.dto.TextAnalysisRequest;
+import com.textanalysis.bit.model.dto.WordLocation;
+import com.textanalysis.bit.model.dto.WordMatch;
+import com.textanalysis.bit.model.internal.PackedLocationList;
+import com.textanalysis.bit.model.internal.ResultLimits;
+import com.textanalysis.bit.model.internal.TailPosition;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IncrementalStateServiceTest {
+    
+    @TempDir
+    Path root;
+    
+    @Test
+    void incrementalAnalysisOfGrowingFileMatchesFullScan() throws Exception {
+        Path file = root.resolve("growing.log");
+        Files.writeString(file, "");
+        AppConfig appConfig = new AppConfig();
+        appConfig.setLocalRoots(List.of(root.toString()));
+        appConfig.setDocumentCacheEnabled(false);
+        appConfig.setIndexingEnabled(false);
+        appConfig.setChunkBytes("1KB");
+        IncrementalStateService incrementalState = new IncrementalStateService(appConfig);
+        TextAnalysisService analysis = new AnalysisServiceFixture(appConfig).incrementalState(incrementalState).build();
+        
+        List<String> words = List.of("James", "mary", "café");
+        TextAnalysisRequest full = new TextAnalysisRequest(file.toUri().toString(), words);
+        TextAnalysisRequest incremental = new TextAnalysisRequest(file.toUri().toString(), words);
+        incremental.setIncremental(true);
+        TextAnalysisRequest fullLimited = new TextAnalysisRequest(file.toUri().toString(), words);
+        fullLimited.setMaxLocationsPerWord(3);
+        fullLimited.setTopWords(2);
+        TextAnalysisRequest incrementalLimited = new TextAnalysisRequest(file.toUri().toString(), words);
+        incrementalLimited.setMaxLocationsPerWord(3);
+        incrementalLimited.setTopWords(2);
+        incrementalLimited.setIncremental(true);
+        
+        // Appends cut lines, "\r\n" pairs and multi-byte characters anywhere
+        Random random = new Random(11);
+        String[] pieces = {"james ", "Mary", "café ", "\n", "\r\n", "\r", "naïve ", "x"};
+        for (int round = 0; round < 20; round++) {
+            StringBuilder appended = new StringBuilder();
+            for (int i = random.nextInt(400); i > 0; i--) {
+                appended.append(pieces[random.nextInt(pieces.length)]);
+            }
+            Files.writeString(file, appended, StandardOpenOption.APPEND);
+            
+            assertThat(analysis.analyzeText(incremental).getMatches()).usingRecursiveComparison()
+                .isEqualTo(analysis.analyzeText(full).getMatches());
+            assertThat(analysis.analyzeText(incrementalLimited).getMatches()).usingRecursiveComparison()
+                .isEqualTo(analysis.analyzeText(fullLimited).getMatches());
+        }
+        assertThat(incrementalState.lookup(file.toUri().toString(), List.of("CAFÉ", "james", "Mary"), ResultLimits.NONE)
+            .getPosition().getByteOffset()).isPositive();
+        
+        // Replaced rather than appended to: starts over
+        Files.writeString(file, "Mary and James\nJames\n");
+        assertThat(analysis.analyzeText(incremental).getMatches()).usingRecursiveComparison()
+            .isEqualTo(analysis.analyzeText(full).getMatches());
+        assertThat(incrementalState.lookup(file.toUri().toString(), words, ResultLimits.NONE).getPosition().getLine()).isEqualTo(2);
+    }
+    
+    @Test
+    void mergeAppendsLocationsOfEachWord() {
+        List<WordMatch> merged = List.of(new WordMatch("james", packed(0)), new WordMatch("mary", packed(1)));
+        for (int part = 1; part <= 40; part++) {
+            List<WordMatch> later = List.of(
+                new WordMatch("james", packed(part * 10, part * 10 + 1)), new WordMatch("john", packed(part)));
+            merged = IncrementalStateService.merge(merged, later, Integer.MAX_VALUE);
+        }
+        
+        assertThat(merged).extracting(WordMatch::getWord).containsExactly("james", "john", "mary");
+        List<WordLocation> james = merged.get(0).getLocations();
+        assertThat(james).hasSize(81);
+        for (int part = 1; part <= 40; part++) {
+            assertThat(james.get(2 * part - 1).getLineOffset()).isEqualTo(part * 10);
+            assertThat(james.get(2 * part).getCharOffset()).isEqualTo(part * 100L + 10);
+        }
+        assertThat(merged.get(1).getLocations()).hasSize(40);
+    }
+    
+    @Test
+    void keepsStatesWithinMemoryLimit() {
+        AppConfig appConfig = new AppConfig();
+        appConfig.setIncrementalMaxMemory((3 * PackedLocationList.RECORD_BYTES) + "B");
+        IncrementalStateService incrementalState = new IncrementalStateService(appConfig);
+        TailPosition position = new TailPosition(10, 1, 10, new byte[0]);
+        
+        incrementalState.store("file:///a", List.of("x"), ResultLimits.NONE, position, List.of(new WordMatch("x", packed(1, 2))));
+        incrementalState.store("file:///b", List.of("x"), ResultLimits.NONE, position, List.of(new WordMatch("x", packed(1))));
+        assertThat(incrementalState.getSize()).isEqualTo(2);
+        
+        incrementalState.store("file:///c", List.of("x"), ResultLimits.NONE, position, List.of(new WordMatch("x", packed(1))));
+        assertThat(incrementalState.lookup("file:///a", List.of("x"), ResultLimits.NONE)).isNull();
+        assertThat(incrementalState.lookup("file:///c", List.of("x"), ResultLimits.NONE)).isNotNull();
+        
+        // A state that got further is not replaced by an older one
+        incrementalState.store("file:///c", List.of("x"), ResultLimits.NONE, TailPosition.START, List.of());
+        assertThat(incrementalState.lookup("file:///c", List.of("x"), ResultLimits.NONE).getPosition()).isSameAs(position);
+    }
+    
+    private static PackedLocationList packed(int... lines) {
+        long[] offsets = new long[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            offsets[i] = lines[i] * 10L;
+        }
+        return new PackedLocationList(lines, offsets, lines.length);
+    }
+}
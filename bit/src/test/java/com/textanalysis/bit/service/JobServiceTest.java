@@ -0,0 +1,96 @@
+package com.textanalysis.bit.service;
+
+import com.textanalysis.bit.config.AppConfig;
+import com.textanalysis.bit.exception.JobNotFoundException;
+import com.textanalysis.bit.model.dto.TextAnalysisRequest;
+import com.textanalysis.bit.model.dto.WordMatch;
+import com.textanalysis.bit.model.internal.AnalysisJob;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JobServiceTest {
+    
+    @TempDir
+    Path root;
+    
+    @Test
+    void spilledJobResultsMatchSynchronousAnalysis() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append("line ").append(i).append(i % 3 == 0 ? " James met John\n" : " Mary\n");
+        }
+        Path file = root.resolve("corpus.txt");
+        Files.writeString(file, text);
+        
+        AppConfig appConfig = new AppConfig();
+        appConfig.setLocalRoots(List.of(root.toString()));
+        appConfig.setDocumentCacheEnabled(false);
+        appConfig.setJobResultsMaxMemory("1KB");
+        appConfig.setJobDir(root.resolve("jobs").toString());
+        TextAnalysisService analysis = new AnalysisServiceFixture(appConfig).build();
+        JobService jobService = new JobService(analysis, Executors.newSingleThreadExecutor(), appConfig);
+        
+        TextAnalysisRequest request = new TextAnalysisRequest();
+        request.setTextUrl(file.toUri().toString());
+        request.setWords(List.of("James", "john", "mary"));
+        AnalysisJob job = jobService.submit(request);
+        awaitUntil(() -> job.getState().isFinished());
+        
+        assertThat(job.getState()).isEqualTo(AnalysisJob.State.SUCCEEDED);
+        assertThat(job.getProgress().getMatchesFound()).isEqualTo(1333 + 2 * 667);
+        assertThat(job.getProgress().getBytesRead()).isEqualTo(Files.size(file));
+        assertThat(job.getResultFile()).exists();
+        List<WordMatch> expected = analysis.analyzeText(request).getMatches();
+        assertThat(jobService.getResults(job.getId())).usingRecursiveComparison().isEqualTo(expected);
+        
+        jobService.cancel(job.getId());
+        assertThat(job.getResultFile()).doesNotExist();
+        assertThatThrownBy(() -> jobService.getJob(job.getId())).isInstanceOf(JobNotFoundException.class);
+    }
+    
+    @Test
+    void jobsWaitForAdmissionPastMaxQueueWait() throws Exception {
+        Path file = Files.writeString(root.resolve("small.txt"), "James\n");
+        AppConfig appConfig = new AppConfig();
+        appConfig.setLocalRoots(List.of(root.toString()));
+        appConfig.setDocumentCacheEnabled(false);
+        appConfig.setMaxConcurrentAnalyses(1);
+        appConfig.setMaxQueueWait("10ms");
+        AdmissionService admission = new AdmissionService(appConfig, new DocumentCacheService(appConfig),
+            new LocalFileReaderService(appConfig));
+        JobService jobService = new JobService(new AnalysisServiceFixture(appConfig).admission(admission).build(),
+            Executors.newSingleThreadExecutor(), appConfig);
+        
+        TextAnalysisRequest request = new TextAnalysisRequest(file.toUri().toString(), List.of("james"));
+        AdmissionService.Permit busy = admission.admit(file.toUri().toString());
+        AnalysisJob job = jobService.submit(request);
+        try (busy) {
+            awaitUntil(() -> admission.getQueuedCount() > 0);
+            Thread.sleep(100);
+            assertThat(job.getState()).isEqualTo(AnalysisJob.State.QUEUED);
+        }
+        
+        awaitUntil(() -> job.getState().isFinished());
+        assertThat(job.getState()).isEqualTo(AnalysisJob.State.SUCCEEDED);
+        assertThat(job.getResults()).hasSize(1);
+    }
+    
+    /**
+     * Polls until the condition holds, for at most ten seconds
+     */
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+}
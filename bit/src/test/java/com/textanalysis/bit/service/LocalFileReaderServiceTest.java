@@ -0,0 +1,121 @@
+package com.textanalysis.bit.service;
+
+import com.textanalysis.bit.config.AppConfig;
+import com.textanalysis.bit.exception.InvalidUrlException;
+import com.textanalysis.bit.model.dto.WordMatch;
+import com.textanalysis.bit.model.internal.TextChunk;
+import com.textanalysis.bit.service.matcher.WordMatcher;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LocalFileReaderServiceTest {
+    
+    @TempDir
+    Path root;
+    
+    @Test
+    void mappedChunksMatchLineReaderChunks() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 400; i++) {
+            text.append("line ").append(i).append(" James and john");
+            text.append(i % 7 == 0 ? " café James\r\n" : i % 11 == 0 ? "\r" : "\n");
+        }
+        text.append("last James without newline");
+        Path file = root.resolve("corpus.txt");
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+        
+        AppConfig appConfig = new AppConfig();
+        appConfig.setLocalRoots(List.of(root.toString()));
+        appConfig.setChunkBytes("1KB");
+        appConfig.setDocumentCacheEnabled(false);
+        LocalFileReaderService localReader = new LocalFileReaderService(appConfig);
+        TextReaderService reader = new TextReaderService(appConfig, new DocumentCacheService(appConfig), localReader);
+        
+        List<TextChunk> mapped = new ArrayList<>();
+        localReader.readTextInChunks(file.toUri().toString(), mapped::add);
+        List<TextChunk> lines = new ArrayList<>();
+        reader.processTextInChunks(new BufferedReader(new StringReader(text.toString())), lines::add);
+        
+        assertThat(mapped.size()).isGreaterThan(1);
+        assertThat(String.join("", mapped.stream().map(TextChunk::getContent).toList()))
+            .isEqualTo(String.join("", lines.stream().map(TextChunk::getContent).toList()));
+        
+        MatcherService matcherService = new MatcherService(appConfig);
+        AggregatorService aggregatorService = new AggregatorService(new AppConfig());
+        WordMatcher matcher = matcherService.getMatcher(Set.of("james", "john", "café"));
+        List<WordMatch> fromMapped = aggregatorService.aggregateResults(
+            mapped.stream().map(chunk -> matcherService.findMatches(chunk, matcher)).toList());
+        List<WordMatch> fromLines = aggregatorService.aggregateResults(
+            lines.stream().map(chunk -> matcherService.findMatches(chunk, matcher)).toList());
+        
+        assertThat(fromMapped).hasSize(3);
+        assertThat(fromMapped).usingRecursiveComparison().isEqualTo(fromLines);
+    }
+    
+    @Test
+    void cutsLongLinesAndCarriageReturnOnlyLines() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 60; i++) {
+            text.append("line ").append(i).append(" James café\r");
+            if (i % 10 == 0) {
+                text.append("naïve james ".repeat(30)).append("\r\n");
+            }
+            if (i % 25 == 0) {
+                text.append("é".repeat(150)).append("x".repeat(77)).append('\r');
+            }
+        }
+        Path file = root.resolve("mac.txt");
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+        
+        AppConfig appConfig = new AppConfig();
+        appConfig.setLocalRoots(List.of(root.toString()));
+        appConfig.setChunkBytes("64B");
+        appConfig.setMaxLocalLineBytes("100B");
+        appConfig.setDocumentCacheEnabled(false);
+        LocalFileReaderService localReader = new LocalFileReaderService(appConfig);
+        TextReaderService reader = new TextReaderService(appConfig, new DocumentCacheService(appConfig), localReader);
+        
+        List<TextChunk> mapped = new ArrayList<>();
+        localReader.readTextInChunks(file.toUri().toString(), mapped::add);
+        List<TextChunk> lines = new ArrayList<>();
+        reader.processTextInChunks(new BufferedReader(new StringReader(text.toString())), lines::add);
+        
+        assertThat(String.join("", mapped.stream().map(TextChunk::getContent).toList()))
+            .isEqualTo(String.join("", lines.stream().map(TextChunk::getContent).toList()));
+        assertThat(mapped).anyMatch(chunk -> chunk.getContent().charAt(chunk.getContent().length() - 1) != '\n');
+        for (int i = 1; i < mapped.size(); i++) {
+            TextChunk previous = mapped.get(i - 1);
+            boolean endsLine = previous.getContent().charAt(previous.getContent().length() - 1) == '\n';
+            assertThat(mapped.get(i).getStartLine()).isEqualTo(endsLine ? previous.getEndLine() + 1 : previous.getEndLine());
+        }
+        assertThat(mapped.get(mapped.size() - 1).getEndLine()).isEqualTo(lines.get(lines.size() - 1).getEndLine());
+        
+        MatcherService matcherService = new MatcherService(appConfig);
+        AggregatorService aggregatorService = new AggregatorService(new AppConfig());
+        WordMatcher matcher = matcherService.getMatcher(Set.of("james", "café", "naïve"));
+        assertThat(aggregatorService.aggregateResults(mapped.stream().map(chunk -> matcherService.findMatches(chunk, matcher)).toList()))
+            .usingRecursiveComparison()
+            .isEqualTo(aggregatorService.aggregateResults(lines.stream().map(chunk -> matcherService.findMatches(chunk, matcher)).toList()));
+    }
+    
+    @Test
+    void rejectsFilesOutsideLocalRoots() throws Exception {
+        Path file = Files.writeString(root.resolve("secret.txt"), "James\n");
+        LocalFileReaderService localReader = new LocalFileReaderService(new AppConfig());
+        
+        assertThatThrownBy(() -> localReader.readTextInChunks(file.toUri().toString(), chunk -> { }))
+            .isInstanceOf(InvalidUrlException.class);
+    }
+}
@@ -0,0 +1,111 @@
+package com.textanalysis.bit.service;
+
+import com.textanalysis.bit.model.dto.WordLocation;
+import com.textanalysis.bit.model.dto.WordMatch;
+import com.textanalysis.bit.model.internal.MatchBuffer;
+import com.textanalysis.bit.model.internal.ResultLimits;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MatchCollectorTest {
+    
+    @TempDir
+    Path spillDir;
+    
+    @Test
+    void spilledResultsEqualHeapResults() throws Exception {
+        List<MatchBuffer> buffers = new ArrayList<>();
+        for (int chunk = 0; chunk < 50; chunk++) {
+            MatchBuffer buffer = new MatchBuffer(new String[] {"james", "John", "john"});
+            for (int hit = 0; hit < 40; hit++) {
+                long offset = 3_000_000_000L + chunk * 1_000L + hit * 10L;
+                buffer.add(hit % 3, chunk * 100 + hit, offset);
+            }
+            buffers.add(buffer);
+        }
+        
+        List<WordMatch> onHeap = collect(buffers, Long.MAX_VALUE);
+        List<WordMatch> spilled;
+        try (MatchCollector collector = new MatchCollector(1024, spillDir, ResultLimits.NONE)) {
+            buffers.forEach(collector::add);
+            spilled = collector.finish();
+            
+            assertThat(render(spilled)).isEqualTo(render(onHeap));
+            assertThat(render(spilled).get(0)).contains("100:3000001000");
+        }
+        try (var files = Files.list(spillDir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+    
+    @Test
+    void caseVariantsMergeInOffsetOrderWithoutDuplicates() {
+        MatchBuffer first = new MatchBuffer(new String[] {"James", "JAMES", "james"});
+        first.add(0, 1, 10);
+        first.add(2, 1, 10);
+        first.add(1, 2, 25);
+        first.add(2, 3, 40);
+        MatchBuffer second = new MatchBuffer(new String[] {"James", "JAMES", "james"});
+        second.add(1, 4, 55);
+        second.add(0, 5, 70);
+        second.add(2, 5, 70);
+        second.add(2, 6, 90);
+        
+        List<WordMatch> matches = collect(List.of(first, second), Long.MAX_VALUE);
+        
+        assertThat(render(matches)).containsExactly("james 1:10 2:25 3:40 4:55 5:70 6:90");
+    }
+    
+    @Test
+    void limitsKeepFirstLocationsAndMostFrequentWords() {
+        List<MatchBuffer> buffers = new ArrayList<>();
+        for (int chunk = 0; chunk < 50; chunk++) {
+            MatchBuffer buffer = new MatchBuffer(new String[] {"james", "john", "mary"}, 5);
+            for (int hit = 0; hit < 40; hit++) {
+                buffer.add(hit % 4 == 0 ? 2 : hit % 2, chunk, chunk * 1_000L + hit);
+            }
+            buffers.add(buffer);
+        }
+        
+        List<WordMatch> matches;
+        try (MatchCollector collector = new MatchCollector(64, spillDir, new ResultLimits(5, 2))) {
+            buffers.forEach(collector::add);
+            matches = collector.finish();
+        }
+        
+        // Ties go to the alphabetically first word
+        assertThat(matches).extracting(WordMatch::getWord).containsExactly("john", "james");
+        assertThat(matches).extracting(WordMatch::getCount).containsExactly(1000L, 500L);
+        assertThat(render(matches)).containsExactly("john 0:1 0:3 0:5 0:7 0:9", "james 0:2 0:6 0:10 0:14 0:18");
+        
+        List<WordMatch> counts = new ResultLimits(0, Integer.MAX_VALUE).apply(collect(buffers, Long.MAX_VALUE));
+        assertThat(render(counts)).containsExactly("james", "john", "mary");
+        assertThat(counts).extracting(WordMatch::getCount).containsExactly(500L, 1000L, 500L);
+    }
+    
+    private static List<WordMatch> collect(List<MatchBuffer> buffers, long budget) {
+        try (MatchCollector collector = new MatchCollector(budget, null, ResultLimits.NONE)) {
+            buffers.forEach(collector::add);
+            return collector.finish();
+        }
+    }
+    
+    private static List<String> render(List<WordMatch> matches) {
+        List<String> rendered = new ArrayList<>();
+        for (WordMatch match : matches) {
+            StringBuilder sb = new StringBuilder(match.getWord());
+            for (WordLocation location : match.getLocations()) {
+                sb.append(' ').append(location.getLineOffset()).append(':').append(location.getCharOffset());
+            }
+            rendered.add(sb.toString());
+        }
+        return rendered;
+    }
+}
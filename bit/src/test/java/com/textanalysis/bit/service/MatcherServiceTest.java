@@ -0,0 +1,170 @@
+package com.textanalysis.bit.service;
+
+import com.textanalysis.bit.config.AppConfig;
+import com.textanalysis.bit.model.internal.Deadline;
+import com.textanalysis.bit.model.internal.MatchBuffer;
+import com.textanalysis.bit.model.internal.ResultLimits;
+import com.textanalysis.bit.model.internal.TextChunk;
+import com.textanalysis.bit.model.internal.Utf8ByteSequence;
+import com.textanalysis.bit.service.matcher.AhoCorasickWordMatcher;
+import com.textanalysis.bit.service.matcher.ByteWordMatcher;
+import com.textanalysis.bit.service.matcher.MatcherEngine;
+import com.textanalysis.bit.service.matcher.WordMatcher;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MatcherServiceTest {
+    
+    private final MatcherService matcherService = new MatcherService(new AppConfig());
+    
+    @Test
+    void ahoCorasickMatchesRegexOnWordBoundaries() {
+        TextChunk chunk = new TextChunk(
+            "James met JAMES and jameson.\n_james james_ 2james james2\nJohn-James, \"john\"\n",
+            10, 12, 500);
+        Set<String> words = Set.of("james", "john", "jam");
+        
+        List<String> expected = render(matcherService.findMatches(chunk, matcherService.compile(words, MatcherEngine.REGEX)));
+        List<String> actual = render(matcherService.findMatches(chunk, matcherService.compile(words, MatcherEngine.AHO_CORASICK)));
+        
+        assertThat(actual).isEqualTo(expected);
+        assertThat(actual).contains("james@10:500", "james@10:510", "john@12:557", "james@12:562");
+    }
+    
+    @Test
+    void ahoCorasickMatchesRegexOnRandomText() {
+        Random random = new Random(42);
+        String alphabet = "abAB _-\né";
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        TextChunk chunk = new TextChunk(text.append('\n').toString(), 0, 0, 0);
+        Set<String> words = Set.of("a", "ab", "ba", "aba", "b a", "a-b", "éa", "bbb");
+        
+        List<String> expected = render(matcherService.findMatches(chunk, matcherService.compile(words, MatcherEngine.REGEX)));
+        List<String> actual = render(matcherService.findMatches(chunk, matcherService.compile(words, MatcherEngine.AHO_CORASICK)));
+        
+        assertThat(expected).isNotEmpty();
+        assertThat(actual).isEqualTo(expected);
+    }
+    
+    @Test
+    void byteMatcherMatchesRegexOnRawUtf8() throws CharacterCodingException {
+        Random random = new Random(11);
+        String[] alphabet = {"a", "b", "A", "B", "1", "_", " ", "-", "\n", "\r", "\r\n", "é", "\u0301", "\uD835\uDC9C", "\u2014"};
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 30000; i++) {
+            text.append(alphabet[random.nextInt(alphabet.length)]);
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+        Utf8ByteSequence utf8 = Utf8ByteSequence.of(bytes);
+        String decoded = Utf8ByteSequence.decode(bytes).toString();
+        Set<String> words = Set.of("a", "ab", "ba", "aba", "bbb", "a1", "_a");
+        WordMatcher matcher = matcherService.compile(words, MatcherEngine.BYTES);
+        
+        List<String> expected = render(matcherService.findMatches(
+            new TextChunk(decoded, 5, 5 + utf8.getLineCount() - 1, 100), matcherService.compile(words, MatcherEngine.REGEX)));
+        TextChunk byteChunk = new TextChunk(utf8, 5, 5 + utf8.getLineCount() - 1, 100);
+        MatchBuffer split = matcher.newBuffer();
+        for (TextChunk leaf : ChunkMatchTask.split(byteChunk, 500)) {
+            MatchBuffer leafResults = matcher.newBuffer();
+            matcher.findMatches(leaf, leafResults);
+            split.addAll(leafResults);
+        }
+        
+        assertThat(matcher).isInstanceOf(ByteWordMatcher.class);
+        assertThat(utf8.length()).isEqualTo(decoded.length());
+        assertThat(expected).hasSizeGreaterThan(100);
+        assertThat(render(split)).isEqualTo(expected);
+        assertThat(render(matcherService.findMatches(new TextChunk(decoded, 5, 0, 100), matcher))).isEqualTo(expected);
+        assertThat(matcherService.compile(Set.of("café"), MatcherEngine.BYTES)).isInstanceOf(AhoCorasickWordMatcher.class);
+    }
+    
+    @Test
+    void splitChunkMatchesLikeWholeChunk() {
+        Random random = new Random(7);
+        String[] vocabulary = {"james", "John", "jamesjohn", "x", "café", "-", "\n", "\n\n"};
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 50000; i++) {
+            text.append(vocabulary[random.nextInt(vocabulary.length)]).append(' ');
+        }
+        String content = text.append('\n').toString();
+        int lines = (int) content.chars().filter(c -> c == '\n').count();
+        TextChunk chunk = new TextChunk(content, 100, 100 + lines - 1, 1_000_000);
+        WordMatcher matcher = matcherService.compile(Set.of("james", "john", "café"));
+        
+        MatchBuffer whole = matcher.newBuffer();
+        matcher.findMatches(chunk, whole);
+        TextChunk[] leaves = ChunkMatchTask.split(chunk, 1000);
+        MatchBuffer split = matcher.newBuffer();
+        for (TextChunk leaf : leaves) {
+            MatchBuffer leafResults = matcher.newBuffer();
+            matcher.findMatches(leaf, leafResults);
+            split.addAll(leafResults);
+        }
+        
+        assertThat(leaves.length).isGreaterThan(100);
+        assertThat(leaves[leaves.length - 1].getEndLine()).isEqualTo(chunk.getEndLine());
+        assertThat(render(split)).isEqualTo(render(whole));
+        assertThat(render(matcherService.findMatches(chunk, matcher))).isEqualTo(render(whole));
+    }
+    
+    @Test
+    void limitedMatchingCountsEveryHitAndKeepsFirstLocations() {
+        StringBuilder text = new StringBuilder();
+        for (int line = 0; line < 20000; line++) {
+            text.append(line % 3 == 0 ? "james and mary\n" : "John met JAMES\n");
+        }
+        TextChunk chunk = new TextChunk(text.toString(), 0, 19999, 0);
+        WordMatcher matcher = matcherService.compile(Set.of("james", "john", "mary"));
+        
+        MatchBuffer all = matcherService.findMatches(chunk, matcher);
+        MatchBuffer firstThree = matcherService.findMatches(chunk, matcher, Deadline.none(), new ResultLimits(3, Integer.MAX_VALUE));
+        MatchBuffer countsOnly = matcherService.findMatches(chunk, matcher, Deadline.none(), new ResultLimits(0, Integer.MAX_VALUE));
+        
+        for (int id = 0; id < matcher.size(); id++) {
+            assertThat(firstThree.getOccurrences(id)).isEqualTo(countsOnly.getOccurrences(id)).isEqualTo(all.getCount(id));
+            assertThat(firstThree.getCount(id)).isEqualTo(3);
+            assertThat(Arrays.copyOf(firstThree.getOffsets(id), 3)).isEqualTo(Arrays.copyOf(all.getOffsets(id), 3));
+            assertThat(countsOnly.getCount(id)).isZero();
+            assertThat(countsOnly.getOffsets(id)).isNull();
+        }
+        assertThat(countsOnly.getTotalCount()).isEqualTo(all.getTotalCount()).isEqualTo(20000 * 2);
+    }
+    
+    @Test
+    void getMatcherReusesCompiledMatcherForSameWordSet() {
+        WordMatcher first = matcherService.getMatcher(List.of("James", "john"));
+        WordMatcher second = matcherService.getMatcher(List.of("JOHN", "james", "John"));
+        WordMatcher other = matcherService.getMatcher(List.of("james"));
+        
+        assertThat(second).isSameAs(first);
+        assertThat(other).isNotSameAs(first);
+        assertThat(matcherService.getMatcherCache().getHits()).isEqualTo(1);
+        assertThat(matcherService.getMatcherCache().getMisses()).isEqualTo(2);
+    }
+    
+    private static List<String> render(MatchBuffer buffer) {
+        List<String> rendered = new ArrayList<>();
+        for (int id = 0; id < buffer.getWordCount(); id++) {
+            for (int i = 0; i < buffer.getCount(id); i++) {
+                rendered.add(buffer.getWord(id) + "@" + buffer.getLines(id)[i] + ":" + buffer.getOffsets(id)[i]);
+            }
+        }
+        rendered.sort(Comparator.comparingInt((String r) -> Integer.parseInt(r.substring(r.lastIndexOf(':') + 1)))
+            .thenComparing(Comparator.naturalOrder()));
+        return rendered;
+    }
+}
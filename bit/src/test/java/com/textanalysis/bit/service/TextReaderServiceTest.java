@@ -0,0 +1,378 @@
+package com.textanalysis.bit.service;
+
+import com.sun.net.httpserver.HttpServer;
+import com.textanalysis.bit.config.AppConfig;
+import com.textanalysis.bit.exception.AnalysisTimeoutException;
+import com.textanalysis.bit.exception.FileSizeExceededException;
+import com.textanalysis.bit.model.dto.WordMatch;
+import com.textanalysis.bit.model.internal.Deadline;
+import com.textanalysis.bit.model.internal.TailPosition;
+import com.textanalysis.bit.model.internal.TailRead;
+import com.textanalysis.bit.model.internal.TextChunk;
+import com.textanalysis.bit.model.internal.Utf8ByteSequence;
+import com.textanalysis.bit.service.matcher.MatcherEngine;
+import com.textanalysis.bit.service.matcher.WordMatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TextReaderServiceTest {
+    
+    private static final String TEXT = "James and John\nMary met James\n";
+    
+    @TempDir
+    Path cacheDir;
+    
+    private HttpServer server;
+    private final AtomicInteger fullResponses = new AtomicInteger();
+    private final AtomicInteger notModifiedResponses = new AtomicInteger();
+    private final AtomicInteger rangeResponses = new AtomicInteger();
+    private byte[] largeBody;
+    private volatile byte[] growingBody = new byte[0];
+    
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/text", exchange -> {
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModifiedResponses.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            fullResponses.incrementAndGet();
+            byte[] body = TEXT.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/slow", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(TEXT.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                Thread.sleep(3000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        StringBuilder large = new StringBuilder();
+        for (int line = 0; line < 600; line++) {
+            large.append("line ").append(line).append(line % 7 == 0 ? " James café naïve\n" : " Mary and John\n");
+        }
+        largeBody = large.toString().getBytes(StandardCharsets.UTF_8);
+        server.createContext("/plain", exchange -> {
+            exchange.sendResponseHeaders(200, largeBody.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(largeBody);
+            }
+        });
+        server.createContext("/ranged", exchange -> {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            exchange.getResponseHeaders().add("ETag", "\"r1\"");
+            exchange.getResponseHeaders().add("Accept-Ranges", "bytes");
+            byte[] body = largeBody;
+            if (range != null && "\"r1\"".equals(exchange.getRequestHeaders().getFirst("If-Range"))) {
+                String[] bounds = range.substring("bytes=".length()).split("-");
+                int start = Integer.parseInt(bounds[0]);
+                int end = Math.min(Integer.parseInt(bounds[1]), largeBody.length - 1);
+                body = Arrays.copyOfRange(largeBody, start, end + 1);
+                rangeResponses.incrementAndGet();
+                exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + largeBody.length);
+                exchange.sendResponseHeaders(206, body.length);
+            } else {
+                exchange.sendResponseHeaders(200, body.length);
+            }
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            } catch (IOException e) {
+                // The probe response is only read up to the first part
+            }
+        });
+        server.createContext("/latin1", exchange -> {
+            byte[] body = new String(largeBody, StandardCharsets.UTF_8).getBytes(StandardCharsets.ISO_8859_1);
+            boolean gzipAccepted = String.valueOf(exchange.getRequestHeaders().getFirst("Accept-Encoding")).contains("gzip");
+            if (gzipAccepted) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                    gzip.write(body);
+                }
+                body = compressed.toByteArray();
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=ISO-8859-1");
+            if (gzipAccepted) {
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/growing", exchange -> {
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            byte[] body = growingBody;
+            int start = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+            if (start > body.length) {
+                exchange.sendResponseHeaders(416, -1);
+                exchange.close();
+                return;
+            }
+            rangeResponses.incrementAndGet();
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + (body.length - 1) + "/" + body.length);
+            exchange.sendResponseHeaders(206, body.length - start == 0 ? -1 : body.length - start);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body, start, body.length - start);
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+    
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+    
+    @Test
+    void stopsReadingWhenDeadlinePasses() {
+        AppConfig appConfig = new AppConfig();
+        appConfig.setDocumentCacheEnabled(false);
+        TextReaderService reader = new TextReaderService(appConfig, new DocumentCacheService(appConfig), new LocalFileReaderService(appConfig));
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/slow";
+        
+        long start = System.currentTimeMillis();
+        assertThatThrownBy(() -> reader.readTextInChunks(url, Deadline.after(300)))
+            .isInstanceOf(AnalysisTimeoutException.class);
+        assertThat(System.currentTimeMillis() - start).isLessThan(2000);
+    }
+    
+    @Test
+    void servesNotModifiedResponsesFromDocumentCache() {
+        AppConfig appConfig = new AppConfig();
+        appConfig.setDocumentCacheDir(cacheDir.toString());
+        DocumentCacheService documentCache = new DocumentCacheService(appConfig);
+        TextReaderService reader = new TextReaderService(appConfig, documentCache, new LocalFileReaderService(appConfig));
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/text";
+        
+        List<TextChunk> first = reader.readTextInChunks(url);
+        List<TextChunk> second = reader.readTextInChunks(url);
+        
+        assertThat(fullResponses.get()).isEqualTo(1);
+        assertThat(notModifiedResponses.get()).isEqualTo(1);
+        assertThat(documentCache.getMisses()).isEqualTo(1);
+        assertThat(documentCache.getHits()).isEqualTo(1);
+        assertThat(reader.getFetchCount()).isEqualTo(1);
+        assertThat(first.stream().mapToLong(TextChunk::getSourceBytes).sum()).isEqualTo(TEXT.length());
+        assertThat(second.stream().mapToLong(TextChunk::getSourceBytes).sum()).isEqualTo(TEXT.length());
+        assertThat(second).hasSameSizeAs(first);
+        assertThat(second.get(0).getContent().toString()).isEqualTo(first.get(0).getContent().toString()).isEqualTo(TEXT);
+    }
+    
+    @Test
+    void downloadsAgainWhenCachedCopyIsEvictedAfterRevalidation() {
+        AppConfig appConfig = new AppConfig();
+        appConfig.setDocumentCacheDir(cacheDir.toString());
+        appConfig.setDocumentCacheMaxMemorySize("0B");
+        AtomicBoolean evict = new AtomicBoolean();
+        DocumentCacheService documentCache = new DocumentCacheService(appConfig) {
+            @Override
+            public synchronized CachedDocument lookup(String url) {
+                CachedDocument cached = super.lookup(url);
+                if (cached != null && evict.get()) {
+                    // Another request evicts the blob right after this one looked it up
+                    cacheDir.resolve("blobs").resolve(cached.getContentHash()).toFile().delete();
+                }
+                return cached;
+            }
+        };
+        TextReaderService reader = new TextReaderService(appConfig, documentCache, new LocalFileReaderService(appConfig));
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/text";
+        
+        reader.readTextInChunks(url);
+        evict.set(true);
+        List<TextChunk> chunks = reader.readTextInChunks(url);
+        
+        assertThat(notModifiedResponses.get()).isEqualTo(1);
+        assertThat(fullResponses.get()).isEqualTo(2);
+        assertThat(chunks.get(0).getContent().toString()).isEqualTo(TEXT);
+    }
+    
+    @Test
+    void rangedDownloadReadsLikeSingleStream() {
+        AppConfig appConfig = new AppConfig();
+        appConfig.setDocumentCacheEnabled(false);
+        appConfig.setChunkBytes("2KB");
+        appConfig.setRangeMinSize("4KB");
+        appConfig.setRangePartSize("1000B");
+        appConfig.setRangeConnections(3);
+        TextReaderService reader = new TextReaderService(appConfig, new DocumentCacheService(appConfig), new LocalFileReaderService(appConfig));
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        
+        List<TextChunk> single = reader.readTextInChunks(base + "/plain");
+        List<TextChunk> ranged = reader.readTextInChunks(base + "/ranged");
+        
+        // Parts cut through lines and multi-byte characters; chunks must not notice
+        assertThat(rangeResponses.get()).isEqualTo((largeBody.length + 999) / 1000 - 1);
+        assertThat(ranged).hasSameSizeAs(single);
+        for (int i = 0; i < single.size(); i++) {
+            assertThat(ranged.get(i).getStartLine()).isEqualTo(single.get(i).getStartLine());
+            assertThat(ranged.get(i).getGlobalCharOffset()).isEqualTo(single.get(i).getGlobalCharOffset());
+            assertThat(ranged.get(i).getContent().toString()).isEqualTo(single.get(i).getContent().toString());
+        }
+    }
+    
+    @Test
+    void decodesCompressedBodyInDeclaredCharset() {
+        AppConfig appConfig = new AppConfig();
+        appConfig.setDocumentCacheDir(cacheDir.toString());
+        appConfig.setChunkBytes("2KB");
+        TextReaderService reader = new TextReaderService(appConfig, new DocumentCacheService(appConfig), new LocalFileReaderService(appConfig));
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        
+        String expected = new String(largeBody, StandardCharsets.UTF_8);
+        List<TextChunk> chunks = reader.readTextInChunks(base + "/latin1");
+        assertThat(String.join("", chunks.stream().map(TextChunk::getContent).toList())).isEqualTo(expected);
+        // One byte per character in ISO-8859-1, counted after inflating
+        assertThat(chunks.stream().mapToLong(TextChunk::getSourceBytes).sum()).isEqualTo(expected.length());
+        
+        // A compressed body that inflates past the limit is cut off while reading
+        appConfig.setMaxFileSize("4KB");
+        assertThatThrownBy(() -> reader.readTextInChunks(base + "/latin1"))
+            .isInstanceOf(FileSizeExceededException.class);
+    }
+    
+    @Test
+    void byteChunksReadLikeDecodedLines() throws IOException {
+        Random random = new Random(3);
+        String[] pieces = {"james ", "Mary", "café ", "\n", "\r\n", "\r", "\uD835\uDC9C", "x"};
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append(pieces[random.nextInt(pieces.length)]);
+        }
+        byte[] bytes = text.append("no line end").toString().getBytes(StandardCharsets.UTF_8);
+        bytes[1000] = (byte) 0xC3; // malformed, so the first chunk is decoded
+        
+        AppConfig appConfig = new AppConfig();
+        appConfig.setChunkBytes("1KB");
+        appConfig.setDocumentCacheEnabled(false);
+        TextReaderService reader = new TextReaderService(appConfig, new DocumentCacheService(appConfig), new LocalFileReaderService(appConfig));
+        List<TextChunk> lines = new ArrayList<>();
+        reader.processTextInChunks(new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8)), lines::add);
+        List<TextChunk> chunks = new ArrayList<>();
+        reader.processBytesInChunks(new ByteArrayInputStream(bytes), chunks::add);
+        
+        assertThat(chunks).hasSizeGreaterThan(10);
+        assertThat(chunks.get(0).getContent()).isNotInstanceOf(Utf8ByteSequence.class);
+        assertThat(chunks.get(1).getContent()).isInstanceOf(Utf8ByteSequence.class);
+        for (int i = 1; i < chunks.size(); i++) {
+            TextChunk previous = chunks.get(i - 1);
+            assertThat(chunks.get(i).getStartLine()).isEqualTo(previous.getEndLine() + 1);
+            assertThat(chunks.get(i).getGlobalCharOffset())
+                .isEqualTo(previous.getGlobalCharOffset() + previous.getContent().length());
+        }
+        assertThat(chunks.get(chunks.size() - 1).getEndLine()).isEqualTo(lines.get(lines.size() - 1).getEndLine());
+        assertThat(String.join("", chunks.stream().map(chunk -> chunk.getContent().toString()).toList()))
+            .isEqualTo(String.join("", lines.stream().map(TextChunk::getContent).toList()));
+    }
+    
+    @Test
+    void readsOnlyAppendedBytesOverHttpRanges() {
+        AppConfig appConfig = new AppConfig();
+        appConfig.setDocumentCacheEnabled(false);
+        appConfig.setChunkBytes("1KB");
+        TextReaderService reader = new TextReaderService(appConfig, new DocumentCacheService(appConfig), new LocalFileReaderService(appConfig));
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/growing";
+        Deadline deadline = Deadline.none();
+        
+        growingBody = Arrays.copyOf(largeBody, 5000);
+        List<TextChunk> chunks = new ArrayList<>();
+        TailRead first = reader.readAppendedInChunks(url, TailPosition.START, chunks::add, deadline);
+        growingBody = largeBody;
+        TailRead second = reader.readAppendedInChunks(url, first.getEnd(), chunks::add, deadline);
+        
+        // The cut line is read again, after the fingerprint before it
+        assertThat(first.getPendingLine()).isNotNull();
+        assertThat(second.getPendingLine()).isNull();
+        assertThat(second.getEnd().getByteOffset()).isEqualTo(largeBody.length);
+        assertThat(second.getEnd().getLine()).isEqualTo(600);
+        assertThat(String.join("", chunks.stream().map(chunk -> chunk.getContent().toString()).toList()))
+            .isEqualTo(new String(largeBody, StandardCharsets.UTF_8));
+        
+        // Nothing appended, then replaced by a different document of the same length
+        assertThat(reader.readAppendedInChunks(url, second.getEnd(), chunks::add, deadline).getChunkCount()).isZero();
+        growingBody = new String(largeBody, StandardCharsets.UTF_8).replace("John", "Jack").getBytes(StandardCharsets.UTF_8);
+        assertThat(reader.readAppendedInChunks(url, second.getEnd(), chunks::add, deadline)).isNull();
+        growingBody = Arrays.copyOf(largeBody, 100);
+        assertThat(reader.readAppendedInChunks(url, second.getEnd(), chunks::add, deadline)).isNull();
+    }
+    
+    @Test
+    void chunksAreContiguousAndMatchSinglePassScan() throws IOException {
+        Random random = new Random(7);
+        String[] vocabulary = {"james", "John", "mary", "of", "the", "JAMES", "x"};
+        StringBuilder text = new StringBuilder();
+        for (int line = 0; line < 257; line++) {
+            int words = random.nextInt(12);
+            for (int w = 0; w < words; w++) {
+                text.append(vocabulary[random.nextInt(vocabulary.length)]).append(w % 3 == 0 ? ", " : " ");
+            }
+            text.append('\n');
+        }
+        
+        AppConfig appConfig = new AppConfig();
+        appConfig.setChunkBytes("200B");
+        appConfig.setDocumentCacheEnabled(false);
+        TextReaderService reader = new TextReaderService(appConfig, new DocumentCacheService(appConfig), new LocalFileReaderService(appConfig));
+        List<TextChunk> chunks = new ArrayList<>();
+        reader.processTextInChunks(new BufferedReader(new StringReader(text.toString())), chunks::add);
+        
+        // Chunks tile the document exactly: no overlap, no gaps
+        assertThat(chunks).hasSizeGreaterThan(10);
+        for (int i = 1; i < chunks.size(); i++) {
+            TextChunk previous = chunks.get(i - 1);
+            assertThat(chunks.get(i).getStartLine()).isEqualTo(previous.getEndLine() + 1);
+            assertThat(chunks.get(i).getGlobalCharOffset())
+                .isEqualTo(previous.getGlobalCharOffset() + previous.getContent().length());
+        }
+        assertThat(String.join("", chunks.stream().map(TextChunk::getContent).toList())).isEqualTo(text.toString());
+        
+        // Chunked matching gives the same offsets as a regex scan of the whole text as one chunk
+        MatcherService matcherService = new MatcherService(appConfig);
+        AggregatorService aggregatorService = new AggregatorService(new AppConfig());
+        WordMatcher matcher = matcherService.getMatcher(Set.of("james", "john", "mary"));
+        WordMatcher regex = matcherService.compile(Set.of("james", "john", "mary"), MatcherEngine.REGEX);
+        List<WordMatch> chunked = aggregatorService.aggregateResults(
+            chunks.stream().map(chunk -> matcherService.findMatches(chunk, matcher)).toList());
+        List<WordMatch> reference = aggregatorService.aggregateResults(List.of(
+            matcherService.findMatches(new TextChunk(text.toString(), 0, 256, 0), regex)));
+        
+        assertThat(chunked).usingRecursiveComparison().isEqualTo(reference);
+        assertThat(chunked).hasSize(3);
+    }
+}
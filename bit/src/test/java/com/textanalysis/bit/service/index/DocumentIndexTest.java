@@ -0,0 +1,91 @@
+package com.textanalysis.bit.service.index;
+
+import com.textanalysis.bit.config.AppConfig;
+import com.textanalysis.bit.model.dto.WordLocation;
+import com.textanalysis.bit.model.dto.WordMatch;
+import com.textanalysis.bit.model.internal.TextChunk;
+import com.textanalysis.bit.service.AggregatorService;
+import com.textanalysis.bit.service.MatcherService;
+import com.textanalysis.bit.service.matcher.WordMatcher;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DocumentIndexTest {
+    
+    @TempDir
+    Path indexDir;
+    
+    @Test
+    void indexLookupMatchesAggregatedScan() throws Exception {
+        List<TextChunk> chunks = List.of(
+            new TextChunk("James met JOHN.\njames_bond and John-James\n", 0, 1, 0),
+            new TextChunk("Mary, james and john\nCAFÉ café james\n", 2, 3, 42));
+        Set<String> words = Set.of("james", "john", "mary", "café", "bond");
+        
+        MatcherService matcherService = new MatcherService(new AppConfig());
+        WordMatcher matcher = matcherService.compile(words);
+        List<WordMatch> expected = new AggregatorService(new AppConfig()).aggregateResults(
+            chunks.stream().map(chunk -> matcherService.findMatches(chunk, matcher)).toList());
+        
+        DocumentIndexBuilder builder = new DocumentIndexBuilder();
+        chunks.forEach(builder);
+        Path file = indexDir.resolve("doc.idx");
+        builder.writeTo(file);
+        DocumentIndex index = DocumentIndex.open(file);
+        
+        for (String word : words) {
+            List<String> fromIndex = render(index.lookup(word));
+            List<String> fromScan = expected.stream()
+                .filter(match -> match.getWord().equals(word))
+                .findFirst()
+                .map(match -> render(match.getLocations()))
+                .orElse(List.of());
+            assertThat(fromIndex).as(word).isEqualTo(fromScan);
+        }
+        assertThat(index.lookup("missing")).isEmpty();
+    }
+    
+    @Test
+    void segmentedMappingReadsAcrossSegmentEnds() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int line = 0; line < 500; line++) {
+            text.append("word").append(line % 37).append(" james ").append(line * 1_000_003L).append('\n');
+        }
+        DocumentIndexBuilder builder = new DocumentIndexBuilder();
+        builder.accept(new TextChunk(text.toString(), 0, 499, 5_000_000_000L));
+        Path file = indexDir.resolve("doc.idx");
+        builder.writeTo(file);
+        
+        // 64-byte segments, so varints, keys and the trailer straddle segment ends
+        DocumentIndex whole = DocumentIndex.open(file);
+        DocumentIndex segmented = DocumentIndex.open(file, 6);
+        assertThat(segmented.getTokenCount()).isEqualTo(whole.getTokenCount()).isGreaterThan(500);
+        for (String token : List.of("james", "word0", "word36", "1000003", "499001497")) {
+            assertThat(render(segmented.lookup(token))).as(token).isEqualTo(render(whole.lookup(token))).isNotEmpty();
+        }
+    }
+    
+    @Test
+    void builderGivesUpPastMemoryLimit() {
+        DocumentIndexBuilder builder = new DocumentIndexBuilder(64 * 1024);
+        StringBuilder text = new StringBuilder();
+        for (int line = 0; line < 1000; line++) {
+            text.append("token").append(line).append(" james\n");
+        }
+        
+        assertThatThrownBy(() -> builder.accept(new TextChunk(text.toString(), 0, 999, 0)))
+            .isInstanceOf(IllegalStateException.class);
+        assertThat(builder.getMemoryBytes()).isGreaterThan(64 * 1024);
+    }
+    
+    private static List<String> render(List<WordLocation> locations) {
+        return locations.stream().map(l -> l.getLineOffset() + ":" + l.getCharOffset()).toList();
+    }
+}